@@ -0,0 +1,25 @@
+package kr.co.mirerotack.btsever1.model;
+
+// ✅ 수신 중에 APK의 AndroidManifest.xml에서 읽은 정보 (getPackageArchiveInfo 대신 사용)
+public class ApkManifestInfo {
+    private final String packageName;
+    private final int versionCode;
+
+    public ApkManifestInfo(String packageName, int versionCode) {
+        this.packageName = packageName;
+        this.versionCode = versionCode;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public int getVersionCode() {
+        return versionCode;
+    }
+
+    @Override
+    public String toString() {
+        return packageName + " (versionCode " + versionCode + ")";
+    }
+}
@@ -0,0 +1,164 @@
+package kr.co.mirerotack.btsever1.utils;
+
+/**
+ * 하위 시스템(modem, ymodem, server...)별 로그 레벨과 레벨별 기록 메서드 (Logger.channel로 얻음)
+ * - 메시지의 {}를 인자로 차례대로 치환하며, 레벨이 꺼져 있으면 문자열을 만들지 않음
+ * - 블록마다 남기는 TRACE 로그처럼 인자를 만드는 비용(박싱 등)까지 없애려면 isTraceEnabled()로 감쌈
+ * - ERROR는 "[X] ", WARN은 "[W] "를 앞에 붙여 기록 (기존 로그 표기와 같음)
+ * 레벨은 Logger.setLevels()로 실행 중에 바꿀 수 있습니다.
+ */
+public class LogChannel {
+    public static final int TRACE = 0;
+    public static final int DEBUG = 1;
+    public static final int INFO = 2;
+    public static final int WARN = 3;
+    public static final int ERROR = 4;
+    public static final int OFF = 5;
+
+    private static final String[] LEVEL_NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "OFF"};
+
+    private final String name;
+    private volatile int level;
+
+    LogChannel(String name, int level) {
+        this.name = name;
+        this.level = level;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    void setLevel(int level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(int level) {
+        return level >= this.level;
+    }
+
+    public boolean isTraceEnabled() {
+        return level <= TRACE;
+    }
+
+    public boolean isDebugEnabled() {
+        return level <= DEBUG;
+    }
+
+    public void trace(String message) {
+        if (level <= TRACE) Logger.log(TRACE, message);
+    }
+
+    public void trace(String pattern, Object arg) {
+        if (level <= TRACE) Logger.log(TRACE, format(pattern, arg));
+    }
+
+    public void trace(String pattern, Object arg1, Object arg2) {
+        if (level <= TRACE) Logger.log(TRACE, format(pattern, arg1, arg2));
+    }
+
+    public void trace(String pattern, Object... args) {
+        if (level <= TRACE) Logger.log(TRACE, format(pattern, args));
+    }
+
+    public void debug(String message) {
+        if (level <= DEBUG) Logger.log(DEBUG, message);
+    }
+
+    public void debug(String pattern, Object arg) {
+        if (level <= DEBUG) Logger.log(DEBUG, format(pattern, arg));
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if (level <= DEBUG) Logger.log(DEBUG, format(pattern, arg1, arg2));
+    }
+
+    public void debug(String pattern, Object... args) {
+        if (level <= DEBUG) Logger.log(DEBUG, format(pattern, args));
+    }
+
+    public void info(String message) {
+        if (level <= INFO) Logger.log(INFO, message);
+    }
+
+    public void info(String pattern, Object arg) {
+        if (level <= INFO) Logger.log(INFO, format(pattern, arg));
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+        if (level <= INFO) Logger.log(INFO, format(pattern, arg1, arg2));
+    }
+
+    public void info(String pattern, Object... args) {
+        if (level <= INFO) Logger.log(INFO, format(pattern, args));
+    }
+
+    public void warn(String message) {
+        if (level <= WARN) Logger.log(WARN, message);
+    }
+
+    public void warn(String pattern, Object arg) {
+        if (level <= WARN) Logger.log(WARN, format(pattern, arg));
+    }
+
+    public void warn(String pattern, Object arg1, Object arg2) {
+        if (level <= WARN) Logger.log(WARN, format(pattern, arg1, arg2));
+    }
+
+    public void warn(String pattern, Object... args) {
+        if (level <= WARN) Logger.log(WARN, format(pattern, args));
+    }
+
+    public void error(String message) {
+        if (level <= ERROR) Logger.log(ERROR, message);
+    }
+
+    public void error(String pattern, Object arg) {
+        if (level <= ERROR) Logger.log(ERROR, format(pattern, arg));
+    }
+
+    public void error(String pattern, Object arg1, Object arg2) {
+        if (level <= ERROR) Logger.log(ERROR, format(pattern, arg1, arg2));
+    }
+
+    public void error(String pattern, Object... args) {
+        if (level <= ERROR) Logger.log(ERROR, format(pattern, args));
+    }
+
+    /**
+     * pattern의 {}를 args로 차례대로 치환 (인자가 모자라면 남은 {}는 그대로, 남는 인자는 무시)
+     */
+    static String format(String pattern, Object... args) {
+        StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int found = pattern.indexOf("{}", start);
+            if (found < 0) {
+                break;
+            }
+            sb.append(pattern, start, found).append(arg);
+            start = found + 2;
+        }
+        return sb.append(pattern, start, pattern.length()).toString();
+    }
+
+    /**
+     * @return 레벨 이름(대소문자 무시)의 값, 알 수 없으면 -1
+     */
+    public static int parseLevel(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(name.trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static String levelName(int level) {
+        return LEVEL_NAMES[level];
+    }
+}
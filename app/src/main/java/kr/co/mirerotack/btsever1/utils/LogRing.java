@@ -0,0 +1,106 @@
+package kr.co.mirerotack.btsever1.utils;
+
+/**
+ * 로그 메시지를 기록 스레드로 넘기는 고정 크기 링 버퍼 (생성 시 한 번만 할당)
+ * - 호출 스레드(수신/프로토콜 스레드)는 슬롯에 넣기만 하고 파일 I/O를 기다리지 않음
+ * - 버퍼가 가득 차면 기다리지 않고 버린 뒤 개수만 셈 (기록 스레드가 경고로 남김)
+ * - 기록 스레드는 batchSize개가 쌓이거나, 바로 기록할 메시지([X])가 들어오거나, 대기 시간이 지나면 한 번에 가져감
+ */
+public class LogRing {
+    private final long[] times;
+    private final String[] messages;
+    private final int batchSize;
+    private final Object lock = new Object();
+
+    private int head = 0;  // 다음에 가져갈 슬롯 (기록 스레드)
+    private int count = 0; // 기록을 기다리는 메시지 수
+    private boolean urgent = false; // 바로 기록해야 할 메시지가 있음
+    private boolean closed = false;
+    private int dropped = 0; // 버퍼가 가득 차서 버린 메시지 수 (takeDropped까지)
+
+    /**
+     * @param capacity  최대로 쌓아 둘 메시지 수
+     * @param batchSize 기록 스레드를 깨우는 메시지 수
+     */
+    public LogRing(int capacity, int batchSize) {
+        this.times = new long[capacity];
+        this.messages = new String[capacity];
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 메시지를 넣습니다. 기다리지 않으며, 가득 찼거나 닫혔으면 버립니다.
+     * @param time    기록 시각 (System.currentTimeMillis)
+     * @param urgent  true면 batchSize를 기다리지 않고 기록 스레드를 깨움
+     * @return 넣었으면 true
+     */
+    public boolean offer(long time, String message, boolean urgent) {
+        synchronized (lock) {
+            if (closed) {
+                return false;
+            }
+            if (count == times.length) {
+                dropped++;
+                return false;
+            }
+            int tail = (head + count) % times.length;
+            times[tail] = time;
+            messages[tail] = message;
+            count++;
+            if (urgent) {
+                this.urgent = true;
+            }
+            if (urgent || count == batchSize) {
+                lock.notify();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 기록할 메시지가 쌓일 때까지 최대 timeoutMillis 기다렸다가, 쌓인 메시지를 최대 timesOut.length개 가져옵니다.
+     * @return 가져온 개수 (시간만 지났으면 0), 닫혔고 남은 메시지가 없으면 -1
+     */
+    public int drainTo(long[] timesOut, String[] messagesOut, long timeoutMillis) throws InterruptedException {
+        synchronized (lock) {
+            if (!closed && !urgent && count < batchSize) {
+                lock.wait(timeoutMillis);
+            }
+            if (closed && count == 0) {
+                return -1;
+            }
+            int drained = Math.min(count, timesOut.length);
+            for (int i = 0; i < drained; i++) {
+                int slot = (head + i) % times.length;
+                timesOut[i] = times[slot];
+                messagesOut[i] = messages[slot];
+                messages[slot] = null; // 기록한 문자열은 바로 GC 대상이 되도록
+            }
+            head = (head + drained) % times.length;
+            count -= drained;
+            urgent = false;
+            return drained;
+        }
+    }
+
+    /**
+     * 마지막 호출 이후 버린 메시지 수
+     */
+    public int takeDropped() {
+        synchronized (lock) {
+            int value = dropped;
+            dropped = 0;
+            return value;
+        }
+    }
+
+    /**
+     * 더 이상 메시지를 받지 않습니다. 기록 스레드는 남은 메시지를 모두 가져간 뒤 -1을 받습니다.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+    }
+}
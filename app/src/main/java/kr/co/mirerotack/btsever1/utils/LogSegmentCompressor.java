@@ -0,0 +1,143 @@
+package kr.co.mirerotack.btsever1.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 교체가 끝난 로그 세그먼트(.txt)를 낮은 우선순위 스레드에서 gzip(.txt.gz)으로 압축합니다.
+ * - 압축은 임시 파일(.gz.tmp)에 쓰고 이름을 바꾼 뒤 원본을 지움 → 목록에는 완성된 .gz만 보임
+ * - 기록 스레드는 파일을 넘기기만 하고 기다리지 않음 (압축 중 종료되면 다음 open에서 다시 압축)
+ * 스레드 우선순위는 Thread.MIN_PRIORITY (Android에서는 가장 낮은 nice 값으로 실행)
+ */
+class LogSegmentCompressor implements Runnable {
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private final LinkedList<File> queue = new LinkedList<File>();
+    private Thread thread = null;
+    private boolean busy = false;
+    private boolean stopped = false;
+
+    /**
+     * 압축할 세그먼트를 넘깁니다. 처음 넘길 때 압축 스레드를 시작합니다.
+     */
+    synchronized void submit(File segment) {
+        if (stopped) {
+            return;
+        }
+        queue.add(segment);
+        if (thread == null) {
+            thread = new Thread(this, "LogCompressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * 남은 세그먼트는 압축하지 않고 스레드를 끝냅니다 (지금 압축 중인 파일은 마저 압축)
+     */
+    synchronized void stop() {
+        stopped = true;
+        queue.clear();
+        notifyAll();
+    }
+
+    /**
+     * 넘긴 세그먼트를 모두 압축할 때까지 기다립니다.
+     * @return 시간 안에 끝났으면 true
+     */
+    synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (busy || !queue.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            File segment;
+            synchronized (this) {
+                busy = false;
+                notifyAll();
+                while (queue.isEmpty() && !stopped) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (stopped) {
+                    return;
+                }
+                segment = queue.removeFirst();
+                busy = true;
+            }
+            try {
+                compress(segment);
+            } catch (IOException e) {
+                // 압축하지 못한 세그먼트는 원본 그대로 남고, 보관 크기 계산에 원본 크기로 포함
+            }
+        }
+    }
+
+    /**
+     * segment를 같은 이름 + ".gz"로 압축하고 원본을 지웁니다. 그 사이 보관 크기 때문에 지워졌으면 아무것도 남기지 않습니다.
+     */
+    static File compress(File segment) throws IOException {
+        File compressed = new File(segment.getPath() + ".gz");
+        File temp = new File(compressed.getPath() + TEMP_SUFFIX);
+
+        InputStream in;
+        try {
+            in = new FileInputStream(segment);
+        } catch (IOException e) {
+            return null; // 이미 지워짐
+        }
+        OutputStream out = null;
+        try {
+            out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            in.close();
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) { /* 무시 가능 */ }
+            }
+        }
+
+        if (!segment.exists()) {
+            temp.delete(); // 압축하는 동안 보관 크기 때문에 삭제됨
+            return null;
+        }
+        if (!temp.renameTo(compressed)) {
+            temp.delete();
+            throw new IOException("Failed to rename " + temp.getPath());
+        }
+        segment.delete();
+        return compressed;
+    }
+}
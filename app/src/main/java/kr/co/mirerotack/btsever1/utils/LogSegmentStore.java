@@ -0,0 +1,443 @@
+package kr.co.mirerotack.btsever1.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 고정 크기 세그먼트 파일(prefix_yyyyMMdd_HHmmss.txt)에 로그를 순서대로 붙여 쓰는 저장소 (기록 스레드 전용)
+ * - 세그먼트 전체를 메모리 매핑해 두고 줄을 바로 인코딩해 넣음 → 기록은 메모리 쓰기 (페이지는 커널이 파일로 내보냄)
+ * - 세그먼트가 가득 차거나 maxAgeMillis가 지나면 남은 부분을 잘라내고 새 세그먼트로 (데이터 복사 없음)
+ * - 새 세그먼트를 열 때 세그먼트 전체 크기가 retentionBytes를 넘으면 오래된 것부터 삭제
+ * 기록 중인 세그먼트는 파일 크기가 segmentSize이고 기록하지 않은 뒷부분이 0x00입니다. 읽을 때는 기록한 길이까지만 읽습니다.
+ * 프로세스가 비정상 종료되어 잘라내지 못한 세그먼트는 다음 open에서 기록된 부분까지 잘라냅니다.
+ * <p>
+ * enableCompression()을 호출하면 교체한 세그먼트를 백그라운드에서 gzip(.txt.gz)으로 압축하며,
+ * 보관 크기는 압축된 크기로 계산합니다. openLogs()/openSegment()는 압축 여부와 관계없이 원래 텍스트를 돌려줍니다.
+ */
+public class LogSegmentStore {
+    public static final String SEGMENT_SUFFIX = ".txt";
+    public static final String COMPRESSED_SUFFIX = SEGMENT_SUFFIX + ".gz";
+
+    private final File directory;
+    private final String prefix;
+    private final int segmentSize;
+    private final long maxAgeMillis;
+    private final long retentionBytes;
+
+    private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final SimpleDateFormat nameFormat = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
+
+    private RandomAccessFile file = null;
+    private FileChannel channel = null;
+    private MappedByteBuffer mapped = null;
+    private volatile File currentFile = null;
+    private volatile int written = 0; // currentFile에 기록한 길이 (다른 스레드에서 openLogs로 읽을 때 사용)
+    private long openedAt = 0;
+    private boolean closed = false;
+    private String lastBaseName = null; // 같은 초에 만든 세그먼트의 번호를 이어가기 위함
+    private int sequence = 0;
+    private LogSegmentCompressor compressor = null;
+
+    /**
+     * @param directory      세그먼트를 둘 디렉토리
+     * @param prefix         세그먼트 파일명 앞부분 (다른 파일과 구분)
+     * @param segmentSize    세그먼트 하나의 최대 크기 (매핑 크기)
+     * @param maxAgeMillis   세그먼트 하나에 기록하는 최대 기간
+     * @param retentionBytes 보관할 세그먼트 전체 크기
+     */
+    public LogSegmentStore(File directory, String prefix, int segmentSize, long maxAgeMillis, long retentionBytes) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        this.maxAgeMillis = maxAgeMillis;
+        this.retentionBytes = retentionBytes;
+    }
+
+    /**
+     * 교체한 세그먼트를 압축합니다 (open 전에 호출)
+     */
+    public void enableCompression() {
+        compressor = new LogSegmentCompressor();
+    }
+
+    /**
+     * 지난 실행의 세그먼트를 정리하고 새 세그먼트를 엽니다.
+     * 압축을 켰으면 지난 실행에서 압축하지 못한 세그먼트도 압축합니다.
+     */
+    public void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create log directory: " + directory.getPath());
+        }
+        deleteUnfinishedCompression();
+        for (File segment : listSegments()) {
+            if (!isCompressed(segment)) {
+                trimUnused(segment);
+                if (compressor != null) {
+                    compressor.submit(segment);
+                }
+            }
+        }
+        startSegment();
+    }
+
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * 한 줄(줄바꿈 포함)을 붙여 씁니다. 현재 세그먼트에 다 들어가지 않거나 기간이 지났으면 새 세그먼트에 씁니다.
+     * 세그먼트보다 긴 줄은 들어가는 만큼만 씁니다. 줄에 있는 0x00(NUL)은 "\0"(두 글자)으로 바꿔 씁니다 (trimUnused의 경계 표시).
+     * @throws IOException 새 세그먼트를 열지 못한 경우 (다음 append에서 다시 시도)
+     */
+    public void append(CharSequence line) throws IOException {
+        if (closed) {
+            return;
+        }
+        line = escapeNul(line);
+        if (mapped == null) {
+            startSegment();
+        } else if (System.currentTimeMillis() - openedAt >= maxAgeMillis) {
+            rotate();
+        }
+        int start = mapped.position();
+        if (encode(line).isOverflow() && start > 0) {
+            mapped.position(start); // 잘린 줄은 다음 세그먼트에 처음부터
+            rotate();
+            encode(line);
+        }
+        written = mapped.position();
+    }
+
+    /**
+     * 기록한 부분까지 잘라내고 닫습니다.
+     */
+    public void close() {
+        closed = true;
+        finishSegment(); // 마지막 세그먼트는 다음 open에서 압축
+        if (compressor != null) {
+            compressor.stop();
+        }
+    }
+
+    /**
+     * 넘긴 세그먼트를 모두 압축할 때까지 기다립니다 (압축을 켜지 않았으면 바로 true)
+     */
+    boolean awaitCompression(long timeoutMillis) throws InterruptedException {
+        return compressor == null || compressor.awaitIdle(timeoutMillis);
+    }
+
+    /**
+     * 0x00을 "\0"(두 글자)으로 바꾼 줄 (0x00이 없으면 그대로 돌려줌)
+     * YModem 헤더처럼 NUL로 구분된 값을 그대로 로그에 남겨도 기록된 부분과 빈 뒷부분을 구분할 수 있게 합니다.
+     */
+    static CharSequence escapeNul(CharSequence line) {
+        int length = line.length();
+        int first = 0;
+        while (first < length && line.charAt(first) != '\0') {
+            first++;
+        }
+        if (first == length) {
+            return line;
+        }
+        StringBuilder escaped = new StringBuilder(length + 8);
+        escaped.append(line, 0, first);
+        for (int i = first; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '\0') {
+                escaped.append("\\0");
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped;
+    }
+
+    private CoderResult encode(CharSequence line) {
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(line), mapped, true);
+        if (!result.isOverflow()) {
+            result = encoder.flush(mapped);
+        }
+        return result;
+    }
+
+    private void rotate() throws IOException {
+        File finished = currentFile;
+        finishSegment();
+        if (compressor != null) {
+            compressor.submit(finished); // 기록 스레드는 기다리지 않음
+        }
+        startSegment();
+    }
+
+    private void startSegment() throws IOException {
+        enforceRetention();
+
+        openedAt = System.currentTimeMillis();
+        File segment = newSegmentFile(openedAt);
+        RandomAccessFile opened = new RandomAccessFile(segment, "rw");
+        try {
+            mapped = opened.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // 파일도 segmentSize로 늘어남 (희소 파일)
+        } catch (IOException e) {
+            opened.close();
+            segment.delete();
+            throw e;
+        }
+        file = opened;
+        channel = opened.getChannel();
+        written = 0;
+        currentFile = segment;
+    }
+
+    /**
+     * 세그먼트를 기록한 크기로 잘라내고 닫습니다. 매핑은 GC가 해제하며, 잘라낸 뒤에는 접근하지 않습니다.
+     */
+    private void finishSegment() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            mapped.force();
+            channel.truncate(mapped.position());
+        } catch (IOException e) { /* 다음 open에서 trimUnused로 정리 */ }
+        try {
+            file.close();
+        } catch (IOException e) { /* 무시 가능 */ }
+        mapped = null;
+        channel = null;
+        file = null;
+    }
+
+    /**
+     * 오래된 세그먼트부터 삭제해 전체 크기를 retentionBytes 이하로 (새로 열 세그먼트의 크기 포함)
+     * 압축된 세그먼트는 압축된 크기로, 아직 압축하지 않은 세그먼트는 원본 크기로 계산
+     */
+    private void enforceRetention() {
+        File[] segments = listSegments();
+        long total = segmentSize;
+        for (File segment : segments) {
+            total += segment.length();
+        }
+        for (int i = 0; i < segments.length && total > retentionBytes; i++) {
+            long length = segments[i].length();
+            if (segments[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    /**
+     * 이름(시각) 순으로 정렬한 세그먼트 목록 (압축된 세그먼트 포함, 마지막이 기록 중인 세그먼트)
+     */
+    public File[] listSegments() {
+        File[] segments = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix + "_") && (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(COMPRESSED_SUFFIX));
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * 모든 세그먼트를 오래된 순서로 이어서 읽는 스트림 (압축된 세그먼트는 풀어서, 기록 중인 세그먼트는 기록된 부분까지)
+     * 읽는 도중 보관 크기 때문에 지워진 세그먼트는 건너뜁니다.
+     */
+    public InputStream openLogs() {
+        final File live = currentFile; // currentFile → written 순서로 읽어야 교체 중에도 새 세그먼트를 이전 길이로 읽지 않음
+        final long liveLength = written; // 이후에 기록되는 부분은 읽지 않음 (기록 도중의 줄을 읽지 않도록)
+        final File[] segments = segmentsUntil(live);
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index < segments.length;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                File segment = segments[index++];
+                try {
+                    return segment.equals(live) ? openSegment(segment, liveLength) : openSegment(segment);
+                } catch (IOException e) {
+                    return new ByteArrayInputStream(new byte[0]);
+                }
+            }
+        });
+    }
+
+    /**
+     * live까지의 세그먼트 (그 뒤에 교체되어 생긴 세그먼트는 기록한 길이를 모르므로 제외)
+     */
+    private File[] segmentsUntil(File live) {
+        File[] segments = listSegments();
+        if (live == null) {
+            return segments;
+        }
+        int count = 0;
+        while (count < segments.length && segments[count].getName().compareTo(live.getName()) <= 0) {
+            count++;
+        }
+        return Arrays.copyOf(segments, count);
+    }
+
+    /**
+     * 세그먼트 하나의 텍스트를 읽는 스트림 (잘라낸 세그먼트용, 기록 중인 세그먼트는 openLogs()로 읽음)
+     * 목록을 만든 뒤 압축되어 원본이 없어졌으면 압축된 파일을 읽습니다.
+     */
+    public static InputStream openSegment(File segment) throws IOException {
+        return openSegment(segment, Long.MAX_VALUE);
+    }
+
+    /**
+     * 세그먼트의 앞 length바이트(텍스트 기준)만 읽는 스트림
+     * 기록 중이던 세그먼트가 그 사이에 교체/압축되었어도 앞부분은 같으므로 압축된 파일에서 같은 길이를 읽습니다.
+     */
+    private static InputStream openSegment(File segment, long length) throws IOException {
+        if (!isCompressed(segment) && !segment.exists()) {
+            segment = new File(segment.getPath() + ".gz");
+        }
+        InputStream in = isCompressed(segment) ? new GZIPInputStream(new FileInputStream(segment)) : new FileInputStream(segment);
+        return (length == Long.MAX_VALUE) ? in : new WrittenPartInputStream(in, length);
+    }
+
+    static boolean isCompressed(File segment) {
+        return segment.getName().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * 압축 중에 종료되어 남은 임시 파일 삭제 (원본 세그먼트는 남아 있으므로 다시 압축)
+     */
+    private void deleteUnfinishedCompression() {
+        File[] temps = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix + "_") && name.endsWith(COMPRESSED_SUFFIX + LogSegmentCompressor.TEMP_SUFFIX);
+            }
+        });
+        if (temps != null) {
+            for (File temp : temps) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * 같은 초에 세그먼트가 여러 개 생기면 _001, _002...를 붙임 (이름 정렬 순서 = 생성 순서)
+     * 번호는 앞 세그먼트가 보관 크기 때문에 지워졌더라도 이어서 매김
+     */
+    private File newSegmentFile(long time) {
+        String base = prefix + "_" + nameFormat.format(new Date(time));
+        if (!base.equals(lastBaseName)) {
+            lastBaseName = base;
+            sequence = 0;
+        }
+        File segment;
+        do {
+            String suffix = (sequence == 0) ? "" : "_" + (sequence < 10 ? "00" : sequence < 100 ? "0" : "") + sequence;
+            segment = new File(directory, base + suffix + SEGMENT_SUFFIX);
+            sequence++;
+        } while (segment.exists());
+        return segment;
+    }
+
+    /**
+     * 잘라내지 못한 세그먼트(끝이 0x00)를 기록된 부분까지 잘라냅니다.
+     * append()가 0x00을 이스케이프하므로 로그 텍스트에는 0x00이 없고, "기록된 부분 + 0x00 구간"에서 경계를 이진 탐색으로 찾습니다.
+     */
+    static void trimUnused(File segment) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(segment, "rw");
+            long length = raf.length();
+            if (length == 0 || readByte(raf, length - 1) != 0) {
+                return;
+            }
+            long low = 0, high = length - 1; // high: 0x00인 것이 확실한 위치
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (readByte(raf, middle) == 0) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            raf.setLength(low);
+        } catch (IOException e) {
+            // 정리하지 못해도 기록에는 영향 없음
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) { /* 무시 가능 */ }
+            }
+        }
+    }
+
+    private static int readByte(RandomAccessFile raf, long position) throws IOException {
+        raf.seek(position);
+        return raf.read();
+    }
+
+    /**
+     * 기록한 길이에서 끝나는 스트림: 기록 중인 세그먼트의 뒷부분(기록하지 않은 0x00 구간)을 읽지 않음
+     */
+    private static class WrittenPartInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        WrittenPartInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return (read(one, 0, 1) < 0) ? -1 : (one[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
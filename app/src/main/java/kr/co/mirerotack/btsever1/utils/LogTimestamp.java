@@ -0,0 +1,38 @@
+package kr.co.mirerotack.btsever1.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 로그 타임스탬프("yyyy-MM-dd HH:mm:ss.SSS") 캐시 (기록 스레드 전용, 스레드 안전하지 않음)
+ * 같은 밀리초면 직전 문자열을 그대로 쓰고, 초 단위 앞부분은 초가 바뀔 때만 SimpleDateFormat으로 만듭니다.
+ */
+public class LogTimestamp {
+    private final SimpleDateFormat secondFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    private long cachedSecond = Long.MIN_VALUE;
+    private String secondPrefix = null; // "yyyy-MM-dd HH:mm:ss."
+    private long cachedMillis = Long.MIN_VALUE;
+    private String cached = null;
+
+    public String format(long millis) {
+        if (millis == cachedMillis) {
+            return cached;
+        }
+        long second = millis / 1000;
+        if (second != cachedSecond) {
+            secondPrefix = secondFormat.format(new Date(second * 1000)) + ".";
+            cachedSecond = second;
+        }
+
+        int fraction = (int) (millis % 1000);
+        StringBuilder sb = new StringBuilder(secondPrefix.length() + 3).append(secondPrefix);
+        if (fraction < 100) sb.append('0');
+        if (fraction < 10) sb.append('0');
+        sb.append(fraction);
+
+        cachedMillis = millis;
+        cached = sb.toString();
+        return cached;
+    }
+}
@@ -3,119 +3,123 @@ package kr.co.mirerotack.btsever1.utils;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
-
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 파일/콘솔 로그
+ * logMessage는 메시지를 링 버퍼(LogRing)에 넣기만 하고, 타임스탬프 포맷/파일 기록/콘솔 출력은 기록 스레드가 모아서 처리합니다.
+ * (수신 스레드가 로그 I/O를 기다리지 않음, [X] 메시지는 바로 기록)
+ * 파일은 메모리 매핑한 세그먼트(LogSegmentStore)에 붙여 쓰며, 크기/기간으로 교체하고 전체 크기를 넘으면 오래된 세그먼트부터 삭제합니다.
+ * 교체한 세그먼트는 백그라운드에서 gzip으로 압축하며, 로그를 내보낼 때는 openLogStream()으로 압축 여부와 관계없이 읽습니다.
+ * (exportLogs()는 이 스트림을 파일 하나로 내보내며, 서비스의 export_logs Intent에서 사용)
+ * <p>
+ * 프로토콜 코드는 하위 시스템별 LogChannel(channel("modem") 등)의 레벨별 메서드로 기록하며,
+ * 레벨은 setLevels("modem=TRACE,*=INFO")로 실행 중에 바꿀 수 있습니다. logMessage는 레벨 없이 항상 기록합니다.
+ */
 public class Logger {
     private static final String TAG = "TCPCOM";
     public static final String logDirectory = "/data/data/kr.co.mirerotack.btsever1/files";  // ✅ 로그 디렉토리 경로
-    private static String logFilePath = null;
-    private static FileWriter fileWriter = null;
-    private static PrintWriter printWriter = null;
-    private static final long MAX_LOG_SIZE = 10 * 1024 * 1024; // 10MB
-    private static final long LATEST_KEEP_LOG_SIZE = 100 * 1024; // 마지막 100KB는 유지 후, reset
+    private static final String LOG_FILE_PREFIX = "btsever1";
+    public static final String LOG_EXPORT_FILE = "log_export.txt.gz"; // 세그먼트 이름(btsever1_)과 겹치지 않도록
 
-    // ✅ 클래스 로딩 시 자동으로 로그 파일명 설정
-    static {
-        setLogFilePath();
-        initLogFile();
-    }
+    private static final int SEGMENT_SIZE = 1024 * 1024;                    // 세그먼트 하나의 크기 (1MB)
+    private static final long SEGMENT_MAX_AGE_MS = 24L * 60 * 60 * 1000;    // 하루가 지나면 새 세그먼트
+    private static final long LOG_RETENTION_BYTES = 10L * 1024 * 1024;      // 보관할 로그 전체 크기 (10MB, 압축된 크기 기준)
 
-    public static void initFileWriter() throws IOException {
-        if (fileWriter == null) {
-            return;
-        }
+    private static final int RING_CAPACITY = 4096;     // 기록을 기다릴 수 있는 메시지 수 (넘치면 버리고 개수만 기록)
+    private static final int BATCH_SIZE = 64;          // 이만큼 쌓이면 기록 스레드를 깨움
+    private static final int MAX_DRAIN = 256;          // 기록 스레드가 한 번에 가져와 기록하는 메시지 수
+    private static final long FLUSH_INTERVAL_MS = 500; // 적게 쌓여도 이 주기마다 기록
+    private static final long CLOSE_TIMEOUT_MS = 2000; // closeLogger에서 남은 메시지 기록을 기다리는 시간
 
-        fileWriter.close();
-        fileWriter = null;
-    }
+    private static final Map<String, LogChannel> channels = new HashMap<String, LogChannel>();
+    private static int defaultLevel = LogChannel.INFO; // 레벨을 따로 정하지 않은 채널의 레벨
+    private static final LogChannel progress = channel("progress");
 
-    public static void initPrintWriter() throws IOException {
-        if (printWriter == null) {
-            return;
-        }
+    private static LogSegmentStore store = null;
+    private static LogRing ring = null;
+    private static Thread writerThread = null;
 
-        printWriter.close();
-        printWriter = null;
+    // ✅ 클래스 로딩 시 자동으로 로그 세그먼트 열기
+    static {
+        initLogFile();
     }
 
-    public static void initLogFile() {
+    public static synchronized void initLogFile() {
+        if (writerThread != null) {
+            return;
+        }
+        LogSegmentStore segments = new LogSegmentStore(new File(logDirectory), LOG_FILE_PREFIX,
+                SEGMENT_SIZE, SEGMENT_MAX_AGE_MS, LOG_RETENTION_BYTES);
+        segments.enableCompression();
         try {
-            if (fileWriter == null || printWriter == null) {
-                File dir = new File(logDirectory);
-                if (!dir.exists() && !dir.mkdirs()) {
-                    Log.e(TAG, "[X] Failed to create log directory!");
-                    return;
-                }
-
-                File file = new File(getLogFilePath());
-                fileWriter = new FileWriter(file, true);
-                printWriter = new PrintWriter(fileWriter);
-                // logMessage("[O] Log file initialization completed: " + getLogFilePath());
-            }
+            segments.open();
         } catch (IOException e) {
             Log.e(TAG, "[X] Log file initialization failed: " + e.getMessage());
+            return;
         }
+        store = segments;
+        startWriter(segments);
     }
 
-    private static File checkSizeOfLogFile() {
-        File logFile = new File(getLogFilePath());
+    /**
+     * 지금 기록 중인 세그먼트 파일 (로그가 열리지 않았으면 null)
+     */
+    public static String getLogFilePath() {
+        LogSegmentStore segments = store;
+        File current = (segments != null) ? segments.getCurrentFile() : null;
+        return (current != null) ? current.getPath() : null;
+    }
 
-        if (!logFile.exists() || logFile.length() <= MAX_LOG_SIZE) {
-            return logFile; // 로그 파일이 존재하지 않거나 크기가 작으면 그대로 유지
-        }
+    /**
+     * 보관 중인 로그 전체를 오래된 순서로 읽는 스트림 (압축된 세그먼트는 풀어서, 로그가 열리지 않았으면 null)
+     */
+    public static InputStream openLogStream() {
+        LogSegmentStore segments = store;
+        return (segments != null) ? segments.openLogs() : null;
+    }
 
-        RandomAccessFile raf = null;
+    /**
+     * 보관 중인 로그 전체를 logDirectory의 LOG_EXPORT_FILE(gzip) 하나로 내보냅니다 (adb pull로 가져가기 위함, 이전 파일은 덮어씀)
+     * 압축된 세그먼트도 풀어서 이어 쓰므로, 가져간 쪽에서는 gunzip 한 번으로 전체 텍스트를 읽습니다.
+     * 보관 크기만큼 읽고 압축하므로 메인 스레드에서 호출하지 않습니다.
+     * @return 내보낸 파일
+     * @throws IOException 로그가 열리지 않았거나 파일을 쓰지 못한 경우
+     */
+    public static File exportLogs() throws IOException {
+        InputStream in = openLogStream();
+        if (in == null) {
+            throw new IOException("Log is not open");
+        }
+        File target = new File(logDirectory, LOG_EXPORT_FILE);
+        File temp = new File(logDirectory, LOG_EXPORT_FILE + ".tmp"); // 내보내는 도중에는 이전 파일을 그대로 둠
         try {
-            raf = new RandomAccessFile(logFile, "rw");
-            long fileSize = raf.length();
-            long keepSize = LATEST_KEEP_LOG_SIZE;
-            long startPos = Math.max(0, fileSize - keepSize); // 파일 끝에서 10KB 앞 지점
-
-            // 새로운 파일 내용을 저장할 바이트 배열
-            byte[] buffer = new byte[(int) (fileSize - startPos)];
-            raf.seek(startPos);
-            raf.readFully(buffer);
-
-            // 기존 파일(10MB 이상)을 비우고, 마지막 100KB 데이터만 유지
-            raf.setLength(0);
-            raf.seek(0);
-            raf.write(buffer);
-
-            logMessage("[W] The log file is too large (" + (MAX_LOG_SIZE / 1024) / 1024 + " MB) and has been reset. (Only the last " + LATEST_KEEP_LOG_SIZE / 1024 + " KB are kept)");
-        } catch (IOException e) {
-            logMessage("[X] Error occurred while initializing the log file: " + e.getMessage());
-        } finally {
-            // API 15에서는 try-with-resources가 없으므로 수동으로 닫아야 함
-            if (raf != null) {
-                try {
-                    raf.close();
-                } catch (IOException e) {
-                    logMessage("[X] Failed to close the log file: " + e.getMessage());
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 64 * 1024);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
                 }
+            } finally {
+                out.close();
             }
+        } finally {
+            in.close();
         }
-        return logFile;
-    }
-
-
-    private static void setLogFilePath() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
-        String timestamp = sdf.format(new Date());
-        logFilePath = logDirectory + "/btsever1_" + timestamp + ".txt";
-    }
-
-    public static String getLogFilePath() {
-        // ✅ logFileName이 비어 있으면 자동 초기화
-        if (logFilePath == null || logFilePath.trim().isEmpty()) {
-            setLogFilePath();
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Failed to write " + target.getPath());
         }
-        return logFilePath;
+        return target;
     }
 
     // ✅ 현재 시간을 "yyyy-MM-dd HH:mm:ss.SSS" 형식으로 변환 (한국 시간 기준)
@@ -126,55 +130,187 @@ public class Logger {
     }
 
     public static void logMessage(String message) {
-        try {
-            if (printWriter != null) {
-                if (message.isEmpty()) {
-                    message = "[NO OUTPUT]";
-                }
+        LogRing target = ring;
+        if (target == null) {
+            return;
+        }
+        if (message == null || message.isEmpty()) {
+            message = (message == null) ? "null" : "[NO OUTPUT]";
+        }
+        // 시각만 기록해 두고 포맷은 기록 스레드에서, 오류 메시지는 쌓이기를 기다리지 않고 바로 기록
+        target.offer(System.currentTimeMillis(), message, message.contains("[X]"));
+    }
 
-                String timestamp = getCurrentTimestamp();  // ✅ 한국 시간 기반 타임스탬프 가져오기
-                printWriter.println("[" + timestamp + "] " + message);
-                printWriter.flush(); // ✅ 즉시 기록
+    /**
+     * 레벨이 정해진 메시지를 기록합니다 (LogChannel에서 레벨을 확인한 뒤 호출)
+     */
+    static void log(int level, String message) {
+        LogRing target = ring;
+        if (target == null) {
+            return;
+        }
+        if (level >= LogChannel.ERROR) {
+            target.offer(System.currentTimeMillis(), "[X] " + message, true);
+        } else {
+            target.offer(System.currentTimeMillis(), (level == LogChannel.WARN) ? "[W] " + message : message,
+                    message.contains("[X]"));
+        }
+    }
+
+    /**
+     * 하위 시스템의 로그 채널 (없으면 기본 레벨로 만듦, 같은 이름이면 같은 채널)
+     */
+    public static LogChannel channel(String name) {
+        synchronized (channels) {
+            LogChannel channel = channels.get(name);
+            if (channel == null) {
+                channel = new LogChannel(name, defaultLevel);
+                channels.put(name, channel);
+            }
+            return channel;
+        }
+    }
 
-                if (message.contains("null") || message.contains("[X]")) {
-                    Log.e(TAG, "[" + timestamp + "] " + message);  // 콘솔 에러 로그 출력(확인용)
+    /**
+     * 채널 레벨을 바꿉니다. 예: "modem=TRACE,ymodem=DEBUG" ("*"는 기본 레벨과 모든 채널, 앞에서부터 차례로 적용)
+     * @return 모두 적용했으면 true, 형식이 잘못된 항목이 있으면 false (그 항목만 무시)
+     */
+    public static boolean setLevels(String spec) {
+        boolean valid = true;
+        for (String entry : spec.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            String name = (separator > 0) ? entry.substring(0, separator).trim() : "";
+            int level = name.isEmpty() ? -1 : LogChannel.parseLevel(entry.substring(separator + 1));
+            if (level < 0) {
+                valid = false;
+                continue;
+            }
+            synchronized (channels) {
+                if (name.equals("*")) {
+                    defaultLevel = level;
+                    for (LogChannel channel : channels.values()) {
+                        channel.setLevel(level);
+                    }
                 } else {
-                    Log.d(TAG, "[" + timestamp + "] " + message);  // 콘솔 정상 로그 출력
+                    channel(name).setLevel(level);
                 }
+            }
+        }
+        return valid;
+    }
 
+    /**
+     * 현재 채널 레벨 (예: "*=INFO,modem=TRACE")
+     */
+    public static String getLevels() {
+        synchronized (channels) {
+            StringBuilder sb = new StringBuilder("*=").append(LogChannel.levelName(defaultLevel));
+            for (LogChannel channel : channels.values()) {
+                if (channel.getLevel() != defaultLevel) {
+                    sb.append(',').append(channel.getName()).append('=').append(LogChannel.levelName(channel.getLevel()));
+                }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "[X] Log save failed: " + e.getMessage());
+            return sb.toString();
         }
     }
 
-    public static void closeLogger() {
-        try {
-            if (printWriter != null) {
-                printWriter.close();
-                printWriter = null;
+    private static void startWriter(final LogSegmentStore out) {
+        final LogRing target = new LogRing(RING_CAPACITY, BATCH_SIZE);
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop(target, out);
             }
-            if (fileWriter != null) {
-                fileWriter.close();
-                fileWriter = null;
+        }, "Logger");
+        writerThread.setDaemon(true); // 로그 때문에 프로세스 종료가 늦어지지 않도록
+        ring = target;
+        writerThread.start();
+    }
+
+    /**
+     * 기록 스레드: 쌓인 메시지를 한 번에 가져와 세그먼트에 붙여 씀, 종료 시 세그먼트를 기록한 크기로 잘라내고 닫음
+     */
+    private static void writeLoop(LogRing source, LogSegmentStore out) {
+        LogTimestamp clock = new LogTimestamp();
+        StringBuilder line = new StringBuilder(256);
+        long[] times = new long[MAX_DRAIN];
+        String[] messages = new String[MAX_DRAIN];
+        try {
+            int drained;
+            while ((drained = source.drainTo(times, messages, FLUSH_INTERVAL_MS)) >= 0) {
+                int dropped = source.takeDropped();
+                if (dropped > 0) {
+                    writeLine(out, line, clock, System.currentTimeMillis(),
+                            "[W] " + dropped + " log messages were dropped (log buffer full)");
+                }
+                for (int i = 0; i < drained; i++) {
+                    writeLine(out, line, clock, times[i], messages[i]);
+                    messages[i] = null;
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "[X] Log save failed: " + e.getMessage());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeLine(LogSegmentStore out, StringBuilder line, LogTimestamp clock, long time, String message) {
+        line.setLength(0);
+        line.append('[').append(clock.format(time)).append("] ").append(message);
+        String console = line.toString();
+        try {
+            out.append(line.append('\n'));
         } catch (IOException e) {
-            Log.e(TAG, "[X] Failed to close the log file: " + e.getMessage());
+            Log.e(TAG, "[X] Log save failed: " + e.getMessage()); // 콘솔에는 그대로 출력
+        }
+
+        if (message.contains("null") || message.contains("[X]")) {
+            Log.e(TAG, console);  // 콘솔 에러 로그 출력(확인용)
+        } else {
+            Log.d(TAG, console);  // 콘솔 정상 로그 출력
         }
     }
 
+    /**
+     * 기록 스레드를 멈춥니다. 이미 넣은 메시지는 기록한 뒤 종료합니다 (최대 CLOSE_TIMEOUT_MS)
+     */
+    public static synchronized void closeLogger() {
+        if (writerThread == null) {
+            return;
+        }
+        ring.close();
+        ring = null;
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+        store = null;
+    }
+
     public static void logReceivedPacket(byte[] packet, int packetNumber, int totalPacketSize) {
-        int packetSize = packet.length;
-        String hexPreview = toHexString(packet, 10, 10); // 앞 20바이트 + 뒤 20바이트 Hex 변환
+        logReceivedPacket(packet.length, packetNumber, totalPacketSize);
+    }
 
+    public static void logReceivedPacket(int packetSize, int packetNumber, int totalPacketSize) {
+        // String.format()과 Hex 미리보기(toHexString)는 수신 경로에서 불필요한 객체를 많이 만들므로 사용하지 않음
+        if (!progress.isEnabled(LogChannel.INFO)) {
+            return;
+        }
         if (packetSize == 128) {
-            Logger.logMessage(String.format("3-2. [RX] Progress: 100%% | Packet Number: %d", packetNumber, packetSize));
-//            logMessage(String.format(EmojiSample.RX + "3-2. [RX] 진행률: 100%% | %d번 째 | packet(%d) : %s", packetNumber, packetSize, hexPreview));
-        } else if (packetSize == 1024) {
-            Logger.logMessage(String.format("5-2. [RX] Progress: %.1f%% | Packet Number: %d", ((packetNumber + 1) / (float) totalPacketSize) * 100, packetNumber));
-//            logMessage(String.format(EmojiSample.RX + "5-2. [RX] 진행률: %.1f%% | %d번 째 | packet(%d) : %s", (packetNumber / totalPacketSize) * 100.0, packetNumber, packetSize, hexPreview));
+            progress.info("3-2. [RX] Progress: 100% | Packet Number: {}", packetNumber);
+        } else if (packetSize > 0) { // 1K 또는 협상한 확장 블록
+            int permille = (int) ((packetNumber + 1) * 1000L / Math.max(1, totalPacketSize)); // 소수점 첫째 자리까지 표시
+            progress.info("5-2. [RX] Progress: {}.{}% | Packet Number: {}", permille / 10, permille % 10, packetNumber);
         } else {
-            Logger.logMessage("[Error] Invalid packet size, packetSize: " + packetSize);
+            progress.warn("Invalid packet size, packetSize: {}", packetSize);
         }
     }
 
@@ -24,6 +24,10 @@ public class Timer {
         return (System.currentTimeMillis() > startTime + timeout);
     }
 
+    public long getRemainingTime() {
+        return startTime + timeout - System.currentTimeMillis();
+    }
+
     public long getStartTime() {
         return this.startTime;
     }
@@ -1,7 +1,14 @@
 package kr.co.mirerotack.btsever1.utils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * Uses table for irreducible polynomial:  1 + x^2 + x^15 + x^16
+ * <p>
+ * CRC-16/XMODEM (초기값 0, MSB 우선). 수신 버퍼 안의 임의 구간(offset/length)과 ByteBuffer를 복사 없이 계산하며,
+ * update()로 이어서 계산할 수 있으므로 바이트가 도착하는 대로 나누어 계산해도 결과가 같습니다.
+ * 8바이트 단위는 slicing-by-8 테이블로 처리합니다 (바이트 단위 테이블 조회보다 반복당 의존성이 짧음).
  */
 
 public class YModemCRC16 {
@@ -41,16 +48,104 @@ public class YModemCRC16 {
             0x6E17, 0x7E36, 0x4E55, 0x5E74, 0x2E93, 0x3EB2, 0x0ED1, 0x1EF0,
     };
 
+    // slicing-by-8 테이블: slices[k][i] = 바이트 i 뒤에 0 바이트 k개를 더 넣었을 때의 CRC (slices[0] == table)
+    private static final int[][] slices = new int[8][];
+
+    static {
+        slices[0] = table;
+        for (int k = 1; k < 8; k++) {
+            int[] previous = slices[k - 1];
+            int[] slice = new int[256];
+            for (int i = 0; i < 256; i++) {
+                int crc = previous[i];
+                slice[i] = ((crc << 8) ^ table[crc >>> 8]) & 0xFFFF;
+            }
+            slices[k] = slice;
+        }
+    }
+
     public int getCRCLength() {
         return 2;
     }
 
     public long calcCRC(byte[] block) {
-        int crc = 0x0000;
-        for (byte b : block) {
-            crc = ((crc << 8) ^ table[((crc >> 8) ^ (0xff & b))]) & 0xFFFF;
+        return update(0, block, 0, block.length);
+    }
+
+    /**
+     * 수신 버퍼 안의 블록을 복사하지 않고 바로 계산할 때 사용
+     */
+    public long calcCRC(byte[] data, int offset, int length) {
+        return update(0, data, offset, length);
+    }
+
+    /**
+     * 이전까지 계산한 crc에 이어서 data[offset, offset + length) 구간을 계산합니다.
+     *
+     * @param crc 이전 결과 (처음이면 0)
+     * @return 갱신된 CRC (하위 16비트)
+     */
+    public static int update(int crc, byte[] data, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+
+        int[] t0 = slices[0], t1 = slices[1], t2 = slices[2], t3 = slices[3];
+        int[] t4 = slices[4], t5 = slices[5], t6 = slices[6], t7 = slices[7];
+
+        // 앞의 두 바이트에 현재 CRC(상위/하위 바이트)를 XOR 하고, 8바이트를 테이블 8개로 한 번에 계산
+        while (end - i >= 8) {
+            crc = t7[((crc >> 8) ^ data[i]) & 0xFF] ^ t6[(crc ^ data[i + 1]) & 0xFF]
+                    ^ t5[data[i + 2] & 0xFF] ^ t4[data[i + 3] & 0xFF]
+                    ^ t3[data[i + 4] & 0xFF] ^ t2[data[i + 5] & 0xFF]
+                    ^ t1[data[i + 6] & 0xFF] ^ t0[data[i + 7] & 0xFF];
+            i += 8;
+        }
+
+        for (; i < end; i++) {
+            crc = ((crc << 8) ^ t0[((crc >> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    /**
+     * ByteBuffer의 position부터 limit까지 이어서 계산하고, position을 limit으로 옮깁니다. (java.util.zip.CRC32와 동일한 규칙)
+     */
+    public static int update(int crc, ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            crc = update(crc, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            crc = updateDirect(crc, buffer, buffer.position(), buffer.limit());
+        }
+        buffer.position(buffer.limit());
+        return crc;
+    }
+
+    /**
+     * direct 버퍼: 배열로 복사하지 않고 8바이트씩 절대 위치로 읽어(getLong) 계산
+     */
+    private static int updateDirect(int crc, ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+
+        int[] t0 = slices[0], t1 = slices[1], t2 = slices[2], t3 = slices[3];
+        int[] t4 = slices[4], t5 = slices[5], t6 = slices[6], t7 = slices[7];
+
+        while (end - i >= 8) {
+            long word = buffer.getLong(i);
+            if (!bigEndian) {
+                word = Long.reverseBytes(word); // 첫 바이트가 최상위 바이트가 되도록
+            }
+            crc = t7[((crc >> 8) ^ (int) (word >>> 56)) & 0xFF] ^ t6[(crc ^ (int) (word >>> 48)) & 0xFF]
+                    ^ t5[(int) (word >>> 40) & 0xFF] ^ t4[(int) (word >>> 32) & 0xFF]
+                    ^ t3[(int) (word >>> 24) & 0xFF] ^ t2[(int) (word >>> 16) & 0xFF]
+                    ^ t1[(int) (word >>> 8) & 0xFF] ^ t0[(int) word & 0xFF];
+            i += 8;
         }
 
+        for (; i < end; i++) {
+            crc = ((crc << 8) ^ t0[((crc >> 8) ^ buffer.get(i)) & 0xFF]) & 0xFFFF;
+        }
         return crc;
     }
 }
\ No newline at end of file
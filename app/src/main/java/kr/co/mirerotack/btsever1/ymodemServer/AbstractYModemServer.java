@@ -15,21 +15,31 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
-import java.net.Socket;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import kr.co.mirerotack.btsever1.RtuSnapshot;
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
 import kr.co.mirerotack.btsever1.model.ApkValidationResult;
 import kr.co.mirerotack.btsever1.model.InstallResult;
 import kr.co.mirerotack.btsever1.model.UninstallResult;
 import kr.co.mirerotack.btsever1.model.YModemServerInterface;
+import kr.co.mirerotack.btsever1.utils.LogChannel;
+import kr.co.mirerotack.btsever1.utils.Logger;
 
 import static kr.co.mirerotack.btsever1.utils.DummyData.createDummyData;
 import static kr.co.mirerotack.btsever1.utils.Logger.getCurrentTimestamp;
-import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
 import static kr.co.mirerotack.btsever1.utils.readwriteJson.dataFileName;
 import static kr.co.mirerotack.btsever1.utils.readwriteJson.readJsonFile;
 import static kr.co.mirerotack.btsever1.utils.readwriteJson.updateTimestampToFile;
@@ -39,12 +49,16 @@ import static kr.co.mirerotack.btsever1.utils.readwriteJson.updateTimestampToFil
  * 실제 소켓 연결 부분만 하위 클래스에서 구현하고, YModem 프로토콜 처리는 공통화
  */
 public abstract class AbstractYModemServer implements YModemServerInterface {
+    private static final LogChannel LOG = Logger.channel("server");
+
     // YModem 프로토콜 상수들 (공통)
     protected static final byte SOH = 0x01; /* 128바이트 패킷 시작 */
     protected static final byte STX = 0x02; /* 1024바이트 패킷 시작 */
     protected static final byte EOT = 0x04; /* 전송 종료 */
     protected static final byte ACK = 0x06; /* 수신 확인 */
     protected static final byte NAK = 0x15; /* 오류 발생 */
+    protected static final byte NOT_NEEDED = 0x16; /* 설치 필요 없음 (4-1 ACK 대신) */
+    protected static final byte ALREADY_STAGED = 0x17; /* 같은 해시의 APK를 이미 보관 중 (4-1 ACK 대신, 데이터 없이 7-1 EOT 교환으로) */
     protected static final byte CAN = 0x18; /* 취소 */
     protected static final byte CPMEOF = 0x1A; /* 마지막 패딩 */
     protected static final byte START_ACK = 'C'; /* YModem 시작 신호 */
@@ -59,6 +73,7 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
 
     protected Handler handler = new Handler(Looper.getMainLooper());
     protected Gson gson = new Gson();
+    protected final FirmwareStagingCache stagingCache; // 최근에 받은 APK (sha256 → 파일)
 
     private Thread serverThread;
     private Thread triggerThread;
@@ -71,6 +86,8 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
     public AbstractYModemServer(File apkDownloadPath, Context context) {
         this.APK_PATH = apkDownloadPath;
         this.context = context;
+        this.stagingCache = new FirmwareStagingCache(new File(apkDownloadPath, FirmwareStagingCache.DIRECTORY_NAME),
+                FirmwareStagingCache.DEFAULT_MAX_ENTRIES, FirmwareStagingCache.DEFAULT_MAX_TOTAL_SIZE);
     }
 
     /**
@@ -84,11 +101,69 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
     protected abstract String getClientInfo(Object clientConnection);
     protected abstract boolean isConnected(Object clientConnection);
 
+    /**
+     * 클라이언트 연결의 읽기 타임아웃 제어를 반환합니다 (블로킹 read + 데드라인 수신용)
+     * 타임아웃을 지원하지 않는 전송은 null을 반환하며, 이 경우 FrameReader가 폴링 방식으로 동작합니다
+     * @param clientConnection 클라이언트 연결 객체
+     * @return 읽기 타임아웃 제어 객체 또는 null
+     */
+    protected FrameReader.ReadTimeoutControl getReadTimeoutControl(Object clientConnection) {
+        return null;
+    }
+
+    /**
+     * 세션을 동시에 처리할 수 있는 전송인지 여부 (기본: 한 번에 한 연결씩 처리)
+     * true이면 accept 스레드는 연결만 받고, 각 세션은 제한된 크기의 세션 풀에서 처리됩니다
+     */
+    protected boolean supportsConcurrentSessions() {
+        return false;
+    }
+
+    /**
+     * 트리거 데이터 전용 소켓을 엽니다. 지원하지 않는 전송은 false를 반환하며 트리거 스레드를 시작하지 않습니다
+     * @param port YModem 서버 포트 (트리거 포트는 하위 클래스에서 결정)
+     */
+    protected boolean startTriggerSocket(int port) throws IOException {
+        return false;
+    }
+
+    protected Object acceptTriggerConnection() throws IOException {
+        throw new IOException(getServerType() + " does not support trigger connections");
+    }
+
+    protected void closeTriggerSocket() {
+    }
+
+    public static final int DEFAULT_MAX_CONCURRENT_SESSIONS = 4; // HMI 동기화 + 펌웨어 업로드 + 여유분
+    private static final long SESSION_THREAD_KEEP_ALIVE = 30; // 유휴 세션 스레드 유지 시간 (초)
+    protected static final int EOT_WAIT_TIMEOUT = 30_000; // 7-4. 송신자의 EOT를 기다리는 최대 시간 (ms)
+
+    private static final long INSTALLED_PACKAGE_CACHE_TTL = 60_000; // 설치된 앱 정보 캐시 유지 시간 (ms)
+
+    private int maxConcurrentSessions = DEFAULT_MAX_CONCURRENT_SESSIONS;
+    private ThreadPoolExecutor sessionExecutor;
+    private final AtomicBoolean firmwareUploadInProgress = new AtomicBoolean(false); // 펌웨어(APK) 업로드는 한 번에 하나만
+    private final Object installedPackageLock = new Object();
+    private PackageInfo installedPackage = null;  // 캐시된 설치 앱 정보 (null: 설치되어 있지 않음)
+    private long installedPackageCheckedAt = -1;  // 마지막 조회 시각, -1이면 조회 전
+
+    /**
+     * 동시에 처리할 최대 세션 수를 설정합니다 (startServer 전에 호출)
+     * @param maxConcurrentSessions 1 이상의 값, 초과 연결은 즉시 거절됨
+     */
+    public void setMaxConcurrentSessions(int maxConcurrentSessions) {
+        this.maxConcurrentSessions = Math.max(1, maxConcurrentSessions);
+    }
+
     private volatile Object latestClient = null;
 
     @Override
     public void startServer(int port) {
         isRunning = true;
+        if (supportsConcurrentSessions()) {
+            sessionExecutor = createSessionExecutor();
+        }
+
         serverThread = new Thread(new Runnable() {
             @Override
             public void run() {
@@ -100,39 +175,43 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
                         // 서버 소켓 시작 (하위 클래스에서 구현)
                         startServerSocket(port);
 
-                        logMessage("==========================================================");
-                        logMessage(getServerType() + " Server started on port/channel: " + port);
+                        LOG.info("==========================================================");
+                        LOG.info("{} Server started on port/channel: {}", getServerType(), port);
 
                         while (isRunning) {
-                            logMessage("--------------------1. " + getServerType() + " Ready to receive-----------------------");
+                            LOG.info("--------------------1. {} Ready to receive-----------------------", getServerType());
 
                             try {
                                 if (errorCount > 3) {
-                                    logMessage("[X] " + getServerType() + " Socket error occurred more than 3 times. Restarting...");
+                                    LOG.error("{} Socket error occurred more than 3 times. Restarting...", getServerType());
                                     errorCount = 0;
                                     break;
                                 }
 
-                                logMessage("--------------------2. " + getServerType() + " Waiting for connection---------------------");
+                                LOG.info("--------------------2. {} Waiting for connection---------------------", getServerType());
                                 Object clientConnection = acceptClientConnection(); // 하위 클래스에서 구현
 
-                                logMessage("--------------------3. " + getServerType() + " Starting to receive--------------------");
-                                logMessage("[O] " + getServerType() + " Client connected: " + getClientInfo(clientConnection));
+                                LOG.info("--------------------3. {} Starting to receive--------------------", getServerType());
+                                LOG.info("[O] {} Client connected: {}", getServerType(), getClientInfo(clientConnection));
 
-                                // 🎯 핵심: 공통 YModem 파일 처리 로직
-                                handleYModemTransmission(clientConnection);
+                                if (sessionExecutor != null) {
+                                    dispatchSession(clientConnection); // 세션 풀에서 처리, accept 스레드는 바로 다음 연결 대기
+                                } else {
+                                    // 🎯 핵심: 공통 YModem 파일 처리 로직
+                                    handleYModemTransmission(clientConnection);
+                                }
 
                                 latestClient = clientConnection;
 
 
                             } catch (IOException e) {
-                                logMessage(getServerType() + " Server communication error: " + e.getMessage());
+                                LOG.info("{} Server communication error: {}", getServerType(), e.getMessage());
                                 waitSeconds(5000);
                                 break;
                             }
                         }
                     } catch (IOException e) {
-                        logMessage("[X] Failed to start " + getServerType() + " server: " + e.getMessage());
+                        LOG.error("Failed to start {} server: {}", getServerType(), e.getMessage());
                         waitSeconds(10000);
                         break;
                     } finally {
@@ -143,41 +222,37 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
         });
         serverThread.start();
 
+        try {
+            if (!startTriggerSocket(port)) {
+                return;
+            }
+        } catch (IOException e) {
+            LOG.error("TriggerThread: 트리거 소켓 바인딩 실패: {}", e.getMessage());
+            return;
+        }
+
+        // 트리거 데이터는 전용 소켓에서만 accept 하므로 YModem 연결과 경쟁하지 않음
         triggerThread = new Thread(new Runnable() {
             @Override
             public void run() {
-                Socket triggerSocket = null;
-                OutputStream out = null;
-
-                try {
-                    triggerSocket = (Socket) acceptClientConnection();
-                } catch (IOException e) {
-                    logMessage("[X] TriggerThread: 연결 실패 또는 전송 오류: " + e.getCause() + ": " + e.getMessage());
-                    waitSeconds(5000);
-                }
-
                 while (isRunning) {
-                    if (triggerSocket == null || !triggerSocket.isConnected()) {
-                        logMessage("triggerSocket: close or disconnected");
-                    }
-
+                    Object triggerConnection = null;
                     try {
-                        out = triggerSocket.getOutputStream();
-                        boolean isSuccess = sendTriggerData(context, out, 77.7f, 123);
+                        triggerConnection = acceptTriggerConnection();
+                        LOG.info("[O] TriggerThread: Client connected: {}", getClientInfo(triggerConnection));
+                        OutputStream out = getOutputStream(triggerConnection);
 
-                        // 클라이언트가 연결을 종료해서 실패한 경우, 새로운 소켓 연결을 대기함
-                        if (!isSuccess) {
-                            try {
-                                triggerSocket = (Socket) acceptClientConnection();
-                            } catch (IOException e) {
-                                logMessage("[X] TriggerThread: 연결 실패 또는 전송 오류: " + e.getCause() + ": " + e.getMessage());
-                                waitSeconds(5000);
-                            }
-                            continue;
+                        // 클라이언트가 연결을 종료해서 실패하면, 새로운 트리거 연결을 대기함
+                        while (isRunning && sendTriggerData(context, out, 77.7f, 123)) {
+                            waitSeconds(1000);
                         }
-                        waitSeconds(1000);
                     } catch (IOException e) {
-                        throw new RuntimeException(e);
+                        LOG.error("TriggerThread: 연결 실패 또는 전송 오류: {}: {}", e.getCause(), e.getMessage());
+                        waitSeconds(5000);
+                    } finally {
+                        if (triggerConnection != null) {
+                            closeClientConnection(triggerConnection);
+                        }
                     }
                 }
             }
@@ -185,17 +260,67 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
         triggerThread.start();
     }
 
+    /**
+     * 최대 maxConcurrentSessions개의 세션을 처리하는 풀을 생성합니다
+     * 대기 큐 없이(SynchronousQueue) 동작하므로, 한도를 넘는 연결은 큐에 쌓이지 않고 바로 거절됩니다
+     */
+    private ThreadPoolExecutor createSessionExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrentSessions, maxConcurrentSessions,
+                SESSION_THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger sequence = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, getServerType() + "-session-" + sequence.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true); // 유휴 시에는 스레드를 유지하지 않음
+        LOG.info("[O] {} session pool created (max {} concurrent sessions)", getServerType(), maxConcurrentSessions);
+        return executor;
+    }
+
+    /**
+     * 연결 하나를 세션 풀에 넘깁니다. 풀이 가득 차 있으면 CAN을 보내고 연결을 닫습니다
+     */
+    private void dispatchSession(final Object clientConnection) {
+        try {
+            sessionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    handleYModemTransmission(clientConnection);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.error("2-100. {} Session limit ({}) reached, rejecting {}",
+                    getServerType(), maxConcurrentSessions, getClientInfo(clientConnection));
+            try {
+                OutputStream outputStream = getOutputStream(clientConnection);
+                outputStream.write(new byte[]{CAN, CAN});
+                outputStream.flush();
+            } catch (IOException ignored) {
+                // 거절 통보 실패는 무시하고 연결만 종료
+            }
+            closeClientConnection(clientConnection);
+        }
+    }
+
     @Override
     public void stopServer() {
         isRunning = false;
         try {
             serverThread.stop();
-            triggerThread.stop();
+            if (triggerThread != null) triggerThread.stop();
         } catch (RuntimeException e) {
-            logMessage("[X] " + getServerType() + " Server thread already stopped: " + e.getMessage());
+            LOG.error("{} Server thread already stopped: {}", getServerType(), e.getMessage());
+        }
+        if (sessionExecutor != null) {
+            sessionExecutor.shutdownNow(); // 진행 중인 세션에 인터럽트 → CAN 전송 후 종료
+            sessionExecutor = null;
         }
+        closeTriggerSocket();
         closeExistingServerSocket();
-        logMessage("[O] " + getServerType() + " server stopped");
+        LOG.info("[O] {} server stopped", getServerType());
     }
 
     /**
@@ -206,6 +331,7 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
     protected void handleYModemTransmission(Object clientConnection) {
         InputStream inputStream = null;
         OutputStream outputStream = null;
+        boolean firmwareUploadLocked = false;
 
         File saveDirectory = APK_PATH;
         if (!saveDirectory.exists()) saveDirectory.mkdirs();
@@ -216,124 +342,245 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
             outputStream = getOutputStream(clientConnection);
 
             // 🎯 YModem 클래스는 수정하지 않고 그대로 사용!
-            YModem yModem = new YModem(inputStream, outputStream);
+            YModem yModem = new YModem(inputStream, outputStream, getReadTimeoutControl(clientConnection));
+            yModem.setDeltaBase(getInstalledApkFile()); // 헤더에 delta가 있으면 설치된 APK에 패치를 적용
 
             // 1️⃣ [RX] 헤더 수신
-            logMessage("3. Starting to receive header...");
+            LOG.info("3. Starting to receive header...");
             File receivedHeader = yModem.receive_Header(saveDirectory, true);
             if (receivedHeader == null) {
                 throw new IOException("[X] 3-101. Failed to receive header!");
             }
 
-            logMessage("[O] 3-2. Header received successfully");
+            LOG.info("[O] 3-2. Header received successfully");
+
+            // 헤더에 pkg/ver가 있으면 APK를 받기 전에 판정 → 설치가 필요 없으면 ACK 대신 NOT_NEEDED로 응답하고 종료
+            ApkValidationResult notNeeded = (yModem.getIsSyncDataMode() || yModem.getIsRebootMode()) ? null
+                    : checkAnnouncedFirmware(yModem.getAnnouncedManifest(), yModem.getIsForceUpdateMode());
+            if (notNeeded != null) {
+                sendNotNeeded(outputStream, notNeeded);
+                return;
+            }
+
+            // 같은 해시의 APK를 이미 보관 중이면 데이터를 받지 않고 보관본으로 검증/재부팅
+            String contentHash = yModem.getHeaderOption(YModem.OPTION_SHA256);
+            File stagedFile = (yModem.getIsSyncDataMode() || yModem.getIsRebootMode()) ? null
+                    : stagingCache.find(contentHash, yModem.getOutputFileSize());
+            if (stagedFile != null) {
+                if (!tryBeginFirmwareUpload()) {
+                    sendByte(outputStream, CAN, "[X] 5-800. Another firmware upload is in progress, [TX] CAN");
+                    return;
+                }
+                firmwareUploadLocked = true;
+                sendByte(outputStream, ALREADY_STAGED, "4-1. [TX] ALREADY_STAGED (" + stagedFile.getName() + ")");
+                completeStagedTransfer(stagedFile, contentHash, new File(saveDirectory, yModem.getFileName()),
+                        yModem.getIsForceUpdateMode(), inputStream, outputStream);
+                return;
+            }
+
             sendByte(outputStream, ACK, "4-1. [TX] ACK");
+            yModem.sendNegotiationReply(); // 헤더에 선택 필드를 보낸 송신자에게만 확정된 옵션 회신
+            if (yModem.isEncodingRefused()) {
+                sendByte(outputStream, CAN, "[X] 5-801. Delta/compressed transfer is not available, [TX] CAN");
+                return; // 송신자는 변환하지 않은 APK로 다시 보냄
+            }
 
             if (yModem.getIsSyncDataMode()) {
-                logMessage("handleSyncDataMode Start");
-                syncData(context, inputStream, outputStream);
+                LOG.info("handleSyncDataMode Start");
+                syncData(context, inputStream, outputStream, yModem.getCompression());
                 return;
             }
 
             if (yModem.getIsRebootMode()) {
-                logMessage("handleRebootMode Start");
+                LOG.info("handleRebootMode Start");
                 Process processStart = Runtime.getRuntime().exec("ssu -c reboot");
                 processStart.waitFor();
                 return;
             }
 
-            // 2️⃣ [RX] APK 수신
-            logMessage("5. Waiting for APK data...");
-            File receivedFile = yModem.receive_APK(new File(""), false);
-
-            if (!checkFileIntegrity(receivedFile, yModem.getExpectedFileSize(), outputStream))
+            // 동시 세션 모드에서도 펌웨어 업로드(같은 APK 경로, 재부팅)는 한 번에 하나만 허용
+            if (!tryBeginFirmwareUpload()) {
+                sendByte(outputStream, CAN, "[X] 5-800. Another firmware upload is in progress, [TX] CAN");
                 return;
-
-            receivedFile = renameFile(receivedFile, NEW_APK_FILE_NAME);
-
-            // 3️⃣ [TX] 전송 종료 신호
-            sendByte(outputStream, EOT, "7-1. [TX] EOT");
-            waitSeconds(3000);
-
-            while (true) {
-                if (receiveByte(inputStream) == EOT) {
-                    logMessage("7-4. [RX] EOT");
-                    break;
-                }
             }
+            firmwareUploadLocked = true;
 
-            ApkValidationResult apkValidationResult = ValidateAPK(receivedFile.getPath(), yModem.getIsForceUpdateMode());
-
-            if (apkValidationResult.getIsUpdate()) {
-                logMessage("[Update O] : " + apkValidationResult.getInstallCode() + ", " + apkValidationResult.getComment());
-                logMessage("[O] APK is fine. Rebooting for update in 5 seconds.");
+            // 2️⃣ [RX] APK 수신
+            LOG.info("5. Waiting for APK data...");
+            File receivedFile = yModem.receive_APK(new File(""), false);
 
-                handler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        rebootDevice();
-                    }
-                }, 5000);
-            } else {
-                logMessage("[Update X] : " + apkValidationResult.getUninstallCode() + ", " + apkValidationResult.getComment());
-                logMessage("[X] Update (reboot) skipped, APK file deleted.");
-                receivedFile.delete();
-            }
+            completeApkTransfer(receivedFile, yModem.getOutputFileSize(), yModem.getIsForceUpdateMode(), yModem.getApkManifest(),
+                    contentHash, inputStream, outputStream);
         } catch (Exception e) {
-            logMessage("[X] " + getServerType() + " YModem 처리 중 오류 발생: " + e.getMessage());
+            LOG.error("{} YModem 처리 중 오류 발생: {}", getServerType(), e.getMessage());
+            dumpFlightRecorder();
             if (saveDirectory.exists()) saveDirectory.delete();
             handleError(e);
         } finally {
+            if (firmwareUploadLocked) {
+                endFirmwareUpload();
+            }
             try {
                 if (inputStream != null) inputStream.close();
                 if (outputStream != null) outputStream.close();
                 closeClientConnection(clientConnection);
             } catch (Exception e) {
-                logMessage("[X] " + getServerType() + " connection close error: " + e.getMessage());
+                LOG.error("{} connection close error: {}", getServerType(), e.getMessage());
             }
         }
     }
 
+    /**
+     * 비행 기록기의 최근 프로토콜 이벤트를 로그 디렉토리에 내보냅니다 (전송 실패 분석용, FlightRecorder.main으로 해석)
+     */
+    protected void dumpFlightRecorder() {
+        try {
+            File dump = FlightRecorder.shared().dumpToDirectory(new File(Logger.logDirectory));
+            LOG.info("[O] Flight recorder dumped: {}", dump.getPath());
+        } catch (IOException e) {
+            LOG.error("Failed to dump flight recorder: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 펌웨어 업로드 시작을 표시합니다. 다른 세션이 이미 업로드 중이면 false
+     */
+    protected boolean tryBeginFirmwareUpload() {
+        return firmwareUploadInProgress.compareAndSet(false, true);
+    }
+
+    protected void endFirmwareUpload() {
+        firmwareUploadInProgress.set(false);
+    }
+
+    /**
+     * APK 수신이 끝난 뒤의 공통 처리: 무결성 확인 → 이름 변경 → EOT 교환 → APK 검증 → 재부팅 예약
+     * @param receivedFile 수신된 APK 파일 (패딩 제외, 헤더에 sha256이 있으면 해시 확인 완료)
+     * @param expectedSize 헤더의 파일 크기
+     * @param isForceUpdate 헤더의 강제 업데이트 여부
+     * @param manifest 수신 중에 읽은 매니페스트 정보 (없으면 null → EOT 교환 후 getPackageArchiveInfo로 확인)
+     * @param contentHash 확인을 마친 sha256 (있으면 업데이트할 APK를 스테이징 영역에 보관), 없으면 null
+     */
+    protected void completeApkTransfer(File receivedFile, long expectedSize, boolean isForceUpdate, ApkManifestInfo manifest,
+                                       String contentHash, InputStream inputStream, OutputStream outputStream) throws IOException {
+        if (!checkFileIntegrity(receivedFile, expectedSize, outputStream))
+            return;
+
+        receivedFile = renameFile(receivedFile, NEW_APK_FILE_NAME);
+
+        // 수신 중에 매니페스트를 읽었으면 EOT 교환 전에 바로 판정 (APK 전체를 다시 읽지 않음)
+        ApkValidationResult apkValidationResult = (manifest != null) ? ValidateAPK(receivedFile.getPath(), isForceUpdate, manifest) : null;
+
+        // 3️⃣ [TX] 전송 종료 신호
+        sendByte(outputStream, EOT, "7-1. [TX] EOT");
+        waitSeconds(3000);
+        waitForEot(inputStream);
+
+        if (apkValidationResult == null) {
+            apkValidationResult = ValidateAPK(receivedFile.getPath(), isForceUpdate, null);
+        }
+
+        if (apkValidationResult.getIsUpdate()) {
+            LOG.info("[Update O] : {}, {}", apkValidationResult.getInstallCode(), apkValidationResult.getComment());
+            if (contentHash != null) {
+                stagingCache.store(receivedFile, contentHash); // 재부팅 후 업데이트가 실패해 다시 보내면 전송 생략
+            }
+            LOG.info("[O] APK is fine. Rebooting for update in 5 seconds.");
+
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    rebootDevice();
+                }
+            }, 5000);
+        } else {
+            LOG.info("[Update X] : {}, {}", apkValidationResult.getUninstallCode(), apkValidationResult.getComment());
+            LOG.error("Update (reboot) skipped, APK file deleted.");
+            receivedFile.delete();
+        }
+    }
+
+    /**
+     * 보관된 APK로 데이터 수신을 대신합니다: 보관본 복사(해시/매니페스트 재확인) → 이후는 수신한 경우와 같음
+     * 보관본이 손상되어 있으면 지우고 CAN으로 끝내므로, 송신자가 다시 보내면 전체를 받습니다.
+     */
+    protected void completeStagedTransfer(File stagedFile, String contentHash, File targetFile, boolean isForceUpdate,
+                                          InputStream inputStream, OutputStream outputStream) throws IOException {
+        LOG.info("5-0. Restoring staged firmware {} instead of receiving", stagedFile.getName());
+        ApkManifestInfo manifest;
+        try {
+            manifest = stagingCache.restore(stagedFile, contentHash, targetFile);
+        } catch (IOException e) {
+            sendByte(outputStream, CAN, "[X] " + e.getMessage() + ", [TX] CAN");
+            return;
+        }
+        completeApkTransfer(targetFile, targetFile.length(), isForceUpdate, manifest, contentHash, inputStream, outputStream);
+    }
+
     // 🔥 이하 모든 메서드들은 완전히 공통화된 YModem 프로토콜 처리 로직
-    protected boolean syncData(Context context, InputStream inputStream, OutputStream outputStream) throws IOException {
+    /**
+     * @param compression 헤더에서 확정된 압축 방식 (YModem.COMPRESSION_DEFLATE), 압축하지 않으면 null
+     */
+    protected boolean syncData(Context context, InputStream inputStream, OutputStream outputStream,
+                               String compression) throws IOException {
         try {
             RtuSnapshot snapshot;
             File file = new File(context.getFilesDir(), dataFileName);
 
-            logMessage("불러올 Json 파일 절대 경로 : " + file.getAbsolutePath());
-            logMessage("불러올 Json 파일 존재 여부 : " + file.exists());
+            LOG.debug("불러올 Json 파일 절대 경로 : {}", file.getAbsolutePath());
+            LOG.debug("불러올 Json 파일 존재 여부 : {}", file.exists());
 
             if (file.exists()) {
                 String jsonString = readJsonFile(file);
                 snapshot = gson.fromJson(jsonString, RtuSnapshot.class);
-                logMessage("8-0. [RX] 센서 데이터: 파일에서 로드됨");
+                LOG.info("8-0. [RX] 센서 데이터: 파일에서 로드됨");
 
                 snapshot.timestamp = getCurrentTimestamp();
                 updateTimestampToFile(context, snapshot);
-                logMessage("8-0. [RX] JSON 파일에 timestamp 갱신됨");
+                LOG.info("8-0. [RX] JSON 파일에 timestamp 갱신됨");
             } else {
-                logMessage("8-0. [RX] RtuStatus.json 파일 없음, 더미 데이터로 대체");
+                LOG.info("8-0. [RX] RtuStatus.json 파일 없음, 더미 데이터로 대체");
                 snapshot = createDummyData();
                 snapshot.timestamp = getCurrentTimestamp();
 
                 updateTimestampToFile(context, snapshot);
-                logMessage("8-0. [RX] 더미 JSON 파일 생성됨");
+                LOG.info("8-0. [RX] 더미 JSON 파일 생성됨");
             }
 
             String finalJson = readJsonFile(file);
             byte[] dataBytes = finalJson.getBytes("UTF-8");
 
-            outputStream.write(dataBytes);
+            if (YModem.COMPRESSION_DEFLATE.equals(compression)) {
+                writeDeflated(outputStream, dataBytes); // JSON은 반복이 많아 느린 링크에서 전송량이 크게 줄어듦
+            } else {
+                outputStream.write(dataBytes);
+            }
             outputStream.flush();
 
-            logMessage("8-1. [RX] 센서 데이터 전송 성공");
+            LOG.info("8-1. [RX] 센서 데이터 전송 성공");
             return true;
 
         } catch (IOException e) {
-            logMessage("8-100. [RX] 센서 데이터 전송 실패 (IOException), " + e.getCause() + ", " + e.getMessage());
+            LOG.warn("8-100. [RX] 센서 데이터 전송 실패 (IOException), {}, {}", e.getCause(), e.getMessage());
             return false;
         }
     }
 
+    /**
+     * zlib 스트림 하나로 압축해 보냅니다. 응답 지연이 중요하므로 압축률보다 속도를 우선 (BEST_SPEED)
+     */
+    private static void writeDeflated(OutputStream outputStream, byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(outputStream, deflater);
+            deflated.write(data);
+            deflated.finish(); // 소켓은 닫지 않음
+            LOG.info("8-1. [TX] Sync data compressed: {} -> {} bytes", data.length, deflater.getTotalOut());
+        } finally {
+            deflater.end();
+        }
+    }
+
     // 🔥 이하 모든 메서드들은 완전히 공통화된 YModem 프로토콜 처리 로직
     protected boolean sendTriggerData(Context context, OutputStream outputStream,
                                       float waterLevel, int rtuId) throws IOException {
@@ -344,22 +591,20 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
             outputStream.write(dataBytes);
             outputStream.flush();
 
-            logMessage("✔ 트리거 데이터 전송 성공: " + triggerJson
+            LOG.info("✔ 트리거 데이터 전송 성공: {}", triggerJson
                 .replace("\n", " ")
                 .replace("\t", " ")
                 .replace("     ", " ")
-                .replace("   ", " ")
-
-            );
+                .replace("   ", " "));
             return true;
 
         } catch (IOException e) {
-            logMessage("❌ 트리거 데이터 전송 실패: " + e.getCause() + ": " + e.getMessage());
+            LOG.info("❌ 트리거 데이터 전송 실패: {}: {}", e.getCause(), e.getMessage());
             return false;
         }
     }
 
-    private String createTriggerJson(float waterLevel, int rtuId) {
+    protected String createTriggerJson(float waterLevel, int rtuId) {
         String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.KOREA)
             .format(new Date());
 
@@ -382,35 +627,34 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
 
     protected boolean checkFileIntegrity(File receivedFile, long expectedSize, OutputStream outputStream) throws IOException {
         if (receivedFile == null) {
-            logMessage("[X] File is null.");
+            LOG.error("File is null.");
             return false;
         }
 
         if (!receivedFile.exists() || receivedFile.length() == 0) {
-            logMessage("[X] 5-101. Failed to receive APK file data!");
+            LOG.error("5-101. Failed to receive APK file data!");
             return false;
         }
 
-        logMessage("The expected file size is " + expectedSize + " bytes");
-        RemovePadding(receivedFile.getPath(), expectedSize);
+        LOG.info("The expected file size is {} bytes", expectedSize); // 마지막 블록의 패딩은 수신하면서 이미 제외됨 (ApkOutputFile)
 
         long receivedSize = receivedFile.length();
-        logMessage("The actual received file size is " + receivedSize + " bytes");
+        LOG.info("The actual received file size is {} bytes", receivedSize);
 
         if (expectedSize != receivedSize) {
-            logMessage("[X] Data integrity verification failed! (Expected: " + expectedSize + " bytes / Received: " + receivedSize + " bytes)");
+            LOG.error("Data integrity verification failed! (Expected: {} bytes / Received: {} bytes)", expectedSize, receivedSize);
             sendByte(outputStream, NAK, "[X] 6-100. " + "[TX] NAK");
             receivedFile.delete();
             return false;
         }
 
-        logMessage("[O] Data integrity verification successful!");
+        LOG.info("[O] Data integrity verification successful!");
         return true;
     }
 
     protected File renameFile(File file, String newFileName) {
         if (file == null || !file.exists()) {
-            logMessage("[X] File does not exist.");
+            LOG.error("File does not exist.");
             return null;
         }
 
@@ -420,10 +664,10 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
         boolean success = file.renameTo(renamedFile);
 
         if (success) {
-            logMessage("[O] File name has been changed from " + originalFileName + " to " + newFileName + ": " + renamedFile.getPath());
+            LOG.info("[O] File name has been changed from {} to {}: {}", originalFileName, newFileName, renamedFile.getPath());
             return renamedFile;
         } else {
-            logMessage("[X] Failed to rename the file");
+            LOG.error("Failed to rename the file");
             return null;
         }
     }
@@ -431,51 +675,90 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
     protected void sendByte(OutputStream outputStream, byte data, String message) throws IOException {
         outputStream.write(data);
         outputStream.flush();
-        logMessage(message);
+        LOG.info(message);
     }
 
-    protected byte receiveByte(InputStream inputStream) throws IOException {
-        byte[] buffer = new byte[1];
-        if (inputStream.read(buffer) > 0) return buffer[0];
-        return -1;
+    /**
+     * 4-1 ACK 대신 NOT_NEEDED와 사유 한 줄을 보냅니다. (예: 0x16 "skip=ALREADY_LATEST_VERSION\n")
+     */
+    protected void sendNotNeeded(OutputStream outputStream, ApkValidationResult result) throws IOException {
+        outputStream.write(NOT_NEEDED);
+        outputStream.write((YModem.OPTION_SKIP + "=" + result.getUninstallCode() + "\n").getBytes(Charset.forName("US-ASCII")));
+        outputStream.flush();
+        LOG.info("4-1. [TX] NOT_NEEDED ({}), {}", result.getUninstallCode(), result.getComment());
+    }
+
+    /**
+     * 7-4. 송신자의 EOT를 기다립니다. 연결이 끊기거나(-1) EOT_WAIT_TIMEOUT 안에 EOT가 오지 않으면 실패
+     * (읽기 하나가 멈추는 시간은 연결에 설정된 읽기 타임아웃, TCP_NIO는 POST_RECEIVE_READ_TIMEOUT)
+     */
+    protected void waitForEot(InputStream inputStream) throws IOException {
+        long deadline = System.currentTimeMillis() + EOT_WAIT_TIMEOUT;
+        while (true) {
+            int received = inputStream.read();
+            if (received < 0) {
+                throw new IOException("[X] 7-400. Connection closed while waiting for EOT");
+            }
+            if (received == EOT) {
+                LOG.info("7-4. [RX] EOT");
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("[X] 7-401. EOT not received within " + EOT_WAIT_TIMEOUT + " ms");
+            }
+        }
     }
 
     protected void handleError(Exception e) {
         String errorMsg = e.getMessage();
-        logMessage("[X] " + getServerType() + " Socket error occurred: " + errorMsg);
+        LOG.error("{} Socket error occurred: {}", getServerType(), errorMsg);
         boolean isExpectedError = false;
 
         if (errorMsg == null) {
-            logMessage("[X] errorMsg does not exist...");
-            closeExistingServerSocket();
+            LOG.error("errorMsg does not exist...");
+            resetServerSocketAfterError();
             return;
         }
         // 클라이언트가 갑자기 종료된 경우 예외 처리
         else if (errorMsg.contains("EPIPE") || errorMsg.contains("ECONNRESET")) {
-            logMessage("[X] " + getServerType() + " Client connection was forcibly closed. Closing socket and waiting...");
+            LOG.error("{} Client connection was forcibly closed. Closing socket and waiting...", getServerType());
             isExpectedError = true;
         }
         // 헤더 오류들
         else if (errorMsg.contains("Invalid YModem header")) {
-            logMessage("[X] " + getServerType() + " Client sent an invalid header. Closing socket and waiting...");
+            LOG.error("{} Client sent an invalid header. Closing socket and waiting...", getServerType());
             isExpectedError = true;
         } else if (errorMsg.contains("RepeatedBlockException")) {
-            logMessage("[X] 5-601. " + getServerType() + " Received a duplicate of the previous block. Closing socket and waiting...");
+            LOG.error("5-601. {} Received a duplicate of the previous block. Closing socket and waiting...", getServerType());
             isExpectedError = true;
         } else if (errorMsg.contains("SynchronizationLostException")) {
-            logMessage("[X] 5-602. " + getServerType() + " Block number mismatch. Closing socket and waiting...");
+            LOG.error("5-602. {} Block number mismatch. Closing socket and waiting...", getServerType());
             isExpectedError = true;
         } else if (errorMsg.contains("InvalidBlockException")) {
-            logMessage("[X] 5-603. " + getServerType() + " Calibration value mismatch or 5-604. CRC mismatch. Closing socket and waiting...");
+            LOG.error("5-603. {} Calibration value mismatch or 5-604. CRC mismatch. Closing socket and waiting...", getServerType());
+            isExpectedError = true;
+        } else if (errorMsg.contains("error count exceeded max")) {
+            LOG.error("5-700. {} Block error budget exhausted. Closing socket and waiting...", getServerType());
             isExpectedError = true;
         }
 
         if (isExpectedError) {
-            closeExistingServerSocket();
+            resetServerSocketAfterError();
             return;
         }
 
-        logMessage("[X] " + getServerType() + " Unhandled error occurred. Restarting server socket.");
+        LOG.error("{} Unhandled error occurred. Restarting server socket.", getServerType());
+        resetServerSocketAfterError();
+    }
+
+    /**
+     * 세션 오류 후 서버 소켓을 재시작합니다.
+     * 동시 세션 모드에서는 한 세션의 오류가 다른 세션과 accept 스레드를 끊지 않도록, 해당 연결만 닫습니다 (finally에서 처리)
+     */
+    private void resetServerSocketAfterError() {
+        if (sessionExecutor != null) {
+            return;
+        }
         closeExistingServerSocket();
     }
 
@@ -483,13 +766,64 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
         try {
             Process process = Runtime.getRuntime().exec("ssu -c reboot");
             process.waitFor();
-            logMessage("Device rebooting...");
+            LOG.info("Device rebooting...");
         } catch (Exception e) {
-            logMessage("Reboot failed: " + e.getMessage());
+            LOG.error("Reboot failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 설치된 앱의 패키지 정보, 설치되어 있지 않으면 null
+     * 헤더를 받을 때마다 PackageManager를 조회하지 않도록 잠시 캐시합니다 (설치는 재부팅으로 진행되므로 그 사이에는 거의 바뀌지 않음)
+     */
+    protected PackageInfo getInstalledPackage() {
+        synchronized (installedPackageLock) {
+            long now = System.currentTimeMillis();
+            if (installedPackageCheckedAt < 0 || now - installedPackageCheckedAt > INSTALLED_PACKAGE_CACHE_TTL) {
+                installedPackage = lookupInstalledPackage();
+                installedPackageCheckedAt = now;
+            }
+            return installedPackage;
+        }
+    }
+
+    /**
+     * 설치된 앱의 APK 파일 (델타 패치의 기준), 설치되어 있지 않으면 null
+     */
+    protected File getInstalledApkFile() {
+        PackageInfo installed = getInstalledPackage();
+        if (installed == null || installed.applicationInfo == null || installed.applicationInfo.sourceDir == null) {
+            return null;
+        }
+        return new File(installed.applicationInfo.sourceDir);
+    }
+
+    private PackageInfo lookupInstalledPackage() {
+        String installedAppPackageName = findInstalledPackageName(PackageBasePath, PackageBasePath + ".apkdownloader");
+        if (installedAppPackageName == null) {
+            return null;
+        }
+        try {
+            return context.getPackageManager().getPackageInfo(installedAppPackageName, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
         }
     }
 
     protected String findInstalledPackageName(String target, String nonTarget) {
+        try {
+            // PackageManager로 바로 조회 ('pm list packages' 프로세스 실행보다 훨씬 빠름)
+            for (PackageInfo packageInfo : context.getPackageManager().getInstalledPackages(0)) {
+                String packageName = packageInfo.packageName;
+                if (packageName.contains(target) && !packageName.equals(nonTarget)) {
+                    return packageName;
+                }
+            }
+            return null;
+        } catch (RuntimeException e) {
+            LOG.error("Failed to query installed packages, falling back to 'pm list packages': {}", e.getMessage());
+        }
+
         try {
             Process process = Runtime.getRuntime().exec("pm list packages " + target);
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
@@ -505,52 +839,75 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
             }
             reader.close();
         } catch (IOException e) {
-            logMessage("[X] Error occurred while retrieving package list: " + e.getMessage());
+            LOG.error("Error occurred while retrieving package list: {}", e.getMessage());
         }
 
         return null;
     }
 
-    protected ApkValidationResult ValidateAPK(String apkPath, boolean isForceUpdate) {
-        PackageManager pm = context.getPackageManager();
-        PackageInfo apkInfo = pm.getPackageArchiveInfo(apkPath, 0);
-
-        if (apkInfo == null) {
-            return new ApkValidationResult(false, "[X] APK may be corrupted (unable to retrieve package information)", UninstallResult.APK_CORRUPTED);
+    /**
+     * 헤더의 pkg/ver(송신자가 알려 준 APK 정보)로 데이터를 받기 전에 설치 필요 여부를 판정합니다.
+     * 설치하기로 한 경우에도 수신 후 실제 매니페스트로 다시 판정합니다.
+     * @return 설치가 필요 없으면 그 판정 결과, 설치가 필요하거나 pkg/ver가 없으면 null (평소대로 수신)
+     */
+    protected ApkValidationResult checkAnnouncedFirmware(ApkManifestInfo announced, boolean isForceUpdate) {
+        if (announced == null) {
+            return null;
+        }
+        LOG.info("4-0. Firmware announced in header: {}", announced);
+        try {
+            ApkValidationResult result = ValidateAPK(null, isForceUpdate, announced);
+            return result.getIsUpdate() ? null : result;
+        } catch (RuntimeException e) {
+            LOG.error("4-0. Failed to check announced firmware, receiving it anyway: {}", e.getMessage());
+            return null; // 미리 판정하지 못하면 평소대로 받은 뒤 판정
         }
+    }
 
-        int apkVersionCode = apkInfo.versionCode;
-        String apkPackageName = apkInfo.packageName;
-        logMessage("Package name retrieved from APK: " + apkPackageName);
+    /**
+     * @param manifest 수신 중에 읽은(또는 헤더로 알려 준) 매니페스트 정보, null이면 APK 파일에서 getPackageArchiveInfo로 읽음
+     */
+    protected ApkValidationResult ValidateAPK(String apkPath, boolean isForceUpdate, ApkManifestInfo manifest) {
+        int apkVersionCode;
+        String apkPackageName;
+        if (manifest != null) {
+            apkVersionCode = manifest.getVersionCode();
+            apkPackageName = manifest.getPackageName();
+            LOG.info("Package name from manifest info: {}", apkPackageName);
+        } else {
+            PackageInfo apkInfo = context.getPackageManager().getPackageArchiveInfo(apkPath, 0);
 
-        String installedAppPackageName = findInstalledPackageName(PackageBasePath, PackageBasePath + ".apkdownloader");
-        logMessage("Currently installed package name: " + installedAppPackageName);
+            if (apkInfo == null) {
+                return new ApkValidationResult(false, "[X] APK may be corrupted (unable to retrieve package information)", UninstallResult.APK_CORRUPTED);
+            }
+
+            apkVersionCode = apkInfo.versionCode;
+            apkPackageName = apkInfo.packageName;
+            LOG.info("Package name retrieved from APK: {}", apkPackageName);
+        }
+
+        PackageInfo installedAppInfo = getInstalledPackage();
+        String installedAppPackageName = (installedAppInfo != null) ? installedAppInfo.packageName : null;
+        LOG.info("Currently installed package name: {}", installedAppPackageName);
 
         if (installedAppPackageName != null && !apkPackageName.equals(installedAppPackageName) && isForceUpdate) {
-            logMessage(" Package mismatch: " +
-                    "Existing: " + installedAppPackageName.replace(PackageBasePath, "") +
-                    ", APK: " + apkPackageName.replace(PackageBasePath, "")
-            );
+            LOG.info(" Package mismatch: Existing: {}, APK: {}",
+                    installedAppPackageName.replace(PackageBasePath, ""), apkPackageName.replace(PackageBasePath, ""));
             return new ApkValidationResult(true, "[O] Existing app will be removed and the new APK will be installed (Force update enabled). Proceeding with APK_Version " + apkVersionCode, InstallResult.DIFFRENT_PACKAGE_NAME);
         } else if (installedAppPackageName != null && !apkPackageName.equals(installedAppPackageName)) {
-            logMessage(" Package mismatch: " +
-                    "Existing: " + installedAppPackageName.replace(PackageBasePath, "") +
-                    ", APK: " + apkPackageName.replace(PackageBasePath, "")
-            );
+            LOG.info(" Package mismatch: Existing: {}, APK: {}",
+                    installedAppPackageName.replace(PackageBasePath, ""), apkPackageName.replace(PackageBasePath, ""));
             return new ApkValidationResult(false, "[X] The package name of the installed app and the APK are different. Please enable force update.", UninstallResult.DIFFRENT_PACKAGE_NAME_NOT_FORCE);
         }
 
-        PackageInfo installedAppInfo;
-        try {
-            installedAppInfo = pm.getPackageInfo(installedAppPackageName, 0);
-        } catch (PackageManager.NameNotFoundException e) {
+        if (installedAppInfo == null) {
             return new ApkValidationResult(true, "The app " +
                     apkPackageName.replace(PackageBasePath + ".", "") + " is not installed." +
                     " Proceeding with installation using APK_Version " + apkVersionCode, InstallResult.APP_NOT_INSTALLED);
         }
 
         int installedVersionCode = installedAppInfo.versionCode;
-        logMessage("Installed version: " + installedVersionCode + ", APK version: " + apkVersionCode);
+        LOG.info("Installed version: {}, APK version: {}", installedVersionCode, apkVersionCode);
 
         if (isForceUpdate) {
             return new ApkValidationResult(true, "[O] Force update: " + installedVersionCode + " -> " + apkVersionCode, InstallResult.FORCE_UPDATE);
@@ -563,43 +920,6 @@ public abstract class AbstractYModemServer implements YModemServerInterface {
         }
     }
 
-    public static void RemovePadding(String filePath, Long expectedSize) {
-        long actualSize, paddingStart;
-        int remainder = 1024 - (int) (expectedSize % 1024);
-        RandomAccessFile file = null;
-
-        try {
-            file = new RandomAccessFile(filePath, "rw");
-            actualSize = file.length();
-            paddingStart = actualSize - remainder;
-
-            file.seek(paddingStart);
-            boolean isPadded = true;
-
-            for (int i = 0; i < remainder; i++) {
-                if (file.read() != 0x1A) {
-                    isPadded = false;
-                    break;
-                }
-            }
-
-            if (isPadded) {
-                file.setLength(paddingStart);
-                logMessage("[O] Removed " + remainder + " padding bytes successfully!");
-            } else {
-                logMessage("[O] No additional padding found.");
-            }
-        } catch (Exception e) {
-            logMessage("[X] Error occurred while removing padding: " + e.getMessage());
-        } finally {
-            if (file != null) {
-                try {
-                    file.close();
-                } catch (IOException e) { /* 무시 가능 */ }
-            }
-        }
-    }
-
     /**
      * 서버 타입 이름 반환 (하위 클래스에서 구현)
      * @return 서버 타입 문자열 (예: "TCP", "Bluetooth")
@@ -0,0 +1,379 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+
+import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
+
+/**
+ * 수신 중인 APK(ZIP)를 앞에서부터 순서대로 읽어 AndroidManifest.xml의 패키지 이름과 versionCode를 찾습니다.
+ * - ZIP 로컬 파일 헤더를 따라가며 다른 항목은 건너뛰고, AndroidManifest.xml 항목만 모아서(압축 시 inflate) 해석
+ * - 바이너리 XML(AXML)에서 <manifest>의 package, versionCode 속성만 읽음
+ * 매니페스트를 찾으면 이후 데이터는 무시하므로, 보통 처음 몇 KB만 처리합니다.
+ * 항목 크기를 알 수 없는 경우(데이터 디스크립터) 등 스트림만으로 읽을 수 없으면 포기하고 null을 돌려주며,
+ * 이때는 수신 후 getPackageArchiveInfo로 확인합니다.
+ */
+public class ApkManifestReader {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08; // 크기가 데이터 뒤에 기록됨
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final String MANIFEST_NAME = "AndroidManifest.xml";
+    private static final int MAX_MANIFEST_SIZE = 1024 * 1024;
+
+    private static final int RES_STRING_POOL_TYPE = 0x0001;
+    private static final int RES_XML_TYPE = 0x0003;
+    private static final int RES_XML_START_ELEMENT_TYPE = 0x0102;
+    private static final int RES_XML_RESOURCE_MAP_TYPE = 0x0180;
+    private static final int UTF8_FLAG = 0x100;
+    private static final int TYPE_STRING = 0x03;
+    private static final int TYPE_FIRST_INT = 0x10;
+    private static final int TYPE_LAST_INT = 0x1f;
+    private static final int VERSION_CODE_RESOURCE_ID = 0x0101021b; // android:versionCode
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+    private static final int STATE_HEADER = 0;   // 로컬 파일 헤더(30바이트) 수집
+    private static final int STATE_NAME = 1;     // 항목 이름 수집 (이름 길이가 매니페스트와 같을 때만)
+    private static final int STATE_SKIP = 2;     // 다른 항목 건너뛰기
+    private static final int STATE_MANIFEST = 3; // 매니페스트 데이터 수집
+    private static final int STATE_DONE = 4;
+
+    private final byte[] header = new byte[LOCAL_HEADER_LENGTH];
+    private final byte[] name = new byte[MANIFEST_NAME.length()];
+    private final byte[] scratch = new byte[4096];  // 배열이 없는(direct) ByteBuffer용
+    private final byte[] inflated = new byte[4096]; // inflate 출력
+    private int filled = 0;
+
+    private int state = STATE_HEADER;
+    private long skipRemaining = 0;
+    private long extraLength = 0;
+    private int method = 0;
+    private long compressedRemaining = 0;
+    private boolean sizeKnown = true;
+
+    private Inflater inflater = null;
+    private ByteArrayOutputStream manifest = null;
+    private ApkManifestInfo result = null;
+
+    /**
+     * 파일 앞에서부터 이어지는 데이터를 넣습니다.
+     */
+    public void update(byte[] data, int offset, int length) {
+        int end = offset + length;
+        while (offset < end && state != STATE_DONE) {
+            offset = step(data, offset, end);
+        }
+    }
+
+    /**
+     * ByteBuffer의 position부터 limit까지 넣습니다. position은 바꾸지 않습니다.
+     */
+    public void update(ByteBuffer buffer) {
+        if (state == STATE_DONE) {
+            return;
+        }
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        for (int position = buffer.position(); position < buffer.limit() && state != STATE_DONE; ) {
+            int count = Math.min(scratch.length, buffer.limit() - position);
+            for (int i = 0; i < count; i++) {
+                scratch[i] = buffer.get(position + i);
+            }
+            update(scratch, 0, count);
+            position += count;
+        }
+    }
+
+    /**
+     * 매니페스트를 찾았거나 포기해서 더 넣을 필요가 없으면 true
+     */
+    public boolean isDone() {
+        return state == STATE_DONE;
+    }
+
+    /**
+     * 읽은 매니페스트 정보, 아직 찾지 못했거나 읽을 수 없으면 null
+     */
+    public ApkManifestInfo getResult() {
+        return result;
+    }
+
+    private int step(byte[] data, int offset, int end) {
+        switch (state) {
+            case STATE_HEADER: {
+                int count = Math.min(LOCAL_HEADER_LENGTH - filled, end - offset);
+                System.arraycopy(data, offset, header, filled, count);
+                filled += count;
+                if (filled == LOCAL_HEADER_LENGTH) {
+                    filled = 0;
+                    startEntry();
+                }
+                return offset + count;
+            }
+            case STATE_NAME: {
+                int count = Math.min(name.length - filled, end - offset);
+                System.arraycopy(data, offset, name, filled, count);
+                filled += count;
+                if (filled == name.length) {
+                    filled = 0;
+                    boolean isManifest = MANIFEST_NAME.equals(new String(name, UTF_8));
+                    skipRemaining = extraLength;
+                    if (isManifest) {
+                        startManifest();
+                    } else {
+                        skipEntry();
+                    }
+                }
+                return offset + count;
+            }
+            case STATE_SKIP:
+            case STATE_MANIFEST: {
+                if (skipRemaining > 0) { // 이름 뒤의 추가 필드
+                    int count = (int) Math.min(skipRemaining, end - offset);
+                    skipRemaining -= count;
+                    if (skipRemaining == 0 && state == STATE_SKIP) {
+                        state = STATE_HEADER;
+                    }
+                    return offset + count;
+                }
+                if (state == STATE_SKIP) {
+                    state = STATE_HEADER;
+                    return offset;
+                }
+                return readManifest(data, offset, end);
+            }
+            default:
+                return end;
+        }
+    }
+
+    private void startEntry() {
+        if (readInt(header, 0) != LOCAL_HEADER_SIGNATURE) {
+            giveUp("AndroidManifest.xml not found in local file headers");
+            return;
+        }
+
+        int flags = readShort(header, 6);
+        method = readShort(header, 8);
+        long compressedSize = readInt(header, 18) & 0xFFFFFFFFL;
+        int nameLength = readShort(header, 26);
+        extraLength = readShort(header, 28);
+        sizeKnown = (flags & FLAG_DATA_DESCRIPTOR) == 0 || compressedSize != 0;
+        compressedRemaining = compressedSize;
+
+        if (nameLength == name.length) {
+            state = STATE_NAME;
+            return;
+        }
+        skipRemaining = nameLength + extraLength;
+        skipEntry();
+    }
+
+    private void skipEntry() {
+        if (!sizeKnown) {
+            giveUp("entry size is stored after its data");
+            return;
+        }
+        skipRemaining += compressedRemaining;
+        state = skipRemaining > 0 ? STATE_SKIP : STATE_HEADER;
+    }
+
+    private void startManifest() {
+        if (method == METHOD_DEFLATED) {
+            inflater = new Inflater(true);
+        } else if (method != METHOD_STORED || !sizeKnown) {
+            giveUp("unsupported manifest entry (method " + method + ")");
+            return;
+        }
+        manifest = new ByteArrayOutputStream(8 * 1024);
+        state = STATE_MANIFEST;
+        if (sizeKnown && compressedRemaining == 0) {
+            finishManifest();
+        }
+    }
+
+    private int readManifest(byte[] data, int offset, int end) {
+        int count = end - offset;
+        if (sizeKnown) {
+            count = (int) Math.min(count, compressedRemaining);
+        }
+
+        if (inflater == null) {
+            manifest.write(data, offset, count);
+        } else {
+            inflater.setInput(data, offset, count);
+            try {
+                while (!inflater.finished() && !inflater.needsInput()) { // 입력 배열은 곧 재사용되므로 여기서 모두 처리
+                    int produced = inflater.inflate(inflated);
+                    manifest.write(inflated, 0, produced);
+                    if (produced == 0 && inflater.needsDictionary()) {
+                        giveUp("deflate stream needs a dictionary");
+                        return end;
+                    }
+                }
+            } catch (DataFormatException e) {
+                giveUp("invalid deflate data: " + e.getMessage());
+                return end;
+            }
+            count -= inflater.getRemaining();
+        }
+
+        compressedRemaining -= count;
+        if (manifest.size() > MAX_MANIFEST_SIZE) {
+            giveUp("manifest is too large");
+        } else if ((inflater != null && inflater.finished()) || (sizeKnown && compressedRemaining <= 0)) {
+            finishManifest();
+        }
+        return offset + count;
+    }
+
+    private void finishManifest() {
+        byte[] xml = manifest.toByteArray();
+        release();
+        state = STATE_DONE;
+        try {
+            result = decodeManifest(xml, xml.length);
+        } catch (RuntimeException e) {
+            result = null; // 형식이 다른 AXML → getPackageArchiveInfo로 확인
+        }
+        if (result == null) {
+            logMessage("[X] AndroidManifest.xml could not be decoded while receiving");
+        }
+    }
+
+    private void giveUp(String reason) {
+        logMessage("[X] Streaming manifest scan stopped: " + reason);
+        release();
+        state = STATE_DONE;
+    }
+
+    private void release() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+        manifest = null;
+    }
+
+    /**
+     * 바이너리 XML에서 첫 번째 <manifest> 요소의 package, versionCode를 읽습니다.
+     * @return 둘 중 하나라도 읽지 못하면 null
+     */
+    static ApkManifestInfo decodeManifest(byte[] xml, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(xml, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        if (length < 8 || (buffer.getShort(0) & 0xFFFF) != RES_XML_TYPE) {
+            return null;
+        }
+
+        int stringPool = -1;
+        int[] resourceIds = new int[0];
+        int position = buffer.getShort(2) & 0xFFFF;
+
+        while (position + 8 <= length) {
+            int type = buffer.getShort(position) & 0xFFFF;
+            int headerSize = buffer.getShort(position + 2) & 0xFFFF;
+            int size = buffer.getInt(position + 4);
+            if (size < 8 || position + size > length) {
+                return null;
+            }
+
+            if (type == RES_STRING_POOL_TYPE) {
+                stringPool = position;
+            } else if (type == RES_XML_RESOURCE_MAP_TYPE) {
+                resourceIds = new int[(size - headerSize) / 4];
+                for (int i = 0; i < resourceIds.length; i++) {
+                    resourceIds[i] = buffer.getInt(position + headerSize + i * 4);
+                }
+            } else if (type == RES_XML_START_ELEMENT_TYPE && stringPool >= 0) {
+                int element = position + headerSize;
+                if ("manifest".equals(readString(buffer, stringPool, buffer.getInt(element + 4)))) {
+                    return readManifestAttributes(buffer, stringPool, resourceIds, element);
+                }
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    private static ApkManifestInfo readManifestAttributes(ByteBuffer buffer, int stringPool, int[] resourceIds, int element) {
+        int attributeStart = buffer.getShort(element + 8) & 0xFFFF;
+        int attributeSize = buffer.getShort(element + 10) & 0xFFFF;
+        int attributeCount = buffer.getShort(element + 12) & 0xFFFF;
+
+        String packageName = null;
+        Integer versionCode = null;
+        for (int i = 0; i < attributeCount; i++) {
+            int attribute = element + attributeStart + i * attributeSize;
+            int nameIndex = buffer.getInt(attribute + 4);
+            int rawValue = buffer.getInt(attribute + 8);
+            int dataType = buffer.get(attribute + 15) & 0xFF;
+            int data = buffer.getInt(attribute + 16);
+
+            int resourceId = (nameIndex >= 0 && nameIndex < resourceIds.length) ? resourceIds[nameIndex] : 0;
+            String attributeName = readString(buffer, stringPool, nameIndex);
+
+            if ("package".equals(attributeName)) {
+                int valueIndex = (rawValue >= 0) ? rawValue : (dataType == TYPE_STRING ? data : -1);
+                packageName = readString(buffer, stringPool, valueIndex);
+            } else if ((resourceId == VERSION_CODE_RESOURCE_ID || "versionCode".equals(attributeName))
+                    && dataType >= TYPE_FIRST_INT && dataType <= TYPE_LAST_INT) {
+                versionCode = data;
+            }
+        }
+
+        if (packageName == null || versionCode == null) {
+            return null;
+        }
+        return new ApkManifestInfo(packageName, versionCode);
+    }
+
+    private static String readString(ByteBuffer buffer, int stringPool, int index) {
+        int headerSize = buffer.getShort(stringPool + 2) & 0xFFFF;
+        int stringCount = buffer.getInt(stringPool + 8);
+        int flags = buffer.getInt(stringPool + 16);
+        int stringsStart = buffer.getInt(stringPool + 20);
+        if (index < 0 || index >= stringCount) {
+            return null;
+        }
+
+        int position = stringPool + stringsStart + buffer.getInt(stringPool + headerSize + index * 4);
+        if ((flags & UTF8_FLAG) != 0) {
+            position += ((buffer.get(position) & 0x80) != 0) ? 2 : 1; // UTF-16 길이 (사용 안 함)
+            int byteLength = buffer.get(position) & 0xFF;
+            if ((byteLength & 0x80) != 0) {
+                byteLength = ((byteLength & 0x7F) << 8) | (buffer.get(position + 1) & 0xFF);
+                position++;
+            }
+            position++;
+            return new String(buffer.array(), buffer.arrayOffset() + position, byteLength, UTF_8);
+        }
+
+        int charLength = buffer.getShort(position) & 0xFFFF;
+        if ((charLength & 0x8000) != 0) {
+            charLength = ((charLength & 0x7FFF) << 16) | (buffer.getShort(position + 2) & 0xFFFF);
+            position += 2;
+        }
+        position += 2;
+        return new String(buffer.array(), buffer.arrayOffset() + position, charLength * 2, UTF_16LE);
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return readShort(data, offset) | (readShort(data, offset + 2) << 16);
+    }
+}
@@ -0,0 +1,250 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+
+import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
+
+/**
+ * 수신 중인 APK 출력 파일
+ * - 헤더의 파일 크기만큼 미리 공간을 확인하고 파일 길이를 잡아 둠 (수신 도중 공간 부족으로 실패하지 않도록)
+ * - FileChannel에 위치 지정 쓰기로 기록하며, 배열로 받은 블록은 direct 버퍼에 모아서 한 번에 기록
+ *   (ByteBuffer로 받은 블록은 모으지 않고 바로 기록)
+ * - 파일 크기를 넘는 마지막 블록의 패딩(CPMEOF)은 기록하지 않으므로, 수신 후 패딩 제거 과정이 필요 없음
+ * - (선택) 기록하는 데이터로 SHA-256을 이어서 계산하므로, 마지막 블록을 기록하는 즉시 파일 전체의 해시가 나옴
+ * - (선택) 기록하는 데이터에서 AndroidManifest.xml을 찾아 패키지 이름/versionCode를 미리 읽음 (ApkManifestReader)
+ */
+public class ApkOutputFile {
+    public static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+
+    private static final long FREE_SPACE_MARGIN = 1024 * 1024; // 저널, 설치 임시 파일 등을 위한 여유 공간
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final long expectedSize; // 0 이하면 크기를 모름 (패딩 제거/미리 할당 안 함)
+
+    private long position;        // 지금까지 받은(버퍼 포함) 파일 데이터의 끝
+    private long flushedPosition; // 파일에 기록된 데이터의 끝
+    private MessageDigest digest = null;
+    private ApkManifestReader manifestReader = null;
+
+    /**
+     * @param file         출력 파일
+     * @param expectedSize 헤더의 파일 크기
+     * @param startOffset  이어받기 시작 오프셋 (이후의 내용은 버림), 처음부터 받으면 0
+     * @param bufferSize   모아서 기록할 버퍼 크기
+     * @throws IOException 여유 공간이 부족하거나 파일을 열 수 없는 경우
+     */
+    public ApkOutputFile(File file, long expectedSize, long startOffset, int bufferSize) throws IOException {
+        this.file = file;
+        this.expectedSize = expectedSize;
+        checkFreeSpace(file, expectedSize, startOffset);
+
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(startOffset); // 이어받기: 저널 이후에 기록된(fsync 되지 않은) 데이터는 버림
+            if (expectedSize > startOffset) {
+                randomAccessFile.setLength(expectedSize); // 전체 크기를 미리 잡아 둠
+            }
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+
+        this.channel = randomAccessFile.getChannel();
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.position = startOffset;
+        this.flushedPosition = startOffset;
+    }
+
+    private static void checkFreeSpace(File file, long expectedSize, long startOffset) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory == null || expectedSize <= 0) {
+            return;
+        }
+
+        long existing = file.exists() ? Math.min(file.length(), expectedSize) : 0;
+        long required = expectedSize - Math.min(existing, startOffset) + FREE_SPACE_MARGIN;
+        long usable = directory.getUsableSpace();
+        if (usable > 0 && usable < required) { // 0: 확인할 수 없음
+            throw new IOException("5-102. Not enough free space for " + file.getName()
+                    + " (required: " + required + " bytes, usable: " + usable + " bytes)");
+        }
+    }
+
+    /**
+     * 이후 기록하는 데이터로 SHA-256 계산을 시작합니다.
+     * 이어받기로 이미 기록된 앞부분이 있으면 그 부분만 파일에서 한 번 읽어 반영합니다.
+     */
+    public void startDigest() throws IOException {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+
+        replayPrefix(digest, null);
+    }
+
+    /**
+     * 이후 기록하는 데이터에서 AndroidManifest.xml을 찾기 시작합니다. 이어받기면 앞부분을 파일에서 읽어 반영합니다.
+     */
+    public void startManifestScan() throws IOException {
+        manifestReader = new ApkManifestReader();
+        replayPrefix(null, manifestReader);
+    }
+
+    /**
+     * 수신 중에 읽은 매니페스트 정보, 찾지 못했으면 null
+     */
+    public ApkManifestInfo getManifest() {
+        return manifestReader != null ? manifestReader.getResult() : null;
+    }
+
+    /**
+     * 이어받기로 이미 기록된 앞부분(0 ~ position)을 파일에서 읽어 해시/매니페스트 계산에 반영합니다.
+     */
+    private void replayPrefix(MessageDigest targetDigest, ApkManifestReader targetReader) throws IOException {
+        flush();
+        ByteBuffer prefix = ByteBuffer.allocate((int) Math.min(64 * 1024, Math.max(1, position)));
+        for (long offset = 0; offset < position; ) {
+            if (targetDigest == null && targetReader.isDone()) {
+                return; // 매니페스트만 찾는 경우 찾은 뒤에는 더 읽지 않음
+            }
+            prefix.clear();
+            prefix.limit((int) Math.min(prefix.capacity(), position - offset));
+            int count = channel.read(prefix, offset);
+            if (count < 0) {
+                throw new IOException("Unexpected end of " + file.getName() + " at " + offset);
+            }
+            if (targetDigest != null) targetDigest.update(prefix.array(), 0, prefix.position());
+            if (targetReader != null) targetReader.update(prefix.array(), 0, prefix.position());
+            offset += count;
+        }
+    }
+
+    /**
+     * 지금까지 기록한 데이터의 SHA-256 (16진수 소문자), startDigest()를 호출하지 않았으면 null
+     * 계산을 마치므로 기록이 모두 끝난 뒤 한 번만 호출합니다.
+     */
+    public String finishDigest() {
+        if (digest == null) {
+            return null;
+        }
+        byte[] hash = digest.digest();
+        digest = null;
+
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 수신한 블록을 이어서 기록합니다. 파일 크기를 넘는 부분(마지막 블록의 패딩)은 버립니다.
+     */
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (expectedSize > 0) {
+            length = (int) Math.max(0, Math.min(length, expectedSize - position));
+        }
+        if (digest != null) {
+            digest.update(data, offset, length);
+        }
+        if (manifestReader != null && !manifestReader.isDone()) {
+            manifestReader.update(data, offset, length);
+        }
+
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(data, offset, count);
+            offset += count;
+            length -= count;
+            position += count;
+        }
+    }
+
+    /**
+     * 수신 버퍼의 블록 데이터(position~limit)를 중간 버퍼를 거치지 않고 바로 파일에 기록합니다. 호출 후 position은 limit
+     * 파일 크기를 넘는 부분(마지막 블록의 패딩)은 버립니다.
+     */
+    public void write(ByteBuffer source) throws IOException {
+        int length = source.remaining();
+        if (expectedSize > 0) {
+            length = (int) Math.max(0, Math.min(length, expectedSize - position));
+        }
+        if (buffer.position() > 0) {
+            flush(); // 앞서 모아 둔 데이터를 먼저 기록해 순서 유지
+        }
+
+        int limit = source.limit();
+        int start = source.position();
+        source.limit(start + length);
+        if (manifestReader != null && !manifestReader.isDone()) {
+            manifestReader.update(source); // position을 옮기지 않음
+        }
+        if (digest != null) {
+            digest.update(source); // position을 옮기므로 기록 전에 되돌림
+            source.position(start);
+        }
+        while (source.hasRemaining()) {
+            flushedPosition += channel.write(source, flushedPosition);
+        }
+        source.limit(limit);
+        source.position(limit);
+        position += length;
+    }
+
+    /**
+     * 버퍼에 모인 데이터를 파일에 기록합니다.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushedPosition += channel.write(buffer, flushedPosition);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 지금까지 받은 데이터를 디스크에 확실히 기록합니다 (fsync)
+     */
+    public void sync() throws IOException {
+        flush();
+        channel.force(false);
+    }
+
+    /**
+     * 지금까지 받은 데이터의 크기 (패딩 제외)
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 남은 데이터를 기록하고 닫습니다. 다 받지 못한 경우 미리 잡아 둔 길이를 실제로 받은 크기로 줄입니다.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+            if (randomAccessFile.length() > position) {
+                randomAccessFile.setLength(position);
+                logMessage("[X] " + file.getName() + " closed before completion (" + position + "/" + expectedSize + " bytes)");
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
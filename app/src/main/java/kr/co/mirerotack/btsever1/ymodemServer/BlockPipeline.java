@@ -0,0 +1,258 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
+
+/**
+ * 수신 파이프라인: 네트워크 스레드와 디스크 기록 스레드를 분리합니다.
+ * - 네트워크 스레드는 검증된 블록을 미리 할당한 블록 버퍼(링)에 복사해 넣고 바로 다음 블록을 읽음
+ * - 기록 스레드는 링에서 순서대로 꺼내 BlockWriter로 기록(체크포인트 fsync 포함)한 뒤 버퍼를 반환
+ * 플래시 기록/fsync가 늦어져도 링이 가득 차기 전까지는 링크 수신이 멈추지 않습니다.
+ * <p>
+ * 생산자(네트워크)와 소비자(기록)는 각각 하나의 스레드만 사용해야 합니다.
+ * 멈추면 안 되는 생산자(셀렉터 스레드)는 hasFree로 확인한 뒤에만 넣고, 링이 가득 차면 SpaceListener 호출까지 읽기를 멈춥니다.
+ */
+public class BlockPipeline {
+
+    /**
+     * 기록 스레드에서 블록을 순서대로 받아 저장하는 대상
+     */
+    public interface BlockWriter {
+        void write(byte[] data, int offset, int length) throws IOException;
+    }
+
+    /**
+     * 기록 스레드에서 호출: 가득 찬 링에 빈 슬롯이 생겼거나 기록이 실패한 경우
+     */
+    public interface SpaceListener {
+        void onSpaceAvailable();
+    }
+
+    public static final int DEFAULT_CAPACITY = 32; // 32KB, 최대 윈도우(MAX_WINDOW_SIZE) 한 번을 받을 수 있는 크기
+
+    private final BlockWriter writer;
+    private final byte[][] buffers;
+    private final int[] lengths;
+    private final Object lock = new Object();
+    private final Thread writerThread;
+
+    private int head = 0;  // 다음에 기록할 슬롯 (기록 스레드)
+    private int tail = 0;  // 다음에 채울 슬롯 (네트워크 스레드)
+    private int count = 0; // 기록을 기다리는 블록 수
+    private boolean closed = false;  // 더 이상 넣을 블록 없음 (남은 블록은 기록)
+    private boolean aborted = false; // 남은 블록을 버리고 종료
+    private IOException failure = null;
+    private SpaceListener spaceListener = null;
+
+    /**
+     * @param writer    기록 스레드에서 호출할 저장 대상
+     * @param capacity  링의 블록 수
+     * @param blockSize 블록 하나의 최대 크기
+     */
+    public BlockPipeline(BlockWriter writer, int capacity, int blockSize) {
+        this.writer = writer;
+        this.buffers = new byte[capacity][blockSize];
+        this.lengths = new int[capacity];
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "ymodem-writer");
+    }
+
+    public void start() {
+        writerThread.start();
+    }
+
+    /**
+     * start 전에 설정합니다.
+     */
+    public void setSpaceListener(SpaceListener spaceListener) {
+        this.spaceListener = spaceListener;
+    }
+
+    public int getCapacity() {
+        return buffers.length;
+    }
+
+    /**
+     * 기록을 기다리는 블록 수
+     */
+    public int getOccupancy() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    /**
+     * 블록을 링에 넣습니다. 링이 가득 차 있으면 기록 스레드가 슬롯을 비울 때까지 기다립니다.
+     * 전달한 배열은 복사하므로 호출 직후 재사용해도 됩니다.
+     *
+     * @throws IOException 기록 스레드가 실패한 경우 (그 원인을 포함)
+     */
+    public void put(byte[] data, int offset, int length) throws IOException {
+        awaitFree(1);
+
+        int slot = tail; // 빈 슬롯은 생산자만 채우므로 잠금 밖에서 복사
+        System.arraycopy(data, offset, buffers[slot], 0, length);
+        commit(slot, length);
+    }
+
+    /**
+     * 버퍼의 남은 구간(position ~ limit)을 링에 넣습니다. position은 limit까지 이동합니다.
+     */
+    public void put(ByteBuffer data) throws IOException {
+        awaitFree(1);
+
+        int slot = tail;
+        int length = data.remaining();
+        data.get(buffers[slot], 0, length);
+        commit(slot, length);
+    }
+
+    private void commit(int slot, int length) {
+        lengths[slot] = length;
+        tail = (tail + 1) % buffers.length;
+
+        synchronized (lock) {
+            count++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 빈 슬롯이 slots개 이상인지 기다리지 않고 확인합니다.
+     */
+    public boolean hasFree(int slots) {
+        synchronized (lock) {
+            return buffers.length - count >= Math.min(slots, buffers.length);
+        }
+    }
+
+    /**
+     * 빈 슬롯이 slots개 이상이 될 때까지 기다립니다.
+     * 응답(ACK)을 보내기 전에 호출하면, 송신자가 다음에 보낼 블록들을 네트워크 스레드가 멈추지 않고 받을 수 있습니다.
+     */
+    public void awaitFree(int slots) throws IOException {
+        int required = Math.min(slots, buffers.length);
+        synchronized (lock) {
+            while (failure == null && !aborted && buffers.length - count < required) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("5-900. Interrupted while waiting for the writer thread");
+                }
+            }
+            checkFailure();
+        }
+    }
+
+    /**
+     * 남은 블록을 모두 기록하고 기록 스레드를 종료합니다.
+     *
+     * @throws IOException 기록 중 실패가 있었던 경우
+     */
+    public void finish() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        join();
+        synchronized (lock) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * 남은 블록을 버리고 기록 스레드를 종료합니다 (수신 오류 시). 진행 중인 기록 한 건은 끝날 때까지 기다립니다.
+     */
+    public void abort() {
+        synchronized (lock) {
+            aborted = true;
+            lock.notifyAll();
+        }
+        join();
+    }
+
+    private void join() {
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("5-900. Failed to store received data: " + failure.getMessage(), failure);
+        }
+        if (aborted) {
+            throw new IOException("5-900. Receive pipeline was aborted");
+        }
+    }
+
+    /**
+     * 기록 스레드: 블록을 순서대로 꺼내 기록하고, 기록이 끝난 뒤에 슬롯을 반환
+     */
+    private void drain() {
+        while (true) {
+            int slot;
+            synchronized (lock) {
+                while (count == 0 && !closed && !aborted) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        aborted = true;
+                    }
+                }
+                if (aborted || count == 0) {
+                    return;
+                }
+                slot = head;
+            }
+
+            try {
+                writer.write(buffers[slot], 0, lengths[slot]);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            } catch (RuntimeException | Error e) { // 압축 해제/패치 적용 중의 예외도 실패로 알리지 않으면 수신 스레드가 계속 기다림
+                fail(new IOException(e.toString(), e));
+                return;
+            }
+
+            boolean wasFull;
+            synchronized (lock) {
+                wasFull = (count == buffers.length);
+                head = (head + 1) % buffers.length;
+                count--;
+                lock.notifyAll();
+            }
+            if (wasFull) {
+                notifySpaceListener();
+            }
+        }
+    }
+
+    /**
+     * 기록 실패를 기록하고 기다리는 수신 스레드와 SpaceListener를 깨웁니다 (기록 스레드는 종료)
+     */
+    private void fail(IOException e) {
+        logMessage("[X] 5-900. Writer thread failed: " + e.getMessage());
+        synchronized (lock) {
+            failure = e;
+            lock.notifyAll();
+        }
+        notifySpaceListener();
+    }
+
+    private void notifySpaceListener() {
+        if (spaceListener != null) {
+            spaceListener.onSpaceAvailable();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+/**
+ * 블록 단위 ACK 모드의 데이터 블록 크기 조정 (헤더 blk로 송신자가 제안한 최대 크기 이내)
+ * - 1K 블록으로 시작해 처음 SAMPLE_BLOCKS개의 왕복 시간(ACK 송신 → 다음 프레임 첫 바이트)과 프레임 수신 시간으로 링크의 지연/처리량을 추정
+ * - 왕복 대기가 전체 시간의 1/5 이하가 되도록, 블록 크기가 대역폭-지연 곱의 TARGET_RATIO배 이상인 가장 작은 크기를 한 번 선택
+ *   (RFCOMM처럼 지연에 비해 느린 링크는 1K 그대로, 빠른 이더넷은 큰 블록)
+ * - 확장 블록에서 오류가 연속으로 나면 1K로 돌아가고, 이 세션에서는 다시 키우지 않음
+ * 세션 동안 확장 블록의 크기는 한 가지뿐이므로, 크기 변경 알림이 유실돼도 수신자는 두 크기의 프레임을 모두 받을 수 있습니다.
+ */
+public class BlockSizeTuner {
+    public static final int BASE_BLOCK_SIZE = 1024;      // STX 블록
+    public static final int MAX_BLOCK_SIZE = 16 * 1024;  // 확장 블록(XSTX) 상한
+
+    static final int SAMPLE_BLOCKS = 8;          // 크기를 정하기 전에 측정할 1K 블록 수
+    static final int MAX_CONSECUTIVE_ERRORS = 2; // 확장 블록에서 연속 오류가 이만큼 나면 1K로
+    private static final int TARGET_RATIO = 4;
+
+    private final int maxBlockSize;
+    private int blockSize = BASE_BLOCK_SIZE;
+    private boolean decided = false; // 크기를 이미 정함 (이후에는 오류로 1K에 돌아가는 것만 가능)
+
+    private int samples = 0;
+    private long roundTripNanos = 0;
+    private long transferNanos = 0;
+    private long sampledBytes = 0;
+    private int consecutiveErrors = 0;
+
+    /**
+     * @param maxBlockSize 협상한 최대 블록 크기 ({@link #normalize(int)}로 정리한 값)
+     */
+    public BlockSizeTuner(int maxBlockSize) {
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * 정상 블록 하나의 측정 결과를 반영합니다.
+     * @param roundTripNanos 응답을 보낸 뒤 다음 프레임의 첫 바이트가 도착할 때까지의 시간 (음수: 측정하지 못함)
+     * @param transferNanos  프레임의 첫 바이트부터 완성될 때까지의 시간
+     * @param length         블록 데이터 크기
+     * @return 바꿀 블록 크기, 그대로 두면 0
+     */
+    public int onBlock(long roundTripNanos, long transferNanos, int length) {
+        consecutiveErrors = 0;
+        if (decided || maxBlockSize <= BASE_BLOCK_SIZE || roundTripNanos < 0) {
+            return 0;
+        }
+
+        this.roundTripNanos += Math.max(0, roundTripNanos);
+        this.transferNanos += Math.max(0, transferNanos);
+        sampledBytes += length;
+        if (++samples < SAMPLE_BLOCKS) {
+            return 0;
+        }
+
+        decided = true;
+        int chosen = chooseBlockSize(this.roundTripNanos / samples, this.transferNanos, sampledBytes, maxBlockSize);
+        if (chosen == blockSize) {
+            return 0;
+        }
+        blockSize = chosen;
+        return chosen;
+    }
+
+    /**
+     * 손상/누락 블록을 반영합니다.
+     * @return 1K로 돌아가야 하면 BASE_BLOCK_SIZE, 그대로 두면 0
+     */
+    public int onError() {
+        if (blockSize == BASE_BLOCK_SIZE || ++consecutiveErrors < MAX_CONSECUTIVE_ERRORS) {
+            return 0;
+        }
+        blockSize = BASE_BLOCK_SIZE;
+        return BASE_BLOCK_SIZE;
+    }
+
+    /**
+     * 블록 크기 ≥ TARGET_RATIO × 평균 왕복 시간 × 처리량인 가장 작은 크기 (1K의 2의 거듭제곱 배, 최대 maxBlockSize)
+     * 수신 시간을 잴 수 없을 만큼 빠르면(한 번의 읽기로 프레임이 다 옴) 최대 크기
+     */
+    static int chooseBlockSize(long roundTripNanos, long transferNanos, long bytes, int maxBlockSize) {
+        if (transferNanos <= 0) {
+            return maxBlockSize;
+        }
+        int size = BASE_BLOCK_SIZE;
+        double target = TARGET_RATIO * (double) roundTripNanos * bytes / transferNanos;
+        while (size < target && size * 2 <= maxBlockSize) {
+            size *= 2;
+        }
+        return size;
+    }
+
+    /**
+     * 송신자가 제안한 크기를 받을 수 있는 크기로 내림 (1K의 2의 거듭제곱 배, MAX_BLOCK_SIZE 이하)
+     */
+    public static int normalize(int offered) {
+        int size = BASE_BLOCK_SIZE;
+        while (size * 2 <= Math.min(offered, MAX_BLOCK_SIZE)) {
+            size *= 2;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,85 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * deflate(zlib)로 압축해 보낸 APK를 받는 대로 풀어서 기록합니다. (헤더 z=deflate, zlen=원래 크기)
+ * 압축을 푸는 작업은 기록 스레드에서 하므로 수신 스레드는 링크 속도로 블록을 계속 받습니다.
+ */
+public class DeflatedPayloadWriter implements PayloadDecoder {
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final ApkOutputFile output;
+    private final long compressedSize;
+    private final long targetSize;
+
+    private final Inflater inflater = new Inflater();
+    private final byte[] inflated = new byte[BUFFER_SIZE];
+
+    private long received = 0; // 받은 압축 데이터 (패딩 제외)
+    private long written = 0;
+
+    /**
+     * @param output         APK를 기록할 파일 (크기는 targetSize)
+     * @param compressedSize 헤더의 파일 크기 (압축된 크기, 이후의 패딩은 버림)
+     * @param targetSize     압축을 푼 APK 크기
+     */
+    public DeflatedPayloadWriter(ApkOutputFile output, long compressedSize, long targetSize) {
+        this.output = output;
+        this.compressedSize = compressedSize;
+        this.targetSize = targetSize;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        length = (int) Math.max(0, Math.min(length, compressedSize - received));
+        if (length == 0) {
+            return;
+        }
+        if (inflater.finished()) {
+            throw corrupted("unexpected data after the end of the stream");
+        }
+        received += length;
+        inflater.setInput(data, offset, length);
+
+        while (!inflater.needsInput() && !inflater.finished()) {
+            int count;
+            try {
+                count = inflater.inflate(inflated);
+            } catch (DataFormatException e) {
+                throw corrupted(e.getMessage());
+            }
+            if (count == 0 && inflater.needsDictionary()) {
+                throw corrupted("preset dictionary is not supported");
+            }
+            if (written + count > targetSize) {
+                throw corrupted("more than " + targetSize + " bytes");
+            }
+            output.write(inflated, 0, count);
+            written += count;
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!inflater.finished() || written != targetSize) {
+            throw new IOException("6-104. Compressed data is incomplete (" + written + "/" + targetSize + " bytes decompressed)");
+        }
+    }
+
+    @Override
+    public long getWrittenSize() {
+        return written;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+    }
+
+    private static IOException corrupted(String reason) {
+        return new IOException("6-104. Corrupted compressed data: " + reason);
+    }
+}
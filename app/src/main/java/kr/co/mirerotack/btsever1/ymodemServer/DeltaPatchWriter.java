@@ -0,0 +1,233 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 수신 중인 델타 패치를 설치된 APK(기준 파일)에 적용해, 새 APK를 ApkOutputFile에 바로 기록합니다.
+ * 패치를 파일로 모았다가 적용하지 않으므로, 마지막 블록을 받는 즉시 새 APK와 그 해시가 나옵니다.
+ * <p>
+ * 패치 형식: bsdiff의 제어/차분/추가 구조를 그대로 쓰되, Android에 없는 bzip2 대신 deflate(zlib) 스트림 하나에 담음
+ * <pre>
+ * zlib( "YMDELTA1"
+ *       { [diffLength][extraLength][seek]   각 8바이트, bsdiff와 같은 부호-크기 little-endian
+ *         diffLength 바이트                  기준 파일의 같은 위치 바이트에 더해서 기록
+ *         extraLength 바이트 }*              그대로 기록, 이후 기준 위치 += seek
+ *     )
+ * </pre>
+ * 새 APK의 크기(헤더의 delta 값)만큼 기록하면 끝나며, 그 뒤의 데이터나 크기를 넘는 레코드는 손상으로 처리합니다.
+ */
+public class DeltaPatchWriter implements PayloadDecoder {
+    public static final byte[] MAGIC = "YMDELTA1".getBytes(Charset.forName("US-ASCII"));
+
+    private static final int STATE_MAGIC = 0;
+    private static final int STATE_CONTROL = 1;
+    private static final int STATE_DIFF = 2;
+    private static final int STATE_EXTRA = 3;
+    private static final int STATE_DONE = 4;
+
+    private static final int CONTROL_SIZE = 24;
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final RandomAccessFile base;
+    private final long baseSize;
+    private final ApkOutputFile output;
+    private final long patchSize;
+    private final long targetSize;
+
+    private final Inflater inflater = new Inflater();
+    private final byte[] inflated = new byte[BUFFER_SIZE];
+    private final byte[] baseBuffer = new byte[BUFFER_SIZE];
+    private final byte[] control = new byte[CONTROL_SIZE];
+
+    private int state = STATE_MAGIC;
+    private int controlFill = 0;
+    private long remaining = 0;     // 현재 차분/추가 구간의 남은 바이트
+    private long extraLength = 0;
+    private long seek = 0;
+    private long basePosition = 0;
+    private long written = 0;       // 새 APK에 기록한 바이트
+    private long received = 0;      // 받은 패치 바이트 (패딩 제외)
+
+    /**
+     * @param baseApk    설치된 APK (패치를 만든 기준 파일)
+     * @param output     새 APK를 기록할 파일 (크기는 targetSize)
+     * @param patchSize  헤더의 파일 크기 (패치 크기, 이후의 패딩은 버림)
+     * @param targetSize 새 APK의 크기
+     */
+    public DeltaPatchWriter(File baseApk, ApkOutputFile output, long patchSize, long targetSize) throws IOException {
+        this.base = new RandomAccessFile(baseApk, "r");
+        this.baseSize = base.length();
+        this.output = output;
+        this.patchSize = patchSize;
+        this.targetSize = targetSize;
+    }
+
+    /**
+     * 받은 패치 데이터를 이어서 적용합니다.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        length = (int) Math.max(0, Math.min(length, patchSize - received));
+        if (length == 0) {
+            return;
+        }
+        received += length;
+        inflater.setInput(data, offset, length);
+        inflate();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (state != STATE_DONE || !inflater.finished()) {
+            throw new IOException("6-103. Delta patch is incomplete (" + written + "/" + targetSize + " bytes reconstructed)");
+        }
+    }
+
+    @Override
+    public long getWrittenSize() {
+        return written;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+        try {
+            base.close();
+        } catch (IOException e) { /* 무시 가능 */ }
+    }
+
+    private void inflate() throws IOException {
+        while (!inflater.needsInput() && !inflater.finished()) {
+            int count;
+            try {
+                count = inflater.inflate(inflated);
+            } catch (DataFormatException e) {
+                throw corrupted(e.getMessage());
+            }
+            if (count == 0 && inflater.needsDictionary()) {
+                throw corrupted("preset dictionary is not supported");
+            }
+            apply(inflated, 0, count);
+        }
+    }
+
+    /**
+     * 압축을 푼 패치 데이터를 상태에 따라 처리합니다. (data는 차분을 더하는 데 그대로 사용)
+     */
+    private void apply(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count;
+            switch (state) {
+                case STATE_MAGIC:
+                case STATE_CONTROL:
+                    int needed = (state == STATE_MAGIC ? MAGIC.length : CONTROL_SIZE) - controlFill;
+                    count = Math.min(length, needed);
+                    System.arraycopy(data, offset, control, controlFill, count);
+                    controlFill += count;
+                    if (count == needed) {
+                        controlFill = 0;
+                        if (state == STATE_MAGIC) {
+                            checkMagic();
+                        } else {
+                            startRecord();
+                        }
+                    }
+                    break;
+                case STATE_DIFF:
+                    count = (int) Math.min(Math.min(length, remaining), baseBuffer.length);
+                    addBase(data, offset, count);
+                    emit(data, offset, count);
+                    basePosition += count;
+                    break;
+                case STATE_EXTRA:
+                    count = (int) Math.min(length, remaining);
+                    emit(data, offset, count);
+                    break;
+                default:
+                    throw corrupted("unexpected data after " + targetSize + " bytes");
+            }
+            offset += count;
+            length -= count;
+            nextStage();
+        }
+    }
+
+    private void checkMagic() throws IOException {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (control[i] != MAGIC[i]) {
+                throw corrupted("bad magic");
+            }
+        }
+        state = STATE_CONTROL;
+    }
+
+    private void startRecord() throws IOException {
+        long diffLength = readOffset(control, 0);
+        extraLength = readOffset(control, 8);
+        seek = readOffset(control, 16);
+        if (diffLength < 0 || extraLength < 0 || written + diffLength + extraLength > targetSize) {
+            throw corrupted("invalid control record at " + written);
+        }
+        state = STATE_DIFF;
+        remaining = diffLength;
+    }
+
+    /**
+     * 현재 구간을 다 쓰면 다음 구간으로 (길이가 0인 구간은 바로 건너뜀)
+     */
+    private void nextStage() {
+        while (remaining == 0 && (state == STATE_DIFF || state == STATE_EXTRA)) {
+            if (state == STATE_DIFF) {
+                state = STATE_EXTRA;
+                remaining = extraLength;
+            } else {
+                basePosition += seek;
+                state = (written == targetSize) ? STATE_DONE : STATE_CONTROL;
+            }
+        }
+    }
+
+    /**
+     * 차분 바이트에 기준 파일의 같은 위치 바이트를 더합니다. 기준 파일 범위 밖은 0으로 봄 (bsdiff와 같음)
+     */
+    private void addBase(byte[] data, int offset, int count) throws IOException {
+        long start = Math.max(basePosition, 0);
+        long end = Math.min(basePosition + count, baseSize);
+        if (start >= end) {
+            return;
+        }
+        int skip = (int) (start - basePosition);
+        int length = (int) (end - start);
+        base.seek(start);
+        base.readFully(baseBuffer, 0, length);
+        for (int i = 0; i < length; i++) {
+            data[offset + skip + i] += baseBuffer[i];
+        }
+    }
+
+    private void emit(byte[] data, int offset, int count) throws IOException {
+        output.write(data, offset, count);
+        written += count;
+        remaining -= count;
+    }
+
+    /**
+     * bsdiff의 offtin: 8바이트 little-endian 크기 + 최상위 비트 부호
+     */
+    static long readOffset(byte[] data, int offset) {
+        long value = data[offset + 7] & 0x7F;
+        for (int i = 6; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return (data[offset + 7] & 0x80) != 0 ? -value : value;
+    }
+
+    private static IOException corrupted(String reason) {
+        return new IOException("6-103. Corrupted delta patch: " + reason);
+    }
+}
@@ -0,0 +1,209 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+
+import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
+
+/**
+ * 최근에 받은 APK를 내용 해시(sha256)로 보관하는 스테이징 영역 (APK_PATH/staging/&lt;sha256&gt;.apk)
+ * - 같은 APK를 다시 보내는 송신자(재부팅 실패 후 재시도, 작업자의 재실행)는 데이터 전송 없이 보관본으로 바로 검증/재부팅
+ * - 항목 수와 전체 크기 상한을 넘으면 가장 오래 사용하지 않은 항목부터 삭제 (LRU, 파일 수정 시각 기준)
+ * - 해시 확인을 마친 파일만 보관하며, 꺼낼 때 다시 해시를 계산해 보관 중 손상된 항목은 버림
+ */
+public class FirmwareStagingCache {
+    public static final String DIRECTORY_NAME = "staging";
+    public static final int DEFAULT_MAX_ENTRIES = 3;
+    public static final long DEFAULT_MAX_TOTAL_SIZE = 64L * 1024 * 1024;
+
+    private static final String EXTENSION = ".apk";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final File directory;
+    private final int maxEntries;
+    private final long maxTotalSize;
+
+    /**
+     * @param directory    보관 디렉터리 (없으면 보관할 때 생성)
+     * @param maxEntries   보관할 최대 항목 수
+     * @param maxTotalSize 보관할 최대 전체 크기 (bytes)
+     */
+    public FirmwareStagingCache(File directory, int maxEntries, long maxTotalSize) {
+        this.directory = directory;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    /**
+     * 해시와 크기가 맞는 보관본을 찾습니다. 찾으면 최근 사용으로 표시합니다.
+     * @return 보관된 파일, 없으면 null
+     */
+    public synchronized File find(String sha256, long expectedSize) {
+        if (!isValidKey(sha256)) {
+            return null;
+        }
+        File staged = entryFile(sha256);
+        if (!staged.isFile() || staged.length() != expectedSize) {
+            return null;
+        }
+        staged.setLastModified(System.currentTimeMillis());
+        return staged;
+    }
+
+    /**
+     * 보관본을 target으로 복사하면서 해시와 매니페스트를 다시 읽습니다.
+     * 보관 중 손상되어 해시가 맞지 않으면 보관본과 복사본을 지우고 IOException을 던집니다.
+     * @return 복사하면서 읽은 매니페스트 정보, 찾지 못했으면 null
+     */
+    public ApkManifestInfo restore(File staged, String sha256, File target) throws IOException {
+        long size = staged.length();
+        ApkOutputFile output = new ApkOutputFile(target, size, 0, ApkOutputFile.DEFAULT_BUFFER_SIZE);
+        FileInputStream input = null;
+        boolean restored = false;
+        try {
+            output.startDigest();
+            output.startManifestScan();
+
+            input = new FileInputStream(staged);
+            transfer(input.getChannel(), output);
+
+            String actual = output.finishDigest();
+            if (output.getPosition() != size || !sha256.equalsIgnoreCase(actual)) {
+                synchronized (this) {
+                    staged.delete();
+                }
+                throw new IOException("6-102. Staged firmware " + staged.getName() + " is corrupted (SHA-256: " + actual + ")");
+            }
+            restored = true;
+            return output.getManifest();
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) { /* 무시 가능 */ }
+            }
+            output.close();
+            if (!restored) {
+                target.delete();
+            }
+        }
+    }
+
+    /**
+     * 해시 확인을 마친 APK를 복사해 보관하고, 상한을 넘는 오래된 항목을 삭제합니다.
+     * 보관하지 못해도 설치에는 영향이 없으므로 실패는 로그만 남깁니다.
+     */
+    public synchronized void store(File verifiedFile, String sha256) {
+        if (!isValidKey(sha256) || verifiedFile == null || verifiedFile.length() > maxTotalSize) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            logMessage("[X] Failed to create staging directory: " + directory.getPath());
+            return;
+        }
+
+        File staged = entryFile(sha256);
+        if (staged.isFile() && staged.length() == verifiedFile.length()) {
+            staged.setLastModified(System.currentTimeMillis()); // 이미 보관된 APK (보관본으로 받은 경우 포함)
+            return;
+        }
+
+        evict(verifiedFile.length());
+
+        File temp = new File(directory, sha256.toLowerCase() + TEMP_EXTENSION);
+        try {
+            copy(verifiedFile, temp); // 복사 도중 끊겨도 보관본으로 보이지 않도록 임시 이름으로 기록 후 변경
+            if (!temp.renameTo(staged)) {
+                throw new IOException("rename failed");
+            }
+            logMessage("[O] Firmware staged as " + staged.getName() + " (" + staged.length() + " bytes)");
+        } catch (IOException e) {
+            temp.delete();
+            logMessage("[X] Failed to stage firmware: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 새 항목(incomingSize)을 넣을 자리가 생길 때까지 가장 오래 사용하지 않은 항목부터 삭제합니다.
+     */
+    private void evict(long incomingSize) {
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return;
+        }
+
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = b.lastModified() - a.lastModified(); // 최근 사용 순
+                return difference > 0 ? 1 : (difference < 0 ? -1 : 0);
+            }
+        });
+
+        int count = 1;
+        long totalSize = incomingSize;
+        for (File entry : entries) {
+            if (!entry.getName().endsWith(EXTENSION)) {
+                entry.delete(); // 이전에 끊긴 복사의 임시 파일
+                continue;
+            }
+            if (count < maxEntries && totalSize + entry.length() <= maxTotalSize) {
+                count++;
+                totalSize += entry.length();
+                continue;
+            }
+            logMessage("Evicting staged firmware " + entry.getName());
+            entry.delete();
+        }
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        FileInputStream input = new FileInputStream(source);
+        try {
+            ApkOutputFile output = new ApkOutputFile(target, source.length(), 0, ApkOutputFile.DEFAULT_BUFFER_SIZE);
+            try {
+                transfer(input.getChannel(), output);
+                output.sync();
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void transfer(FileChannel source, ApkOutputFile output) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ApkOutputFile.DEFAULT_BUFFER_SIZE);
+        while (source.read(buffer) >= 0) {
+            buffer.flip();
+            output.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    private File entryFile(String sha256) {
+        return new File(directory, sha256.toLowerCase() + EXTENSION);
+    }
+
+    /**
+     * 파일 이름으로 쓰므로 64자리 16진수만 허용
+     */
+    private static boolean isValidKey(String sha256) {
+        if (sha256 == null || sha256.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < sha256.length(); i++) {
+            if (Character.digit(sha256.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,254 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 프로토콜 이벤트를 고정 크기 레코드로 남기는 비행 기록기 (최근 capacity개의 이벤트만 보관)
+ * - 레코드: 시각(nanoTime), 세션 번호, 이벤트 코드, 블록 번호, 바이트 수 → 텍스트 로그 없이 블록마다 기록
+ * - 락 없는 링: 순번을 getAndIncrement로 받아 슬롯을 정하고, 슬롯의 stamp로 기록 중/덮어쓴 레코드를 구분
+ * - 오류가 나거나 요청하면 바이너리 파일로 내보내고(dump), decode로 시간순 텍스트로 되돌림
+ * 수신 스레드 여러 개가 동시에 기록해도 되며, 기록하는 쪽은 기다리지 않습니다.
+ */
+public class FlightRecorder {
+    public static final int DEFAULT_CAPACITY = 4096; // 2의 거듭제곱
+
+    // 이벤트 코드 (dump 파일에 그대로 기록되므로 값을 바꾸지 않음, 새 코드는 뒤에 추가)
+    public static final int HEADER = 1;           // bytes: 헤더의 파일 크기
+    public static final int BLOCK_OK = 2;         // 블록 수신 (bytes: 블록 크기)
+    public static final int DUPLICATE = 3;        // 이미 받은 블록의 재전송
+    public static final int TIMEOUT = 4;          // 블록 대기/수신 중 타임아웃
+    public static final int BLOCK_ERROR = 5;      // 블록 번호 불일치, 보수/CRC 오류
+    public static final int NAK = 6;              // 재전송 요청
+    public static final int RESIZE = 7;           // 블록 크기 변경 (bytes: 새 크기)
+    public static final int PARITY_RECOVERED = 8; // 손상 블록을 패리티로 복구하기로 함
+    public static final int PARITY = 9;           // 패리티 블록 수신
+    public static final int EOT = 10;             // bytes: 받은 크기
+    public static final int SESSION_OK = 11;      // bytes: 받은 크기
+    public static final int SESSION_FAILED = 12;  // bytes: 받은 크기
+
+    private static final String[] EVENT_NAMES = {"?", "HEADER", "BLOCK_OK", "DUPLICATE", "TIMEOUT", "BLOCK_ERROR", "NAK",
+            "RESIZE", "PARITY_RECOVERED", "PARITY", "EOT", "SESSION_OK", "SESSION_FAILED"};
+
+    static final int MAGIC = 0x594D4652; // "YMFR"
+    static final int VERSION = 1;
+    static final String DUMP_PREFIX = "flight_";
+    static final String DUMP_SUFFIX = ".ymfr";
+    private static final int MAX_DUMPS = 5;
+
+    private static final int FIELDS = 5; // stamp, nanos, session/event, block, bytes
+    private static final FlightRecorder SHARED = new FlightRecorder(DEFAULT_CAPACITY);
+
+    private final AtomicLongArray records;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    /**
+     * @param capacity 보관할 레코드 수 (2의 거듭제곱)
+     */
+    public FlightRecorder(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.records = new AtomicLongArray(capacity * FIELDS);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 모든 수신 세션이 함께 쓰는 기록기
+     */
+    public static FlightRecorder shared() {
+        return SHARED;
+    }
+
+    /**
+     * 새 세션 번호 (기록기 안에서만 의미가 있음, 1부터)
+     */
+    public int newSession() {
+        return sessions.incrementAndGet();
+    }
+
+    public void record(int session, int event, int block, long bytes) {
+        long sequence = next.getAndIncrement();
+        int base = (int) (sequence & mask) * FIELDS;
+        records.set(base, -1); // 기록 중 표시 (읽는 쪽은 이 레코드를 건너뜀)
+        records.lazySet(base + 1, System.nanoTime());
+        records.lazySet(base + 2, ((long) session << 32) | (event & 0xFFFFFFFFL));
+        records.lazySet(base + 3, block);
+        records.lazySet(base + 4, bytes);
+        records.lazySet(base, sequence); // 앞의 필드가 모두 보인 뒤에 stamp가 보임
+    }
+
+    /**
+     * 보관 중인 레코드를 오래된 순서로 복사합니다. 복사하는 동안 덮어써진 레코드는 빠집니다.
+     */
+    public List<Record> snapshot() {
+        long end = next.get();
+        long start = Math.max(0, end - (mask + 1));
+        List<Record> snapshot = new ArrayList<Record>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int base = (int) (sequence & mask) * FIELDS;
+            if (records.get(base) != sequence) {
+                continue;
+            }
+            long nanos = records.get(base + 1);
+            long sessionEvent = records.get(base + 2);
+            long block = records.get(base + 3);
+            long bytes = records.get(base + 4);
+            if (records.get(base) != sequence) {
+                continue; // 읽는 중에 다른 이벤트가 같은 슬롯에 기록됨
+            }
+            snapshot.add(new Record(nanos, (int) (sessionEvent >>> 32), (int) sessionEvent, (int) block, bytes));
+        }
+        return snapshot;
+    }
+
+    /**
+     * 보관 중인 레코드를 바이너리 파일로 내보냅니다.
+     * 형식: MAGIC(4) VERSION(4) 내보낸 시각 ms(8) 같은 순간의 nanoTime(8) 레코드 수(4)
+     * + 레코드마다 nanos(8) session(4) event(4) block(4) bytes(8)
+     */
+    public void dump(File file) throws IOException {
+        List<Record> snapshot = snapshot();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(System.nanoTime());
+            out.writeInt(snapshot.size());
+            for (Record record : snapshot) {
+                out.writeLong(record.nanos);
+                out.writeInt(record.session);
+                out.writeInt(record.event);
+                out.writeInt(record.block);
+                out.writeLong(record.bytes);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * directory에 flight_yyyyMMdd_HHmmss_SSS.ymfr로 내보내고, 최근 MAX_DUMPS개만 남깁니다.
+     * @return 내보낸 파일
+     */
+    public File dumpToDirectory(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create dump directory: " + directory.getPath());
+        }
+        String time = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.getDefault()).format(new Date());
+        File file = new File(directory, DUMP_PREFIX + time + DUMP_SUFFIX);
+        dump(file);
+
+        File[] dumps = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(DUMP_PREFIX) && name.endsWith(DUMP_SUFFIX);
+            }
+        });
+        if (dumps != null && dumps.length > MAX_DUMPS) {
+            Arrays.sort(dumps); // 이름(시각) 순
+            for (int i = 0; i < dumps.length - MAX_DUMPS; i++) {
+                dumps[i].delete();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * dump 파일을 한 줄에 이벤트 하나인 시간순 텍스트로 바꿉니다.
+     * 예: 2026-10-18 09:12:03.481 +12.345 ms s3 BLOCK_OK blk=17 bytes=1024
+     */
+    public static void decode(InputStream input, Writer out) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a flight recorder dump");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported flight recorder version: " + version);
+        }
+        long dumpMillis = in.readLong();
+        long dumpNanos = in.readLong();
+        int count = in.readInt();
+
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+        long firstNanos = 0;
+        for (int i = 0; i < count; i++) {
+            long nanos = in.readLong();
+            int session = in.readInt();
+            int event = in.readInt();
+            int block = in.readInt();
+            long bytes = in.readLong();
+            if (i == 0) {
+                firstNanos = nanos;
+            }
+            long wallMillis = dumpMillis - (dumpNanos - nanos) / 1000000;
+            out.write(timeFormat.format(new Date(wallMillis)));
+            out.write(String.format(Locale.US, " +%.3f ms s%d %s blk=%d bytes=%d\n",
+                    (nanos - firstNanos) / 1000000.0, session, eventName(event), block, bytes));
+        }
+        out.flush();
+    }
+
+    public static String eventName(int event) {
+        return (event > 0 && event < EVENT_NAMES.length) ? EVENT_NAMES[event] : "EVENT_" + event;
+    }
+
+    /**
+     * PC에서 기기에서 가져온 dump 파일을 읽을 때 사용: java ... FlightRecorder flight_xxx.ymfr
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: FlightRecorder <dump file>");
+            return;
+        }
+        InputStream in = new FileInputStream(args[0]);
+        try {
+            decode(in, new OutputStreamWriter(System.out, Charset.forName("UTF-8")));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 레코드 하나 (snapshot 결과)
+     */
+    public static class Record {
+        public final long nanos;
+        public final int session;
+        public final int event;
+        public final int block;
+        public final long bytes;
+
+        Record(long nanos, int session, int event, int block, long bytes) {
+            this.nanos = nanos;
+            this.session = session;
+            this.event = event;
+            this.block = block;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+import kr.co.mirerotack.btsever1.utils.TimeoutException;
+import kr.co.mirerotack.btsever1.utils.Timer;
+
+/**
+ * Modem 하위에서 사용하는 버퍼링 프레임 리더
+ * 수신 스트림을 내부 버퍼로 한 번에 읽어 들인 뒤, 바이트 단위로 꺼내거나 버퍼째 프레임 파서에 넘길 수 있게 합니다.
+ * - 타임아웃 제어가 가능한 전송(TCP)은 SO_TIMEOUT 기반의 블로킹 read로 데드라인까지 대기
+ * - 타임아웃 제어가 불가능한 전송(BluetoothSocket)은 첫 바이트가 도착할 때까지만 폴링하고,
+ *   도착한 데이터는 available() 만큼 한 번에 읽어 들임
+ * 1K STX 프레임 하나가 보통 한두 번의 read 호출로 처리됩니다. (프레임 검사는 YModemFrameParser)
+ */
+public class FrameReader {
+
+    /**
+     * 전송 계층의 읽기 타임아웃을 설정하는 인터페이스 (예: Socket.setSoTimeout)
+     */
+    public interface ReadTimeoutControl {
+        void setReadTimeout(int timeoutMillis) throws IOException;
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 4 * 1024; // STX 프레임(1029바이트) 여러 개를 담을 수 있는 크기
+    private static final int POLL_INTERVAL = 10; // 타임아웃 제어가 불가능한 전송에서 첫 바이트 대기 간격 (ms)
+
+    private final InputStream inputStream;
+    private final ReadTimeoutControl timeoutControl;
+
+    private final byte[] buffer;
+    private int start = 0; // 아직 소비되지 않은 데이터의 시작 위치
+    private int end = 0;   // 버퍼에 채워진 데이터의 끝 위치
+    private int appliedTimeout = -1; // 마지막으로 설정한 SO_TIMEOUT 값 (-1: 설정 안 함)
+
+    /**
+     * @param inputStream    수신 스트림
+     * @param timeoutControl 읽기 타임아웃 제어 (null이면 폴링 방식으로 동작)
+     */
+    public FrameReader(InputStream inputStream, ReadTimeoutControl timeoutControl) {
+        this.inputStream = inputStream;
+        this.timeoutControl = timeoutControl;
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * 1바이트를 읽어 반환합니다. 버퍼가 비어 있으면 스트림에서 채웁니다.
+     */
+    public byte readByte(Timer timer) throws IOException, TimeoutException {
+        if (start == end) {
+            fill(timer);
+        }
+        return buffer[start++];
+    }
+
+    /**
+     * 스트림에서 최소 1바이트 이상을 더 읽어 들입니다 (파서에 넣을 바이트가 없을 때 사용)
+     */
+    public void readMore(Timer timer) throws IOException, TimeoutException {
+        fill(timer);
+    }
+
+    /**
+     * 아직 소비되지 않은 데이터의 시작 위치 ({@link #array()} 기준)
+     */
+    public int position() {
+        return start;
+    }
+
+    /**
+     * 버퍼에 남아 있는 (소비되지 않은) 바이트 수
+     */
+    public int available() {
+        return end - start;
+    }
+
+    public byte[] array() {
+        return buffer;
+    }
+
+    public void skip(int length) {
+        start += length;
+        if (start == end) { // 버퍼를 모두 소비했으면 처음부터 다시 채움
+            start = 0;
+            end = 0;
+        }
+    }
+
+    /**
+     * 블로킹 read 이후 다른 코드가 원본 스트림을 직접 읽을 수 있도록 SO_TIMEOUT을 해제합니다.
+     */
+    public void clearReadTimeout() throws IOException {
+        if (timeoutControl != null && appliedTimeout > 0) {
+            timeoutControl.setReadTimeout(0);
+            appliedTimeout = 0;
+        }
+    }
+
+    /**
+     * 남은 데이터를 버퍼 앞으로 옮깁니다.
+     */
+    private void compact() {
+        int remaining = end - start;
+        System.arraycopy(buffer, start, buffer, 0, remaining);
+        start = 0;
+        end = remaining;
+    }
+
+    /**
+     * 스트림에서 최소 1바이트 이상을 버퍼에 읽어 들입니다. 데드라인을 넘기면 TimeoutException 발생
+     */
+    private void fill(Timer timer) throws IOException, TimeoutException {
+        if (end == buffer.length) {
+            compact();
+        }
+
+        int space = buffer.length - end;
+        int bytesRead;
+
+        if (timeoutControl != null) {
+            long remaining = timer.getRemainingTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            applyTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+
+            try {
+                bytesRead = inputStream.read(buffer, end, space);
+            } catch (SocketTimeoutException e) {
+                throw new TimeoutException();
+            }
+        } else {
+            int available;
+            while ((available = inputStream.available()) <= 0) {
+                if (timer.isExpired()) {
+                    throw new TimeoutException();
+                }
+                sleep();
+            }
+            bytesRead = inputStream.read(buffer, end, Math.min(space, available));
+        }
+
+        if (bytesRead == -1) throw new IOException("Stream closed before reading fully");
+        end += bytesRead;
+    }
+
+    private void applyTimeout(int timeoutMillis) throws IOException {
+        if (timeoutMillis != appliedTimeout) {
+            timeoutControl.setReadTimeout(timeoutMillis);
+            appliedTimeout = timeoutMillis;
+        }
+    }
+
+    private void sleep() throws InterruptedIOException {
+        try {
+            Thread.sleep(POLL_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Transmission was interrupted");
+        }
+    }
+}
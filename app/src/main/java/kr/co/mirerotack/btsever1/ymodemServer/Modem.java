@@ -1,18 +1,16 @@
 package kr.co.mirerotack.btsever1.ymodemServer;
 
-import android.util.Log;
-
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 
+import kr.co.mirerotack.btsever1.utils.LogChannel;
 import kr.co.mirerotack.btsever1.utils.Logger;
 import kr.co.mirerotack.btsever1.utils.TimeoutException;
 import kr.co.mirerotack.btsever1.utils.Timer;
 import kr.co.mirerotack.btsever1.utils.YModemCRC16;
 
-import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
-
 /**
  * This is core Modem class supporting XModem (and some extensions XModem-1K, XModem-CRC), and YModem.<br/>
  * YModem support is limited (currently block 0 is ignored).<br/>
@@ -22,13 +20,19 @@ import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
  * You are free to use/modify the code for any purpose, but please leave a reference to me.<br/>
  */
 public class Modem {
+    private static final LogChannel LOG = Logger.channel("modem");
 
     protected static final byte SOH = 0x01; /* Start Of Header 128바이트 패킷 시작 */
     protected static final byte STX = 0x02; /* Start Of Text 1024바이트 패킷 시작 */
+    protected static final byte XSTX = 0x03; /* 확장 블록 패킷 시작 (헤더 blk로 협상한 크기, CRC-32) */
     public static final byte EOT = 0x04; /* 전송 종료n */
+    protected static final byte PARITY = 0x05; /* FEC 패리티 블록 시작 (앞선 그룹 데이터 블록들의 XOR, STX와 같은 형식) */
     protected static final byte ACK = 0x06; /* 수신 확인 */
     protected static final byte NAK = 0x15; /* 오류 발생 */
+    protected static final byte NOT_NEEDED = 0x16; /* 헤더의 pkg/ver로 판정한 결과 설치가 필요 없음 (4-1 ACK 대신, 데이터 수신 생략) */
+    protected static final byte ALREADY_STAGED = 0x17; /* 헤더의 sha256과 같은 APK를 이미 보관 중 (4-1 ACK 대신, 데이터 없이 7-1 EOT 교환으로) */
     protected static final byte CAN = 0x18; /* 취소? */
+    protected static final byte RESIZE = 0x19; /* 블록 크기 변경 (+ 크기/1024 1바이트), 이어지는 ACK/NAK 앞에 붙여 보냄 */
 
     protected static final byte CPMEOF = 0x1A; /* 마지막 패딩 */
     protected static final byte START_ACK = 'C'; /* YModem 프로토콜 시작 신호 = 'C' */
@@ -40,13 +44,35 @@ public class Modem {
     protected static final int WAIT_FOR_RECEIVER_TIMEOUT = 60_000;
     protected static final int SEND_BLOCK_TIMEOUT = 10_000;
 
-    private final String TAG = "TCPCOM";
-
-    private final InputStream inputStream;
-    private final OutputStream outputStream;
+    private final FrameReader frameReader;
+    private final YModemFrameParser parser;
+    private final YModemResponder responder;
 
     private final byte[] shortBlockBuffer;
     private final byte[] longBlockBuffer;
+    private byte[] extendedBlockBuffer = null; // 확장 블록(XSTX)을 받을 때만 할당
+
+    // 블록마다 새로 만들지 않도록 재사용하는 타이머 (readNextBlockStart → readBlock 순서로만 사용됨)
+    private final Timer blockTimer = new Timer(BLOCK_TIMEOUT);
+
+    private int lastReceivedBlockNumber = -1; // 마지막으로 수신한 프레임의 블록 번호
+    private boolean windowMode = false; // true: 블록 번호 순서를 검사하지 않음 (윈도우 모드)
+
+    // 파서가 전달한 마지막 이벤트 (readNextBlockStart/waitForBlockStart에서 받고, readBlock에서 소비)
+    private static final int EVENT_NONE = 0;
+    private static final int EVENT_FRAME = 1;     // 헤더 또는 데이터 블록
+    private static final int EVENT_DUPLICATE = 2;
+    private static final int EVENT_ERROR = 3;
+    private static final int EVENT_TIMEOUT = 4;   // 프레임 중간에 타임아웃
+    private static final int EVENT_EOT = 5;
+
+    private int eventType = EVENT_NONE;
+    private int eventError = 0;
+    private byte[] eventData;
+    private int eventOffset;
+    private int eventLength;
+    private long frameStartNanos; // 마지막 이벤트의 첫 바이트가 도착한 시각 (블록 크기 조정용 왕복/수신 시간 측정)
+    private long frameEndNanos;   // 마지막 이벤트가 완성된 시각
 
     /**
      * Constructor
@@ -55,8 +81,20 @@ public class Modem {
      * @param outputStream stream for writing data to other side
      */
     protected Modem(InputStream inputStream, OutputStream outputStream) {
-        this.inputStream = inputStream;
-        this.outputStream = outputStream;
+        this(inputStream, outputStream, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param inputStream    stream for reading received data from other side
+     * @param outputStream   stream for writing data to other side
+     * @param timeoutControl read timeout control of the transport (null: available() polling)
+     */
+    protected Modem(InputStream inputStream, OutputStream outputStream, FrameReader.ReadTimeoutControl timeoutControl) {
+        this.frameReader = new FrameReader(inputStream, timeoutControl);
+        this.parser = new YModemFrameParser(new ParserEvents());
+        this.responder = new YModemResponder(YModemResponder.forStream(outputStream));
         shortBlockBuffer = new byte[128];
         longBlockBuffer = new byte[1024];
     }
@@ -67,6 +105,10 @@ public class Modem {
         this.blockNumber = 0;
     }
 
+    public void setBlockNumber(int sequence) { // 이어받기 시 시작 블록 번호 설정
+        this.blockNumber = sequence % 256;
+    }
+
     public int getBlockNumber() {
         return blockNumber;
     }
@@ -79,9 +121,72 @@ public class Modem {
         blockNumber = (blockNumber - 1) % 256;  // ✅ 8비트 순환 유지
     }
 
+    /**
+     * 협상한 확장 블록 크기를 설정합니다. 1024보다 크면 그 크기의 XSTX 프레임을 받고, 1024 이하면 STX 프레임만 받습니다.
+     */
+    public void setExtendedBlockSize(int blockSize) {
+        if (blockSize <= longBlockBuffer.length) {
+            parser.setExtendedBlockSize(0);
+            return;
+        }
+        parser.setExtendedBlockSize(blockSize);
+        if (extendedBlockBuffer == null || extendedBlockBuffer.length != blockSize) {
+            extendedBlockBuffer = new byte[blockSize];
+        }
+    }
+
+    /**
+     * 헤더 fec로 협상한 FEC 패리티 블록(PARITY)을 받을지 설정합니다.
+     */
+    public void setParityEnabled(boolean enabled) {
+        parser.setParityEnabled(enabled);
+    }
+
+    /**
+     * 마지막으로 받은 프레임의 첫 바이트가 도착한 시각 (System.nanoTime)
+     */
+    public long getLastFrameStartNanos() {
+        return frameStartNanos;
+    }
+
+    /**
+     * 마지막으로 받은 프레임이 완성된 시각 (System.nanoTime)
+     */
+    public long getLastFrameEndNanos() {
+        return frameEndNanos;
+    }
+
+    /**
+     * 윈도우 모드에서는 블록이 순서와 다르게 올 수 있으므로 번호 순서를 검사하지 않습니다.
+     */
+    public void setWindowMode(boolean windowMode) {
+        this.windowMode = windowMode;
+    }
+
     protected void sendByte(byte b) throws IOException {
-        outputStream.write(b);
-        outputStream.flush();
+        responder.send(b);
+    }
+
+    /**
+     * 윈도우 모드 응답 전송: 응답 코드(ACK/NAK) + 블록 번호(1)를 한 번에 전송
+     */
+    protected void sendResponse(byte code, int blockNumber) throws IOException {
+        responder.respond(code, blockNumber);
+    }
+
+    /**
+     * 블록 크기 변경 알림(RESIZE + 크기/1024)과 응답 코드(ACK/NAK)를 한 번에 전송
+     */
+    protected void sendResize(int blockSize, byte code) throws IOException {
+        responder.resize(blockSize, code);
+    }
+
+    protected void sendBytes(byte[] data) throws IOException {
+        responder.sendBytes(data);
+    }
+
+    public int getLastReceivedBlockNumber() {
+        return lastReceivedBlockNumber;
     }
 
     /**
@@ -99,27 +204,23 @@ public class Modem {
 
         while (errorCount < MAXERRORS) {
             // 📤 전송 시작 요청 (송신자가 응답할 때까지 반복 전송)
-            sendByte(START_ACK);
-            logMessage("1-1. [TX] C");
+            responder.requestStart();
+            LOG.debug("1-1. [TX] C");
 
             timer.start(); // 타이머 시작
 
             character = readByte(timer); // 📥 송신자로부터 응답 수신
             if (character == 'C') {
-                logMessage("2-2. [RX] C");
+                LOG.debug("2-2. [RX] C");
             }
 
             try {
-                while (true) {
-                    character = readByte(timer); // 📥 송신자로부터 응답 수신
-
-                    if (character == SOH || character == STX) {
-                        // 📌 송신자가 데이터 블록 전송을 시작하면 해당 블록 타입(SOH/STX)을 반환
-                        return character;
-                    }
-                }
+                // 📌 송신자가 헤더 블록을 보내면 해당 블록 타입(SOH/STX)을 반환
+                parser.expectHeader();
+                return nextEvent(timer);
             } catch (TimeoutException ignored) {
                 // 📌 타임아웃 발생 시 재시도
+                parser.discardPartialFrame();
                 errorCount++;
             }
         }
@@ -130,27 +231,18 @@ public class Modem {
     }
 
     protected int readNextBlockStart(boolean lastBlockResult) throws IOException, InvalidBlockException {
-        int character = -1;
         int errorCount = 0;
-        Timer timer = new Timer(BLOCK_TIMEOUT);
+        Timer timer = blockTimer;
         while (true) {
             timer.start();
             try {
-                while (true) {
-                    character = readByte(timer);
-
-                    if (character == SOH || character == STX || character == EOT) {
-                        return character;
-                    } else {
-                        logMessage("[X] SOH, STX, EOT가 아닌 " + character + "가 들어옴.");
-                    }
-                }
+                return nextBlockEvent(timer);
             } catch (TimeoutException ignored) {
                 // repeat last block result and wait for next block one more time
                 if (++errorCount < MAXERRORS) {
                     sendByte(lastBlockResult ? ACK : NAK);
-                    logMessage("100. [TX] " + (lastBlockResult ? "ACK" : "NAK") + ", First byte of data block is corrupted");
-                    throw new InvalidBlockException("InvalidBlockException: The first byte (character) of the packet is not SOH, STX, or EOT -> character: " + character);
+                    LOG.warn("100. [TX] {}, First byte of data block is corrupted", lastBlockResult ? "ACK" : "NAK");
+                    throw new InvalidBlockException("InvalidBlockException: The first byte (character) of the packet is not SOH, STX, or EOT");
                 } else {
                     interruptTransmission();
                     throw new RuntimeException("Timeout, no data received from transmitter");
@@ -159,30 +251,63 @@ public class Modem {
         }
     }
 
-    private void shortSleep() {
+    /**
+     * 다음 프레임의 첫 바이트(SOH/STX/EOT)를 기다립니다. 타임아웃 시 응답을 보내지 않고 TimeoutException을 던지므로,
+     * 재전송 요청은 호출하는 쪽(윈도우 모드)에서 결정합니다.
+     */
+    protected int waitForBlockStart() throws IOException, TimeoutException {
+        return nextBlockEvent(blockTimer.start());
+    }
+
+    /**
+     * 데이터 블록 하나(또는 EOT)를 파서로 받아 둡니다. 프레임 중간에 타임아웃이 나면 조립 중인 프레임을 버리고,
+     * 이어지는 readBlock()에서 TimeoutException이 발생하도록 합니다 (기존처럼 NAK 후 같은 블록 재수신).
+     */
+    private int nextBlockEvent(Timer timer) throws IOException, TimeoutException {
+        parser.expectBlock(windowMode ? YModemFrameParser.ANY_BLOCK : blockNumber);
         try {
-            Thread.sleep(10);
-        } catch (InterruptedException e) {
-            try {
-                interruptTransmission();
-            } catch (IOException ignore) {
+            return nextEvent(timer);
+        } catch (TimeoutException e) {
+            if (!parser.discardPartialFrame()) {
+                throw e;
             }
-            throw new RuntimeException("Transmission was interrupted", e);
+            eventType = EVENT_TIMEOUT;
+            return parser.getLastFrameType();
         }
     }
 
+    /**
+     * 파서가 이벤트를 하나 전달할 때까지 수신 버퍼의 바이트를 넣습니다.
+     * @return 프레임이면 SOH/STX, 전송 종료면 EOT
+     */
+    private int nextEvent(Timer timer) throws IOException, TimeoutException {
+        eventType = EVENT_NONE;
+        long firstDataAt = (frameReader.available() > 0) ? System.nanoTime() : 0;
+        while (eventType == EVENT_NONE) {
+            if (frameReader.available() == 0) {
+                readMore(timer);
+                if (firstDataAt == 0) firstDataAt = System.nanoTime();
+            }
+            int consumed = parser.feed(frameReader.array(), frameReader.position(), frameReader.available());
+            frameReader.skip(consumed);
+        }
+        frameStartNanos = firstDataAt;
+        frameEndNanos = System.nanoTime();
+        return (eventType == EVENT_EOT) ? EOT : parser.getLastFrameType();
+    }
+
     /**
      * send CAN to interrupt seance
      *
      * @throws IOException
      */
     protected void interruptTransmission() throws IOException {
-        sendByte(CAN);
-        sendByte(CAN);
+        responder.cancel();
     }
 
     /**
      * YModem 프로토콜에서 하나의 데이터 블록을 읽는 함수
+     * 프레임은 readNextBlockStart/waitForBlockStart/sendStartSignal에서 이미 파서로 검사되었으며, 여기서는 그 결과를 반환합니다.
      *
      * @param blockNumber 현재 읽어야 할 블록 번호 (0부터 시작)
      * @param shortBlock  128바이트(SOH) 또는 1024바이트(STX) 블록 여부, 사실상 isHeader와 값동일
@@ -197,120 +322,144 @@ public class Modem {
     // STX(1)는 이미 읽고 호출함 + 블록번호(1) + 블록번호 보수(1) + 데이터(1024) + CRC(2)
     protected byte[] readBlock(int blockNumber, boolean shortBlock, YModemCRC16 YModemCrc16, int packet_number, int totalPacketSize)
             throws IOException, TimeoutException, RepeatedBlockException, SynchronizationLostException, InvalidBlockException {
+        return takeFrame(blockNumber, packet_number, totalPacketSize);
+    }
 
-        // 📌 1. 블록 버퍼 할당 (128바이트 or 1024바이트)
-        byte[] block;
-        Timer timer = new Timer(BLOCK_TIMEOUT).start(); // 타임아웃 설정
-
-        if (shortBlock) {
-            block = shortBlockBuffer; // 128바이트 버퍼
-        } else {
-            block = longBlockBuffer; // 1024바이트 버퍼
+    /**
+     * 윈도우 모드용 블록 수신: 블록 번호의 순서를 검사하지 않고, 보수와 CRC만 검증합니다.
+     * 수신한 블록 번호는 {@link #getLastReceivedBlockNumber()}로 확인합니다.
+     * CRC 오류 시 InvalidBlockException의 블록 번호로 선택적 NAK을 보낼 수 있습니다 (보수 오류 시 -1).
+     */
+    protected byte[] readWindowBlock(boolean shortBlock, YModemCRC16 YModemCrc16, int packet_number, int totalPacketSize)
+            throws IOException, TimeoutException, InvalidBlockException {
+        try {
+            return takeFrame(-1, packet_number, totalPacketSize);
+        } catch (RepeatedBlockException | SynchronizationLostException e) {
+            throw new IllegalStateException(e); // 윈도우 모드에서는 번호 순서를 검사하지 않으므로 발생하지 않음
         }
+    }
 
-        // 📌 2. 블록 번호 수신 (보낸 블록과 동일해야 함)
-        byte character = readByte(timer); // read 블록번호(1)
-
-        if ((character & 0xFF) == blockNumber - 1) {
-            // 📌 같은 블록을 반복 수신하면, 이전 ACK 손실 가능성 있음
-            Log.e(TAG, "5-601. character == blockNumber - 1 -> " + (character & 0xFF) + " == " + (blockNumber - 1));
-            Log.e(TAG, "5-601. Previous block received repeatedly");
-            throw new RepeatedBlockException("RepeatedBlockException : 5-601. Previous block received repeatedly");
-        }
+    /**
+     * 파서가 전달한 프레임 이벤트를 기존 예외 규약으로 바꿉니다.
+     * @param expectedBlockNumber 기대하는 블록 번호 (-1: 순서 검사 안 함, 로그용)
+     */
+    private byte[] takeFrame(int expectedBlockNumber, int packet_number, int totalPacketSize)
+            throws TimeoutException, RepeatedBlockException, SynchronizationLostException, InvalidBlockException {
+        int event = eventType;
+        eventType = EVENT_NONE;
 
-        // 📌 블록 번호가 일치하지 않으면, 데이터 동기화 오류 (패킷 손실 가능)
-        if ((character & 0xFF) != blockNumber) {  // `character`를 다시 읽지 않음
-            Log.e(TAG, "5-602. (character & 0xFF) != blockNumber -> " + (character & 0xFF) + " != " + blockNumber);
-            Log.e(TAG, "5-602. Block number mismatch");
-            throw new SynchronizationLostException("SynchronizationLostException : 5-602. Block number mismatch");
+        switch (event) {
+            case EVENT_TIMEOUT:
+                throw new TimeoutException();
+            case EVENT_DUPLICATE:
+                // 📌 같은 블록을 반복 수신하면, 이전 ACK 손실 가능성 있음
+                LOG.warn("5-601. Previous block received repeatedly: {}", lastReceivedBlockNumber);
+                throw new RepeatedBlockException("RepeatedBlockException : 5-601. Previous block received repeatedly");
+            case EVENT_ERROR:
+                if (eventError == YModemFrameParser.ERROR_SYNC_LOST) {
+                    // 📌 블록 번호가 일치하지 않으면, 데이터 동기화 오류 (패킷 손실 가능)
+                    LOG.warn("5-602. Block number mismatch -> {} != {}", lastReceivedBlockNumber, expectedBlockNumber);
+                    throw new SynchronizationLostException("SynchronizationLostException : 5-602. Block number mismatch");
+                }
+                if (eventError == YModemFrameParser.ERROR_COMPLEMENT) {
+                    // 📌 보정 값이 일치하지 않으면 데이터 오류 (블록 번호 자체를 신뢰할 수 없음)
+                    LOG.warn("5-603. Correction value mismatch");
+                    throw new InvalidBlockException("InvalidBlockException : 5-603. Correction value mismatch");
+                }
+                LOG.warn("5-604. CRC mismatch in packet {}, Data corrupted", packet_number);
+                throw new InvalidBlockException("InvalidBlockException : 5-604. CRC mismatch, Data corrupted", lastReceivedBlockNumber);
+            case EVENT_FRAME:
+                break;
+            default:
+                throw new IllegalStateException("readBlock() called without a received frame");
         }
 
-        // 📌 3. 블록 번호 보정 (보낸 블록 번호의 1의 보수 값)
-        byte character1 = readByte(timer); // read 보수(1)
+        // 📌 검증된 데이터 블록 복사 (미리 할당된 버퍼 재사용, 파서 이벤트 데이터는 다음 수신 전까지만 유효)
+        byte[] block;
+        if (eventLength == shortBlockBuffer.length) block = shortBlockBuffer;
+        else if (eventLength == longBlockBuffer.length) block = longBlockBuffer;
+        else block = extendedBlockBuffer; // XSTX (setExtendedBlockSize로 설정한 크기)
+        System.arraycopy(eventData, eventOffset, block, 0, block.length);
 
-        // 📌 보정 값이 일치하지 않으면 데이터 오류
-        if ((character1 & 0xFF) != (~blockNumber & 0xFF)) {
-            Log.e(TAG, "5-603. (character & 0xFF) != (~blockNumber & 0xFF) " + (character1 & 0xFF) + " != " + (~blockNumber & 0xFF));
-            Log.e(TAG, "5-603. Correction value mismatch");
-            throw new InvalidBlockException("InvalidBlockException : 5-603. Correction value mismatch");
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("5-2. [RX] Packet {} ({} bytes)", packet_number, block.length); // 블록마다 기록 (기본 레벨에서는 인자도 만들지 않음)
         }
-
-        // 📌 4. 실제 데이터 블록 수신
-        // Java의 InputStream.read(byte[], int, int)는 최대 length 바이트를 읽을 뿐,
-        // 실제로는 버퍼에 도착한 데이터만큼만 읽고 루프를 종료함
-        // 특히 TCP는 스트림 기반이라 1024B 단위로 딱딱 떨어지지 않음
-        // inputStream.read(block, 0, block.length);            -> 실제로 block.length 만큼 읽는 것을 보장하지 않는다.
-        readFully(inputStream, block, 0, block.length);   // 정확히 1KB가 채워져야 종료됨
-
         int unit = Math.max(1, (totalPacketSize + 2) / 10);
         if (packet_number % unit == 0 || packet_number + 1 == totalPacketSize) {
             Logger.logReceivedPacket(block, packet_number, totalPacketSize);
         }
 
-        // 📌 5. CRC 검증 (데이터 무결성 확인)
-        int crcBytesRead = 0;
-        byte[] crcBuffer = new byte[YModemCrc16.getCRCLength()];
-        while (crcBytesRead < YModemCrc16.getCRCLength()) {
-            crcBuffer[crcBytesRead] = readByte(timer); // read CRC(2)
-            crcBytesRead++;
+        return block; // 📌 최종적으로 검증된 데이터 블록 반환
+    }
+
+    private byte readByte(Timer timer) throws IOException, TimeoutException {
+        try {
+            return frameReader.readByte(timer);
+        } catch (InterruptedIOException e) {
+            throw interrupted(e);
         }
+    }
 
-        long calculatedCRC = YModemCrc16.calcCRC(block);
-        long receivedCRC = (crcBuffer[0] << 8) | (crcBuffer[1] & 0xFF); // CRC 2바이트 조합
+    private void readMore(Timer timer) throws IOException, TimeoutException {
+        try {
+            frameReader.readMore(timer);
+        } catch (InterruptedIOException e) {
+            throw interrupted(e);
+        }
+    }
 
-        if (receivedCRC < 0) { // 음수값 보정 (unsigned short 변환)
-            receivedCRC = receivedCRC & 0xFFFF;
+    private RuntimeException interrupted(InterruptedIOException e) {
+        try {
+            interruptTransmission();
+        } catch (IOException ignore) {
         }
+        return new RuntimeException("Transmission was interrupted", e);
+    }
 
-        // Log.d(TAG, "calculatedCRC : " + calculatedCRC);
-        // Log.d(TAG, "receivedCRC : " + receivedCRC);
+    /**
+     * 파서 이벤트를 받아 두는 수신자 (블로킹 API로 한 번에 하나씩 꺼내 씀)
+     */
+    private class ParserEvents implements YModemFrameParser.Listener {
+        @Override
+        public void onHeader(byte[] data, int offset, int length) {
+            onBlock(0, data, offset, length);
+        }
 
-        if (calculatedCRC != receivedCRC) {
-            logMessage("5-604. CRC mismatch in packet " + packet_number + ", Data corrupted");
-            logMessage("5-604. Expected CRC: " + calculatedCRC + ", Received CRC: " + receivedCRC);
-            throw new InvalidBlockException("InvalidBlockException : 5-604. CRC mismatch, Data corrupted");
+        @Override
+        public void onBlock(int receivedBlockNumber, byte[] data, int offset, int length) {
+            eventType = EVENT_FRAME;
+            lastReceivedBlockNumber = receivedBlockNumber;
+            eventData = data;
+            eventOffset = offset;
+            eventLength = length;
+        }
 
-//            logMessage(EmojiSample.TX + "5-604. [TX] NAK");
-//            sendByte(NAK);
-//            reduceBlockNumber();
+        @Override
+        public void onDuplicate(int receivedBlockNumber) {
+            eventType = EVENT_DUPLICATE;
+            lastReceivedBlockNumber = receivedBlockNumber;
         }
 
-        return block; // 📌 최종적으로 검증된 데이터 블록 반환
-    }
+        @Override
+        public void onBlockError(int error, int receivedBlockNumber) {
+            eventType = EVENT_ERROR;
+            eventError = error;
+            lastReceivedBlockNumber = receivedBlockNumber;
+        }
 
-    private byte readByte(Timer timer) throws IOException, TimeoutException {
-        while (true) {
-            if (inputStream.available() > 0) {
-                int b = inputStream.read();
-                return (byte) b;
-            }
-            if (timer.isExpired()) {
-                throw new TimeoutException();
-            }
-            shortSleep();
+        @Override
+        public void onEndOfTransmission() {
+            eventType = EVENT_EOT;
         }
     }
 
     /**
-     * 지정한 길이만큼 데이터를 InputStream에서 모두 읽어올 때까지 반복 수행합니다.
-     * InputStream.read()는 요청한 바이트 수만큼 항상 읽지 않기 때문에, 전체 데이터를 확보할 때 필요합니다.
-     *
-     * @param in     InputStream (데이터를 읽을 대상)
-     * @param buffer 데이터를 저장할 배열
-     * @param offset 읽기 시작 위치
-     * @param length 읽어야 할 총 바이트 수
-     * @throws IOException 스트림이 예기치 않게 닫히거나 읽기 실패 시
+     * 블로킹 수신이 끝난 뒤, 원본 스트림을 직접 읽는 코드가 타임아웃에 걸리지 않도록 SO_TIMEOUT을 해제합니다.
      */
-    private void readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
-        int totalRead = 0;
-        while (totalRead < length) {
-            int bytesRead = in.read(buffer, offset + totalRead, length - totalRead);
-            if (bytesRead == -1) throw new IOException("Stream closed before reading fully");
-            totalRead += bytesRead;
-        }
+    protected void releaseReadTimeout() throws IOException {
+        frameReader.clearReadTimeout();
     }
 
-
     static class RepeatedBlockException extends Exception {
         public RepeatedBlockException(String errorMsg) {
             super(errorMsg);
@@ -324,8 +473,19 @@ public class Modem {
     }
 
     static class InvalidBlockException extends Exception {
+        private final int blockNumber; // 손상된 블록의 번호 (알 수 없으면 -1)
+
         public InvalidBlockException(String errorMsg) {
+            this(errorMsg, -1);
+        }
+
+        public InvalidBlockException(String errorMsg, int blockNumber) {
             super(errorMsg);
+            this.blockNumber = blockNumber;
+        }
+
+        public int getBlockNumber() {
+            return blockNumber;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.IOException;
+
+/**
+ * 순방향 오류 정정(FEC) 그룹 (헤더 fec=K)
+ * 송신자는 데이터 블록 K개마다(그리고 EOT 전에) 그 블록들의 XOR인 패리티 블록을 보내며,
+ * 수신자는 그룹 안에서 CRC 오류가 난 블록 하나를 재전송 요청 없이 패리티로 복구합니다.
+ * - 정상 블록은 바로 기록 파이프라인으로 넘기면서 XOR에 누적
+ * - 빠진 블록이 생기면 그 뒤의 블록은 패리티가 올 때까지 보관 (기록 순서 유지)
+ * - 패리티 XOR 누적값 = 빠진 블록
+ * 블록은 모두 1024바이트(STX)입니다.
+ */
+public class ParityGroup {
+    public static final int BLOCK_SIZE = 1024;
+    public static final int MIN_GROUP_SIZE = 2;
+    public static final int MAX_GROUP_SIZE = 32;
+
+    private final int groupSize;
+    private final byte[] accumulated = new byte[BLOCK_SIZE]; // 그룹에서 받은 블록의 XOR
+    private final byte[][] held;                             // 빠진 블록 뒤에 받아 보관 중인 블록
+
+    private int count = 0;    // 그룹에서 받은(빠진 블록 포함) 데이터 블록 수
+    private int missing = -1; // 그룹 안에서 빠진 블록의 위치 (-1: 없음)
+    private int heldCount = 0;
+
+    private int recoveredBlocks = 0;
+    private int parityBlocks = 0;
+    private int parityMismatches = 0; // 빠진 블록 없이 패리티가 맞지 않은 그룹 (CRC로 잡지 못한 손상)
+
+    /**
+     * @param groupSize 패리티 블록 하나가 보호하는 데이터 블록 수 (협상한 K)
+     */
+    public ParityGroup(int groupSize) {
+        this.groupSize = groupSize;
+        this.held = new byte[groupSize][BLOCK_SIZE];
+    }
+
+    public boolean hasMissing() {
+        return missing >= 0;
+    }
+
+    /**
+     * 정상 데이터 블록을 그룹에 넣습니다. 빠진 블록이 없으면 바로 pipeline으로, 있으면 패리티가 올 때까지 보관합니다.
+     * @throws IOException 빠진 블록이 있는 그룹의 패리티를 받지 못하고 다음 그룹이 시작된 경우 (복구 불가)
+     */
+    public void add(byte[] data, BlockPipeline pipeline) throws IOException {
+        startGroupIfFull();
+        xor(data);
+        count++;
+        if (missing < 0) {
+            pipeline.put(data, 0, BLOCK_SIZE);
+        } else {
+            System.arraycopy(data, 0, held[heldCount++], 0, BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * CRC 오류가 난 데이터 블록을 빠진 블록으로 표시합니다.
+     * @return 패리티로 복구할 수 있으면 true, 그룹에 이미 빠진 블록이 있으면 false (재전송 또는 중단)
+     */
+    public boolean markMissing() throws IOException {
+        startGroupIfFull();
+        if (missing >= 0) {
+            return false;
+        }
+        missing = count++;
+        return true;
+    }
+
+    /**
+     * 패리티 블록으로 그룹을 닫습니다. 빠진 블록이 있으면 복구해서 보관 중이던 블록과 함께 순서대로 pipeline으로 넘깁니다.
+     */
+    public void close(byte[] parity, BlockPipeline pipeline) throws IOException {
+        if (count == 0) {
+            return; // 이미 닫은 그룹의 패리티 재전송 (ACK 유실)
+        }
+        parityBlocks++;
+        xor(parity);
+        if (missing >= 0) {
+            pipeline.put(accumulated, 0, BLOCK_SIZE); // 누적값 XOR 패리티 = 빠진 블록
+            for (int i = 0; i < heldCount; i++) {
+                pipeline.put(held[i], 0, BLOCK_SIZE);
+            }
+            recoveredBlocks++;
+        } else if (!isZero(accumulated)) {
+            parityMismatches++;
+        }
+        reset();
+    }
+
+    /**
+     * 손상된 패리티 블록을 버립니다. 빠진 블록이 없는 그룹만 버릴 수 있습니다.
+     */
+    public void discardParity() {
+        if (missing < 0) {
+            reset();
+        }
+    }
+
+    public int getRecoveredBlocks() {
+        return recoveredBlocks;
+    }
+
+    /**
+     * 세션 종료 시 기록할 복구 통계
+     */
+    public String getSummary() {
+        return "FEC (K=" + groupSize + "): " + recoveredBlocks + " blocks recovered, " + parityBlocks + " parity blocks"
+                + (parityMismatches > 0 ? ", " + parityMismatches + " parity mismatches" : "")
+                + (missing >= 0 ? ", 1 block unrecovered" : "");
+    }
+
+    /**
+     * 패리티 없이 다음 그룹이 시작되면 (패리티 블록 유실) 빠진 블록이 없을 때만 새 그룹으로 넘어감
+     */
+    private void startGroupIfFull() throws IOException {
+        if (count < groupSize) {
+            return;
+        }
+        if (missing >= 0) {
+            throw new IOException("5-606. Parity block for a group with a corrupted block was not received");
+        }
+        reset();
+    }
+
+    private void reset() {
+        count = 0;
+        missing = -1;
+        heldCount = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            accumulated[i] = 0;
+        }
+    }
+
+    private void xor(byte[] data) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            accumulated[i] ^= data[i];
+        }
+    }
+
+    private static boolean isZero(byte[] data) {
+        for (byte b : data) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,23 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.IOException;
+
+/**
+ * 받은 데이터(델타 패치, 압축 스트림)를 풀어서 APK를 ApkOutputFile에 기록합니다.
+ * 기록 스레드(또는 NIO 세션)에서 블록 순서대로 호출하며, 헤더의 파일 크기를 넘는 마지막 블록의 패딩은 버립니다.
+ */
+public interface PayloadDecoder {
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * 데이터를 모두 받은 뒤 호출합니다. APK를 끝까지 만들지 못했으면 IOException
+     */
+    void finish() throws IOException;
+
+    /**
+     * APK에 기록한 바이트 수
+     */
+    long getWrittenSize();
+
+    void close();
+}
@@ -0,0 +1,121 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
+
+/**
+ * 이어받기(resume)용 전송 저널 - 수신 중인 APK 파일 옆에 "<파일명>.journal"로 저장
+ * 파일 이름, 예상 크기, 헤더의 콘텐츠 해시, 디스크에 확실히 기록된(fsync) 마지막 오프셋을 기록합니다.
+ * 연결이 끊긴 뒤 같은 파일(이름/크기/해시 일치)을 다시 보내는 송신자는 이 오프셋부터 이어서 보낼 수 있습니다.
+ */
+public class TransferJournal {
+    private static final String SUFFIX = ".journal";
+
+    private static final String KEY_FILE_NAME = "fileName";
+    private static final String KEY_EXPECTED_SIZE = "expectedSize";
+    private static final String KEY_CONTENT_HASH = "contentHash";
+    private static final String KEY_DURABLE_OFFSET = "durableOffset";
+
+    private final File journalFile;
+    private final File tempFile;
+
+    private String fileName;
+    private long expectedSize = -1;
+    private String contentHash;
+    private long durableOffset = 0;
+
+    /**
+     * @param targetFile 수신 중인 APK 파일 (저널은 같은 디렉토리에 저장)
+     */
+    public TransferJournal(File targetFile) {
+        this.journalFile = new File(targetFile.getParentFile(), targetFile.getName() + SUFFIX);
+        this.tempFile = new File(targetFile.getParentFile(), targetFile.getName() + SUFFIX + ".tmp");
+    }
+
+    /**
+     * 저장된 저널을 읽어 옵니다.
+     * @return 저널이 존재하고 정상적으로 읽혔으면 true
+     */
+    public boolean load() {
+        if (!journalFile.exists()) {
+            return false;
+        }
+
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(journalFile);
+            Properties properties = new Properties();
+            properties.load(in);
+
+            fileName = properties.getProperty(KEY_FILE_NAME);
+            expectedSize = Long.parseLong(properties.getProperty(KEY_EXPECTED_SIZE, "-1"));
+            contentHash = properties.getProperty(KEY_CONTENT_HASH);
+            durableOffset = Long.parseLong(properties.getProperty(KEY_DURABLE_OFFSET, "0"));
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            logMessage("[X] Failed to read transfer journal: " + e.getMessage());
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { /* 무시 가능 */ }
+            }
+        }
+    }
+
+    /**
+     * 저널이 같은 파일(이름, 크기, 해시)에 대한 것인지 확인합니다.
+     */
+    public boolean matches(String fileName, long expectedSize, String contentHash) {
+        return fileName != null && fileName.equals(this.fileName)
+                && expectedSize == this.expectedSize
+                && contentHash != null && contentHash.equalsIgnoreCase(this.contentHash);
+    }
+
+    /**
+     * 저널을 갱신합니다. 임시 파일에 쓰고 fsync 후 rename 하므로, 중간에 전원이 끊겨도 이전 저널이 남습니다.
+     * 호출 전에 durableOffset까지의 데이터가 이미 fsync 되어 있어야 합니다.
+     */
+    public void save(String fileName, long expectedSize, String contentHash, long durableOffset) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_FILE_NAME, fileName);
+        properties.setProperty(KEY_EXPECTED_SIZE, String.valueOf(expectedSize));
+        properties.setProperty(KEY_CONTENT_HASH, contentHash);
+        properties.setProperty(KEY_DURABLE_OFFSET, String.valueOf(durableOffset));
+
+        FileOutputStream out = new FileOutputStream(tempFile, false);
+        try {
+            properties.store(out, null);
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(journalFile)) {
+            throw new IOException("Failed to update transfer journal: " + journalFile.getPath());
+        }
+
+        this.fileName = fileName;
+        this.expectedSize = expectedSize;
+        this.contentHash = contentHash;
+        this.durableOffset = durableOffset;
+    }
+
+    public void delete() {
+        if (journalFile.exists() && !journalFile.delete()) {
+            logMessage("[X] Failed to delete transfer journal: " + journalFile.getPath());
+        }
+        tempFile.delete();
+    }
+
+    public long getDurableOffset() {
+        return durableOffset;
+    }
+}
@@ -2,25 +2,26 @@ package kr.co.mirerotack.btsever1.ymodemServer;
 
 import android.net.Uri;
 
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.util.Arrays;
 
 import kr.co.mirerotack.btsever1.MainActivity;
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+import kr.co.mirerotack.btsever1.utils.LogChannel;
+import kr.co.mirerotack.btsever1.utils.Logger;
 import kr.co.mirerotack.btsever1.utils.TimeoutException;
 import kr.co.mirerotack.btsever1.utils.YModemCRC16;
 
-import static kr.co.mirerotack.btsever1.utils.Logger.logMessage;
-
 public class YModem {
+    private static final LogChannel LOG = Logger.channel("ymodem");
+    private static final FlightRecorder RECORDER = FlightRecorder.shared();
+
     private Modem modem;
+    private final int sessionId = RECORDER.newSession(); // 비행 기록기에서 이 연결의 이벤트를 구분
     private MainActivity mainActivity; // UI 업데이트를 위한 참조
     private static final String TAG = "TCPCOM"; // 로그 태그
 
@@ -51,9 +52,103 @@ public class YModem {
         return isForceUpdateMode;
     }
 
-    String NULL = "\u0000";
+    // 헤더 [5]번 이후의 선택 필드 (key=value), 옵션을 모르는 기존 송신자는 보내지 않음
+    public static final String OPTION_WINDOW = "win"; // 슬라이딩 윈도우 크기 (송신자가 제안, 수신자가 확정)
+    public static final String OPTION_ACK = "ack"; // 1: 블록마다 ACK/NAK을 기다리는 송신자 (손상 블록 재전송 가능)
+    public static final String OPTION_SHA256 = "sha256"; // 파일 내용 해시 (이어받기 시 같은 파일인지 식별, EOT 시 받은 내용과 비교)
+    public static final String OPTION_RESUME = "resume"; // 1: 끊긴 전송을 이어서 보낼 수 있는 송신자 → 수신자가 이어받을 오프셋 회신
+    public static final String OPTION_PACKAGE = "pkg"; // APK의 패키지 이름 (ver와 함께 보내면 데이터 수신 전에 설치 필요 여부 판정)
+    public static final String OPTION_VERSION = "ver"; // APK의 versionCode
+    public static final String OPTION_DELTA = "delta"; // 델타 패치 전송, 값은 재구성할 APK 크기 (sha256 필수, 설치된 APK 기준)
+    public static final String OPTION_COMPRESSION = "z"; // 압축 방식 제안 (APK 데이터 또는 싱크 응답), 수신자가 지원하지 않으면 "none"
+    public static final String OPTION_DECOMPRESSED_SIZE = "zlen"; // 압축을 푼 APK 크기 (APK를 압축해 보낼 때 필수)
+    public static final String COMPRESSION_DEFLATE = "deflate"; // zlib 스트림 (java.util.zip)
+    public static final String COMPRESSION_NONE = "none";
+    public static final String OPTION_BLOCK_SIZE = "blk"; // 송신자가 보낼 수 있는 최대 블록 크기 → 수신자가 시작 크기 회신 (1024보다 크면 XSTX 프레임)
+                                                         // 값을 보낸 송신자는 블록 응답 앞의 RESIZE(+크기/1024)로 이후 블록의 크기를 바꿔야 함
+                                                         // 윈도우/FEC/이어받기(resume > 0)와 함께면 항상 1024로 회신 (블록 번호 = 오프셋 / 1024 유지)
+    public static final String OPTION_FEC = "fec"; // 패리티 블록 하나가 보호하는 데이터 블록 수 K (FEC, 수신자가 확정, 0: 사용 안 함)
+    public static final String OPTION_SKIP = "skip"; // NOT_NEEDED 응답 뒤 회신하는 사유 (예: "skip=ALREADY_LATEST_VERSION")
+
+    private static final long CHECKPOINT_INTERVAL = 64 * 1024; // 저널에 기록된 오프셋을 갱신하는 간격 (fsync 포함)
+    public static final int MAX_WINDOW_SIZE = 32; // 수신 측 재정렬 슬롯 수 상한 (32KB)
+
+    private final YModemHeader header = new YModemHeader(); // 헤더 해석과 선택 필드 협상 (TCP_NIO 수신과 공유)
+    private int windowSize = 0; // 0: 윈도우 모드 사용 안 함
+    private boolean ackModeRequested = false;
+    private int errorCount = 0; // 세션 단위 오류 예산 (Modem.MAXERRORS)
+    private int maxBlockSize = BlockSizeTuner.BASE_BLOCK_SIZE; // 협상한 최대 블록 크기
+    private int blockSize = BlockSizeTuner.BASE_BLOCK_SIZE;    // 송신자가 지금 보내야 하는 블록 크기
+    private int fecGroupSize = 0;           // 0: 패리티 블록 없음
+    private ParityGroup parityGroup = null;
+
+    private String contentHash = null;      // 헤더의 sha256 값
+    private TransferJournal journal = null; // 해시를 보낸 송신자에 대해서만 저널 기록
+    private long resumeOffset = 0;          // 이어받기 시작 오프셋 (항상 1024의 배수)
+    private long lastCheckpoint = 0;
+
+    private BlockPipeline pipeline = null; // 수신(네트워크) 스레드와 디스크 기록 스레드 사이의 블록 링
+    private ApkOutputFile apkOutput = null;
+    private boolean discardReceivedFile = false; // 해시 불일치 등으로 받은 파일을 남기면 안 되는 경우
+    private ApkManifestInfo apkManifest = null;  // 수신 중에 읽은 패키지 이름/versionCode (EOT 시 확정)
+
+    private File deltaBase = null;         // 델타 패치의 기준 파일 (설치된 APK), 협상에서 받아들인 경우에만 설정
+    private boolean deltaAccepted = false;
+    private String compression = null;     // 확정된 압축 방식 (COMPRESSION_DEFLATE), 압축하지 않으면 null
+    private long decodedSize = 0;          // 0보다 크면 델타/압축 전송: 받은 데이터를 풀어서 만들 APK 크기
+    private PayloadDecoder payloadDecoder = null;
+
+    /**
+     * 델타 패치를 적용할 기준 파일(설치된 APK)을 설정합니다. null이면 델타 전송을 거절합니다.
+     */
+    public void setDeltaBase(File deltaBase) {
+        header.setDeltaBase(deltaBase);
+    }
+
+    /**
+     * 송신자가 요청한 델타/압축 전송을 받을 수 없는 경우 (기준 APK, sha256 또는 zlen 없음, 지원하지 않는 압축 방식)
+     * 송신자는 이미 변환한 데이터의 크기를 헤더에 보냈으므로, 이 세션은 끝내고 원본으로 다시 받아야 함
+     */
+    public boolean isEncodingRefused() {
+        return header.isEncodingRefused();
+    }
+
+    /**
+     * 확정된 압축 방식 (싱크 응답에도 사용), 압축하지 않으면 null
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * 저장되는 APK의 크기: 델타/압축 전송이면 풀어서 만들 APK 크기, 아니면 헤더의 파일 크기
+     */
+    public long getOutputFileSize() {
+        return decodedSize > 0 ? decodedSize : expectedFileSize;
+    }
+
+    public ApkManifestInfo getApkManifest() {
+        return apkManifest;
+    }
+
+    /**
+     * 헤더에 pkg/ver 선택 필드가 모두 있으면 송신자가 알려 준 APK 정보, 없거나 형식이 맞지 않으면 null
+     */
+    public ApkManifestInfo getAnnouncedManifest() {
+        return header.getAnnouncedManifest();
+    }
+
+    public String getHeaderOption(String key) {
+        return header.getOption(key);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
     File filePath = null;
     private byte[] block;
+    private final YModemCRC16 crc16 = new YModemCRC16(); // 블록마다 새로 만들지 않고 세션 동안 재사용
 
     /**
      * 생성자: 입력 스트림과 출력 스트림을 받아서 초기화
@@ -62,7 +157,18 @@ public class YModem {
      * @param outputStream 송신을 위한 스트림
      */
     public YModem(InputStream inputStream, OutputStream outputStream) {
-        this.modem = new Modem(inputStream, outputStream);
+        this(inputStream, outputStream, null);
+    }
+
+    /**
+     * 생성자: 전송 계층의 읽기 타임아웃 제어를 함께 받아 블로킹 방식으로 수신
+     *
+     * @param inputStream    수신을 위한 스트림
+     * @param outputStream   송신을 위한 스트림
+     * @param timeoutControl 읽기 타임아웃 제어 (TCP: SO_TIMEOUT, null이면 폴링 방식)
+     */
+    public YModem(InputStream inputStream, OutputStream outputStream, FrameReader.ReadTimeoutControl timeoutControl) {
+        this.modem = new Modem(inputStream, outputStream, timeoutControl);
     }
 
     /**
@@ -93,32 +199,15 @@ public class YModem {
             // 📥 **YModem 헤더 블록 수신 (파일명 및 크기)**
             int character = modem.sendStartSignal();
 
-            block = modem.readBlock(0, (character == Modem.SOH), new YModemCRC16(), 0, 128);
+            block = modem.readBlock(0, (character == Modem.SOH), crc16, 0, 128);
             String headerString = new String(block, Charset.forName("US-ASCII")).trim();
-            logMessage("[O] Received header: " + headerString);
-
-            // 🔹 NULL(b'\x00')을 기준으로 분할하여 원하는 데이터만 필터링
-            // header: b'smartrtu.apk \x00 3654326 \x00 1 \x00 0 \x00(이후 NULL 반복)'
-            String[] headerParts = headerString.split(NULL);
-
-            if (headerParts.length < 5 || headerParts[1].trim().isEmpty()) {
-                logMessage("[X] Header parsing failed! Invalid data: " + headerString);
-                throw new IOException("Invalid YModem header: " + headerString);
-            }
-
-            try {
-                fileName = headerParts[0].trim();                            // [0] 파일 이름
-                expectedFileSize = Long.parseLong(headerParts[1].trim());    // [1] 파일 크기
-                isSyncDataMode = headerParts[2].trim().equals("1");          // [2] 데이터 싱크 모드
-                isRebootMode = headerParts[3].trim().equals("1");            // [3] RTU 기기 재부팅
-                isForceUpdateMode = headerParts[4].trim().equals("1");       // [4] 강제 업데이트 활성화
-            } catch (NumberFormatException e) {
-                logMessage("[X] Failed to convert file size: " + headerParts[1]);
-                throw new IOException("Invalid file size in header");
-            }
-
-            logMessage("[O] [Header] File name: " + fileName + ", Expected size: " + expectedFileSize + " bytes\n"
-                    + ", SyncData Mode: " + getIsSyncDataMode() + ", Reboot Mode: " + getIsRebootMode() + ", Force update: " + getIsForceUpdateMode());
+            header.parse(headerString);
+            fileName = header.getFileName();
+            expectedFileSize = header.getExpectedFileSize();
+            isSyncDataMode = header.isSyncDataMode();
+            isRebootMode = header.isRebootMode();
+            isForceUpdateMode = header.isForceUpdateMode();
+            RECORDER.record(sessionId, FlightRecorder.HEADER, 0, expectedFileSize);
 
             // 📌 파일 저장 경로 설정 (파일 생성 X, 데이터 수신 후 저장)
             if (inDirectory) {
@@ -127,6 +216,8 @@ public class YModem {
                 filePath = file;
             }
 
+            negotiateOptions(); // 이어받기 오프셋 확인에 filePath가 필요하므로 경로 설정 후 호출
+
             Uri apkUri = Uri.fromFile(filePath);
             System.out.println("APK URI: " + apkUri.toString());
 
@@ -146,100 +237,578 @@ public class YModem {
             throw new FileNotFoundException(e.getMessage());
         } catch (Exception e) {
             throw new Exception(e.getMessage());
+        } finally {
+            modem.releaseReadTimeout();
         }
 
         return filePath;
     }
 
+    /**
+     * 송신자가 제안한 옵션 중 수신자가 지원하는 값을 확정합니다. (협상 규칙은 YModemHeader)
+     */
+    private void negotiateOptions() {
+        header.negotiate(filePath);
+        windowSize = header.getWindowSize();
+        ackModeRequested = header.isAckMode();
+        fecGroupSize = header.getFecGroupSize();
+        maxBlockSize = header.getMaxBlockSize();
+        blockSize = header.getBlockSize();
+        contentHash = header.getContentHash();
+        journal = header.getJournal();
+        resumeOffset = header.getResumeOffset();
+        deltaAccepted = header.isDeltaAccepted();
+        deltaBase = header.getAcceptedDeltaBase();
+        compression = header.getCompression();
+        decodedSize = header.getDecodedSize();
+    }
+
+    /**
+     * 4-1 ACK 직후, 옵션을 보낸 송신자에게만 확정된 옵션을 한 줄로 회신합니다. (예: "win=8\n")
+     * 옵션을 보내지 않은 기존 송신자에게는 아무것도 보내지 않습니다.
+     */
+    public void sendNegotiationReply() throws IOException {
+        String reply = header.getReply();
+        if (reply == null) {
+            return;
+        }
+        modem.sendBytes((reply + "\n").getBytes(Charset.forName("US-ASCII")));
+        LOG.info("4-2. [TX] Negotiated options: {}", reply);
+    }
+
     /// **데이터 블록 수신 (APK 본문)**
     public File receive_APK(File file, boolean ack_mode) throws Exception {
-        block = new byte[1024];
-        byte[] zeroBlock = new byte[block.length];
-        DataOutputStream dataOutput = null;
-        boolean useCRC16 = true;
+        apkOutput = null;
+        discardReceivedFile = false;
+        apkManifest = null;
+        errorCount = 0;
 
-        long receivedSize = 0;
-        int packet_number = 0; // 3555번째 등 디버깅에만 사용됨
+        long receivedSize = resumeOffset;
+        int packet_number = (int) (resumeOffset / 1024); // 3555번째 등 디버깅에만 사용됨
+        boolean saved = false;
 
         try {
-            logMessage("5-0. Starting APK data reception...");
-            dataOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
+            LOG.info("5-0. Starting APK data reception...");
+            apkOutput = openApkOutput(); // 헤더의 파일 크기만큼 미리 할당, 마지막 블록의 패딩은 기록하지 않음
+            if (contentHash != null) {
+                apkOutput.startDigest(); // 기록 스레드가 블록을 기록하면서 SHA-256도 이어서 계산
+            }
+            apkOutput.startManifestScan(); // 기록 스레드가 AndroidManifest.xml을 찾아 미리 해석 (APK 검증용)
+            payloadDecoder = createPayloadDecoder(apkOutput); // 델타/압축 전송이면 기록 스레드가 받은 데이터를 풀어서 기록
+            lastCheckpoint = resumeOffset;
+            pipeline = startPipeline(apkOutput);
 
             modem.resetBlockNumber(); // APK 데이터 수신 전 블록 번호 초기화
-            int totalPacketSize = (int) ((expectedFileSize + 1023) / 1024);
+            modem.setBlockNumber(packet_number); // 이어받기 시 이어지는 블록 번호부터 수신
+            modem.setExtendedBlockSize(blockSize);
+            parityGroup = (fecGroupSize > 0) ? new ParityGroup(fecGroupSize) : null;
+            modem.setParityEnabled(parityGroup != null);
+            int totalPacketSize = countPackets(packet_number, receivedSize);
+
+            if (windowSize > 0) {
+                LOG.info("5-0. Window mode: up to {} blocks in flight", windowSize);
+                modem.setWindowMode(true); // 블록이 순서와 다르게 올 수 있으므로 번호 순서 검사 안 함
+                receivedSize = receiveWindowed(totalPacketSize, packet_number, receivedSize);
+            }
 
-            while (true) {
-                int character = modem.readNextBlockStart(useCRC16); // // read SOH(1) or STX(1) or EOT(1)
+            // 블록 단위 ACK 모드에서는 송신자가 응답을 기다리므로 손상 블록만 다시 받을 수 있음
+            // (스트리밍 모드는 EOT 전까지 응답을 읽지 않으므로 기존처럼 오류 시 중단)
+            boolean perBlockAck = ack_mode || ackModeRequested;
+            boolean lastBlockResult = true;
+            BlockSizeTuner tuner = (perBlockAck && maxBlockSize > blockSize) ? new BlockSizeTuner(maxBlockSize) : null;
+            boolean announceSize = false; // 마지막 응답에 RESIZE를 붙였는지 (응답을 다시 보낼 때도 같이 보냄)
+            long responseSentAt = 0;      // 마지막 ACK를 보낸 시각 (0: 다음 블록의 왕복 시간을 재지 않음)
+
+            while (windowSize == 0) {
+                int character;
+                try {
+                    character = modem.waitForBlockStart(); // read SOH(1) or STX(1) or EOT(1)
+                } catch (TimeoutException e) {
+                    RECORDER.record(sessionId, FlightRecorder.TIMEOUT, packet_number, 0);
+                    if (!perBlockAck) throw e;
+                    // 마지막 응답이 유실됐을 수 있으므로 같은 응답을 다시 보내고 같은 블록을 기다림
+                    countError("5-600. Timeout while waiting for packet " + packet_number);
+                    sendBlockResponse(lastBlockResult ? Modem.ACK : Modem.NAK, announceSize);
+                    responseSentAt = 0;
+                    continue;
+                }
 
                 // 데이터 전송 종료 상태인지 == EOT 체크
                 if (character == Modem.EOT) {
-                    logMessage("6-2. [RX] EOT4 (End of Transmission)");
-                    logMessage("6-3. [TX] ACK4 ");
+                    RECORDER.record(sessionId, FlightRecorder.EOT, packet_number, receivedSize);
+                    LOG.info("6-2. [RX] EOT4 (End of Transmission)");
+                    finishReceiving(); // 남은 블록이 모두 기록된 뒤에 EOT를 확인 (기록 실패 시 ACK 대신 NAK)
+                    LOG.info("6-3. [TX] ACK4 ");
                     modem.sendByte(Modem.ACK);
                     break; // EOF를 받았으므로 루프 종료
                 }
 
-                byte[] dataBlock = modem.readBlock(
-                        modem.getBlockNumber(), (character == Modem.SOH), new YModemCRC16(), packet_number, totalPacketSize
-                );
+                byte[] dataBlock;
+                try {
+                    dataBlock = modem.readBlock(
+                            modem.getBlockNumber(), (character == Modem.SOH), crc16, packet_number, totalPacketSize
+                    );
+                } catch (Modem.RepeatedBlockException e) {
+                    RECORDER.record(sessionId, FlightRecorder.DUPLICATE, packet_number - 1, 0);
+                    if (!perBlockAck) throw e;
+                    // 5-601. 이전 ACK가 유실되어 같은 블록이 다시 온 경우 → 다시 ACK만 보내고 계속 진행
+                    countError("5-601. Duplicate of packet " + (packet_number - 1));
+                    sendBlockResponse(Modem.ACK, announceSize);
+                    responseSentAt = 0;
+                    continue;
+                } catch (Modem.SynchronizationLostException | Modem.InvalidBlockException | TimeoutException e) {
+                    RECORDER.record(sessionId, (e instanceof TimeoutException) ? FlightRecorder.TIMEOUT : FlightRecorder.BLOCK_ERROR,
+                            packet_number, 0);
+                    if (parityGroup != null && isCrcError(e)) {
+                        if (character != Modem.PARITY && parityGroup.markMissing()) {
+                            // 5-604. 그룹에서 처음 손상된 블록은 패리티로 복구 → 재전송 요청 없이 다음 블록으로
+                            LOG.warn("5-604. CRC mismatch in packet {}, recovering from parity", packet_number);
+                            RECORDER.record(sessionId, FlightRecorder.PARITY_RECOVERED, packet_number, ParityGroup.BLOCK_SIZE);
+                            packet_number += 1;
+                            modem.incrementBlockNumber();
+                            receivedSize += ParityGroup.BLOCK_SIZE;
+                            lastBlockResult = true;
+                            if (perBlockAck) sendBlockResponse(Modem.ACK, announceSize);
+                            continue;
+                        }
+                        if (character == Modem.PARITY && !parityGroup.hasMissing()) {
+                            parityGroup.discardParity(); // 복구할 블록이 없으면 손상된 패리티는 필요 없음
+                            if (perBlockAck) sendBlockResponse(Modem.ACK, announceSize);
+                            continue;
+                        }
+                    }
+                    if (!perBlockAck) throw e;
+                    // 5-602/5-603/5-604. 블록 번호 불일치, 보수/CRC 오류, 블록 중간 타임아웃 → NAK 후 같은 블록 번호를 다시 수신
+                    countError(e.getMessage() != null ? e.getMessage() : "5-600. Timeout in the middle of packet " + packet_number);
+                    int resized = (tuner != null) ? tuner.onError() : 0;
+                    if (resized > 0) {
+                        changeBlockSize(resized, "after repeated errors"); // 같은 위치부터 1K 블록으로 다시 받음
+                        totalPacketSize = countPackets(packet_number, receivedSize);
+                    }
+                    announceSize = resized > 0;
+                    sendBlockResponse(Modem.NAK, announceSize);
+                    RECORDER.record(sessionId, FlightRecorder.NAK, packet_number, 0);
+                    lastBlockResult = false;
+                    responseSentAt = 0;
+                    continue;
+                }
 
                 if (dataBlock == null) {
-                    logMessage("6-400. The data block of packet " + packet_number + " is null.");
+                    LOG.info("6-400. The data block of packet {} is null.", packet_number);
                     throw new IOException("[X] 6-400. Data block reception error!");
                 }
 
-                if (Arrays.equals(dataBlock, zeroBlock)) {
-                    logMessage("5-1. The data block of packet " + packet_number + " is all 0x00.");
+                if (character == Modem.PARITY) {
+                    // 패리티 블록은 블록 번호를 쓰지 않음, 빠진 블록이 있으면 복구해서 보관 중이던 블록과 함께 기록
+                    RECORDER.record(sessionId, FlightRecorder.PARITY, packet_number, dataBlock.length);
+                    parityGroup.close(dataBlock, pipeline);
+                    lastBlockResult = true;
+                    if (perBlockAck) {
+                        pipeline.awaitFree(1);
+                        sendBlockResponse(Modem.ACK, announceSize);
+                    }
+                    continue;
+                }
+
+                if (isAllZero(dataBlock)) {
+                    LOG.debug("5-1. The data block of packet {} is all 0x00.", packet_number);
                 }
 
+                RECORDER.record(sessionId, FlightRecorder.BLOCK_OK, packet_number, dataBlock.length);
                 packet_number += 1;
                 modem.incrementBlockNumber(); // ✅ 블록 번호 증가
 
-                // 🔽 파일에 데이터 저장
-                dataOutput.write(dataBlock);
+                // 🔽 기록 스레드로 넘기고 바로 다음 블록 수신 (파일 기록/fsync는 기록 스레드에서)
+                if (parityGroup != null) {
+                    parityGroup.add(dataBlock, pipeline); // 그룹에 빠진 블록이 있으면 패리티가 올 때까지 보관
+                } else {
+                    pipeline.put(dataBlock, 0, dataBlock.length);
+                }
                 receivedSize += dataBlock.length;
+                lastBlockResult = true;
+
+                if (tuner != null) {
+                    long frameStart = modem.getLastFrameStartNanos();
+                    int resized = tuner.onBlock(responseSentAt > 0 ? frameStart - responseSentAt : -1,
+                            modem.getLastFrameEndNanos() - frameStart, dataBlock.length);
+                    if (resized > 0) {
+                        changeBlockSize(resized, "for the measured link");
+                        totalPacketSize = countPackets(packet_number, receivedSize);
+                    }
+                    // 크기 변경 알림이 유실돼 이전 크기로 온 블록도 받되, 알림을 다시 보냄
+                    announceSize = resized > 0 || dataBlock.length != blockSize;
+                }
 
                 // 📤 (APK 용량 3.6MB == 3700개 패킷) 1개 패킷을 수신할 때마다 `ACK` 전송 - 30초 이상 느려지지만, 안정성은 좋아짐
-                if (ack_mode) {
-                    modem.sendByte(Modem.ACK);
-                    // logMessage("5-2. [TX] ACK"); // 실행시간 단축을 위해 주석처리
+                if (perBlockAck) {
+                    pipeline.awaitFree(1); // 다음 블록을 받을 슬롯이 있을 때만 ACK → 기록이 밀리면 송신 속도가 자연히 줄어듦
+                    sendBlockResponse(Modem.ACK, announceSize);
+                    responseSentAt = System.nanoTime();
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("5-2. [TX] ACK {}", packet_number - 1); // 블록마다 기록 (기본 레벨에서는 인자도 만들지 않음)
+                    }
                 }
             }
             // 📤 데이터 블록 전체 수신 후 `ACK` 전송
             modem.sendByte(Modem.ACK);
-            logMessage("5-3. [RX] ACK");
+            LOG.info("5-3. [RX] ACK");
+
+            if (journal != null) {
+                journal.delete(); // 전송 완료, 더 이상 이어받을 필요 없음
+            }
 
-            logMessage("[O] 7-1. File saved successfully: " + filePath.getAbsolutePath() + " (" + receivedSize + " bytes)");
+            LOG.info("[O] 7-1. File saved successfully: {} ({} bytes)", filePath.getAbsolutePath(), receivedSize);
+            saved = true;
         } catch (IOException e) {
-            logMessage("[TX] NAK, IOException" + e);
+            LOG.warn("[TX] NAK, IOException{}", e);
             modem.sendByte(modem.NAK);
             throw new IOException(e);
         } catch (TimeoutException e) {
-            logMessage("[TX] NAK, TimeoutException" + e);
+            LOG.warn("[TX] NAK, TimeoutException{}", e);
             modem.sendByte(modem.NAK);
             throw new TimeoutException();
         } catch (Modem.RepeatedBlockException e) {
-            logMessage("[TX] NAK, RepeatedBlockException" + e);
+            LOG.warn("[TX] NAK, RepeatedBlockException{}", e);
             modem.sendByte(modem.NAK);
             throw new Modem.RepeatedBlockException("RepeatedBlockException");
         } catch (Modem.SynchronizationLostException e) {
-            logMessage("[TX] NAK, SynchronizationLostException" + e);
+            LOG.warn("[TX] NAK, SynchronizationLostException{}", e);
             modem.sendByte(modem.NAK);
             throw new Modem.SynchronizationLostException("SynchronizationLostException");
         } catch (Modem.InvalidBlockException e) {
-            logMessage("[TX] NAK, InvalidBlockException : Packet format mismatch" + e);
+            LOG.warn("[TX] NAK, InvalidBlockException : Packet format mismatch{}", e);
             modem.sendByte(modem.NAK);
             throw new Modem.InvalidBlockException("InvalidBlockException");
         } catch (Exception e) {
-            logMessage("[TX] NAK, 알 수 없는 오류 발생 : " + e);
+            LOG.warn("[TX] NAK, 알 수 없는 오류 발생 : {}", e);
             modem.sendByte(modem.NAK);
             throw new Exception(e.getMessage());
         } finally {
-            if (dataOutput != null) {
-                dataOutput.close();
+            RECORDER.record(sessionId, saved ? FlightRecorder.SESSION_OK : FlightRecorder.SESSION_FAILED, packet_number, receivedSize);
+            if (pipeline != null) {
+                pipeline.abort(); // 오류로 끝난 경우 남은 블록은 버림 (정상 종료 시에는 이미 finish 됨)
+                pipeline = null;
             }
+            if (payloadDecoder != null) {
+                payloadDecoder.close();
+                payloadDecoder = null;
+            }
+            if (parityGroup != null) {
+                LOG.info("[O] 6-2. {}", parityGroup.getSummary()); // 성공/실패와 관계없이 세션의 복구 통계
+                parityGroup = null;
+            }
+            if (apkOutput != null) {
+                apkOutput.close();
+                apkOutput = null;
+            }
+            if (discardReceivedFile && filePath.exists() && !filePath.delete()) {
+                LOG.error("Failed to delete rejected file: {}", filePath.getPath());
+            }
+            modem.releaseReadTimeout();
         }
 
         return filePath;
     }
+
+    /**
+     * 블록 번호는 맞고 CRC만 틀린 블록 (FEC로 복구할 수 있는 손상)
+     */
+    private static boolean isCrcError(Exception e) {
+        return e instanceof Modem.InvalidBlockException && ((Modem.InvalidBlockException) e).getBlockNumber() >= 0;
+    }
+
+    /**
+     * 블록 단위 ACK 모드의 응답 (announceSize면 RESIZE + 현재 블록 크기를 앞에 붙임)
+     */
+    private void sendBlockResponse(byte code, boolean announceSize) throws IOException {
+        if (announceSize) {
+            modem.sendResize(blockSize, code);
+        } else {
+            modem.sendByte(code);
+        }
+    }
+
+    /**
+     * 진행률 로그에 쓰는 전체 블록 수: 받은 블록 수 + 남은 크기를 지금 블록 크기로 나눈 수 (블록 크기가 바뀌면 다시 계산)
+     */
+    private int countPackets(int receivedPackets, long receivedSize) {
+        long remaining = Math.max(0, expectedFileSize - receivedSize);
+        return receivedPackets + (int) ((remaining + blockSize - 1) / blockSize);
+    }
+
+    /**
+     * 이후 블록의 크기를 바꿉니다. 수신 측 파서는 이전에 협상한 확장 블록도 계속 받음 (알림 유실 대비)
+     */
+    private void changeBlockSize(int newSize, String reason) {
+        LOG.info("[O] 5-0. Block size {} -> {} bytes {}", blockSize, newSize, reason);
+        RECORDER.record(sessionId, FlightRecorder.RESIZE, modem.getBlockNumber(), newSize);
+        blockSize = newSize;
+        if (newSize > BlockSizeTuner.BASE_BLOCK_SIZE) {
+            modem.setExtendedBlockSize(newSize);
+        }
+    }
+
+    /**
+     * 슬라이딩 윈도우 수신 (YModem-G와 유사한 스트리밍 + 선택적 재전송)
+     * - 송신자는 누적 ACK를 기다리지 않고 최대 windowSize개의 블록을 연속으로 보냄
+     * - 수신자는 순서대로 기록한 마지막 블록 번호로 누적 ACK(ACK + 블록번호)를 windowSize/2 블록마다 보냄
+     * - 손상되었거나 건너뛴 블록은 선택적 NAK(NAK + 블록번호)으로 알리고, 송신자는 해당 블록만 재전송
+     * - 먼저 도착한 블록은 윈도우 슬롯에 보관했다가, 빠진 블록이 채워지면 순서대로 파일에 기록
+     * - EOT 수신 시 아직 빠진 블록이 있으면 EOT에 ACK 대신 NAK + 첫 번째 빠진 블록 번호로 응답
+     * - 누적 ACK는 기록 파이프라인에 윈도우 하나만큼의 빈 슬롯이 있을 때 보냄 (다음 윈도우를 멈추지 않고 받을 수 있도록)
+     *
+     * @return 기록 파이프라인에 넘긴 바이트 수
+     */
+    private long receiveWindowed(int totalPacketSize, int startSequence, long receivedSize) throws IOException {
+        byte[][] slots = new byte[windowSize][1024];
+        int[] slotLengths = new int[windowSize];
+        boolean[] filled = new boolean[windowSize];
+        boolean[] nakSent = new boolean[windowSize];
+
+        int base = startSequence;          // 다음에 기록할 블록의 순번 (블록 번호 = base & 0xFF)
+        int highest = startSequence;       // 지금까지 받은 가장 먼 순번 + 1
+        int lastAckedBase = startSequence; // 마지막 누적 ACK를 보낸 시점의 base
+        int ackInterval = Math.max(1, windowSize / 2);
+
+        while (true) {
+            int character;
+            try {
+                character = modem.waitForBlockStart();
+            } catch (TimeoutException e) {
+                // ACK/NAK이 유실됐을 수 있으므로 현재 상태를 다시 알림
+                RECORDER.record(sessionId, FlightRecorder.TIMEOUT, base, 0);
+                countError("5-600. Timeout while waiting for block " + (base & 0xFF));
+                modem.sendResponse(Modem.ACK, (base - 1) & 0xFF);
+                if (highest > base) {
+                    modem.sendResponse(Modem.NAK, base & 0xFF);
+                }
+                continue;
+            }
+
+            if (character == Modem.EOT) {
+                if (highest > base || (expectedFileSize > 0 && receivedSize < expectedFileSize)) {
+                    countError("5-605. EOT received with block " + (base & 0xFF) + " still missing");
+                    modem.sendResponse(Modem.NAK, base & 0xFF);
+                    RECORDER.record(sessionId, FlightRecorder.NAK, base, 0);
+                    continue;
+                }
+                RECORDER.record(sessionId, FlightRecorder.EOT, base, receivedSize);
+                LOG.info("6-2. [RX] EOT4 (End of Transmission)");
+                finishReceiving();
+                LOG.info("6-3. [TX] ACK4 ");
+                modem.sendByte(Modem.ACK);
+                return receivedSize;
+            }
+
+            byte[] dataBlock;
+            try {
+                dataBlock = modem.readWindowBlock((character == Modem.SOH), crc16, base, totalPacketSize);
+            } catch (Modem.InvalidBlockException e) {
+                RECORDER.record(sessionId, FlightRecorder.BLOCK_ERROR, e.getBlockNumber(), 0); // 블록 번호는 하위 8비트 (모르면 -1)
+                countError(e.getMessage());
+                int damaged = e.getBlockNumber();
+                if (damaged >= 0) {
+                    int diff = (damaged - base) & 0xFF;
+                    if (diff < windowSize) {
+                        modem.sendResponse(Modem.NAK, damaged);
+                        RECORDER.record(sessionId, FlightRecorder.NAK, base + diff, 0);
+                        nakSent[(base + diff) % windowSize] = true;
+                    }
+                }
+                continue; // 번호를 알 수 없는 손상 블록은 이후 도착하는 블록으로 빈 자리를 찾아 NAK
+            } catch (TimeoutException e) {
+                RECORDER.record(sessionId, FlightRecorder.TIMEOUT, base, 0);
+                countError("5-600. Timeout in the middle of a block");
+                continue;
+            }
+
+            int diff = (modem.getLastReceivedBlockNumber() - base) & 0xFF;
+            if (diff >= windowSize) {
+                // 이미 기록한 블록의 재전송 (누적 ACK 유실) → 누적 ACK만 다시 보냄
+                RECORDER.record(sessionId, FlightRecorder.DUPLICATE, modem.getLastReceivedBlockNumber(), 0);
+                modem.sendResponse(Modem.ACK, (base - 1) & 0xFF);
+                continue;
+            }
+
+            int sequence = base + diff;
+            int slot = sequence % windowSize;
+            if (filled[slot]) {
+                RECORDER.record(sessionId, FlightRecorder.DUPLICATE, sequence, 0);
+                continue; // 이미 보관 중인 블록의 중복 수신
+            }
+            RECORDER.record(sessionId, FlightRecorder.BLOCK_OK, sequence, dataBlock.length);
+
+            if (sequence == base) {
+                // 순서대로 도착한 블록은 슬롯을 거치지 않고 바로 기록 스레드로
+                pipeline.put(dataBlock, 0, dataBlock.length);
+                receivedSize += dataBlock.length;
+                nakSent[slot] = false;
+                base++;
+            } else {
+                System.arraycopy(dataBlock, 0, slots[slot], 0, dataBlock.length);
+                slotLengths[slot] = dataBlock.length;
+                filled[slot] = true;
+
+                // 앞쪽의 빠진 블록은 한 번씩만 NAK
+                for (int missing = base; missing < sequence; missing++) {
+                    int missingSlot = missing % windowSize;
+                    if (!filled[missingSlot] && !nakSent[missingSlot]) {
+                        modem.sendResponse(Modem.NAK, missing & 0xFF);
+                        RECORDER.record(sessionId, FlightRecorder.NAK, missing, 0);
+                        nakSent[missingSlot] = true;
+                    }
+                }
+            }
+            highest = Math.max(highest, sequence + 1);
+
+            // 빈 자리가 채워졌으면 보관 중이던 블록을 순서대로 기록
+            boolean gapClosed = false;
+            while (filled[base % windowSize]) {
+                int ready = base % windowSize;
+                pipeline.put(slots[ready], 0, slotLengths[ready]);
+                receivedSize += slotLengths[ready];
+                filled[ready] = false;
+                nakSent[ready] = false;
+                base++;
+                gapClosed = true;
+            }
+
+            if (base - lastAckedBase >= ackInterval || gapClosed) {
+                pipeline.awaitFree(windowSize);
+                modem.sendResponse(Modem.ACK, (base - 1) & 0xFF);
+                lastAckedBase = base;
+            }
+        }
+    }
+
+    /**
+     * EOT 수신 시: 파이프라인에 남은 블록을 모두 기록하고, 해시를 확인하고, 읽어 둔 매니페스트 정보를 확정합니다.
+     */
+    private void finishReceiving() throws IOException {
+        if (parityGroup != null && parityGroup.hasMissing()) {
+            throw new IOException("5-606. EOT received before the parity block of a group with a corrupted block");
+        }
+        pipeline.finish();
+        if (payloadDecoder != null) {
+            try {
+                payloadDecoder.finish();
+            } catch (IOException e) {
+                discardReceivedFile = true;
+                throw e;
+            }
+            LOG.info("[O] 6-2. Received data decoded: {} bytes written", payloadDecoder.getWrittenSize());
+        }
+        verifyContentHash();
+        apkManifest = apkOutput.getManifest();
+        if (apkManifest != null) {
+            LOG.info("[O] 6-2. Manifest read while receiving: {}", apkManifest);
+        }
+    }
+
+    /**
+     * 헤더에 sha256이 있으면, 블록을 기록하면서 계산한 해시와 비교합니다. (파이프라인을 모두 기록한 뒤 호출)
+     * 다르면 EOT에 ACK 대신 NAK으로 응답하고 파일을 지우므로, 잘못된 이미지는 APK 검증/재부팅 전에 거부됩니다.
+     */
+    private void verifyContentHash() throws IOException {
+        String receivedHash = apkOutput.finishDigest();
+        if (receivedHash == null) {
+            return;
+        }
+
+        if (!receivedHash.equalsIgnoreCase(contentHash)) {
+            discardReceivedFile = true;
+            if (journal != null) {
+                journal.delete(); // 잘못된 이미지는 이어받지 않음
+            }
+            throw new IOException("6-101. SHA-256 mismatch (expected: " + contentHash + ", received: " + receivedHash + ")");
+        }
+        LOG.info("[O] 6-2. SHA-256 verified: {}", receivedHash);
+    }
+
+    /**
+     * 기록 스레드를 시작합니다. 블록 기록과 체크포인트(fsync + 저널)는 모두 기록 스레드에서 순서대로 실행됩니다.
+     */
+    private BlockPipeline startPipeline(final ApkOutputFile apkOutput) {
+        BlockPipeline started = new BlockPipeline(new BlockPipeline.BlockWriter() {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                if (payloadDecoder != null) {
+                    payloadDecoder.write(data, offset, length); // 델타/압축 전송: 풀어서 apkOutput에 기록
+                    return;
+                }
+                apkOutput.write(data, offset, length);
+                checkpoint(apkOutput);
+            }
+        }, Math.max(getPipelineCapacity(), windowSize), maxBlockSize);
+        started.start();
+        return started;
+    }
+
+    /**
+     * 확장 블록이면 슬롯 수를 줄여 링 전체 크기(32KB)를 유지, 최소 4슬롯
+     */
+    private int getPipelineCapacity() {
+        return Math.max(BlockPipeline.DEFAULT_CAPACITY * BlockSizeTuner.BASE_BLOCK_SIZE / maxBlockSize, 4);
+    }
+
+    /**
+     * 델타/압축 전송이면 받은 데이터를 풀어서 apkOutput에 기록할 변환기, 아니면 null (그대로 기록)
+     */
+    private PayloadDecoder createPayloadDecoder(ApkOutputFile apkOutput) throws IOException {
+        if (deltaAccepted) {
+            return new DeltaPatchWriter(deltaBase, apkOutput, expectedFileSize, decodedSize);
+        }
+        if (compression != null) {
+            return new DeflatedPayloadWriter(apkOutput, expectedFileSize, decodedSize);
+        }
+        return null;
+    }
+
+    /**
+     * APK 출력 파일을 엽니다. 이어받기면 기록된 오프셋까지만 남기고 이어 쓰고, 아니면 새로 씁니다.
+     */
+    private ApkOutputFile openApkOutput() throws IOException {
+        if (resumeOffset == 0 && journal != null) {
+            journal.delete(); // 이전 전송의 저널은 더 이상 유효하지 않음
+        }
+        return new ApkOutputFile(filePath, getOutputFileSize(), resumeOffset, ApkOutputFile.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * (기록 스레드) CHECKPOINT_INTERVAL마다 수신 데이터를 fsync 하고, 그 오프셋을 저널에 기록합니다.
+     * 연결이 끊기면 다음 연결에서 이 오프셋부터 이어받을 수 있습니다.
+     */
+    private void checkpoint(ApkOutputFile apkOutput) throws IOException {
+        long receivedSize = apkOutput.getPosition();
+        if (journal == null || receivedSize - lastCheckpoint < CHECKPOINT_INTERVAL || receivedSize % 1024 != 0) {
+            return;
+        }
+
+        apkOutput.sync();
+        journal.save(fileName, expectedFileSize, contentHash, receivedSize);
+        lastCheckpoint = receivedSize;
+    }
+
+    /**
+     * 세션 오류 예산: 복구 가능한 블록 오류(손상, 중복, 동기 이탈, 타임아웃)를 세션 전체에서 MAXERRORS번까지 허용
+     * 예산을 넘기면 CAN을 보내 전송을 중단합니다.
+     */
+    private void countError(String reason) throws IOException {
+        errorCount++;
+        LOG.warn("{} (error {}/{}, retrying)", reason, errorCount, Modem.MAXERRORS);
+        if (errorCount >= Modem.MAXERRORS) {
+            modem.interruptTransmission();
+            throw new IOException("5-700. Transmission aborted, error count exceeded max");
+        }
+    }
+
+    /**
+     * 블록이 전부 0x00인지 확인합니다 (비교용 배열을 따로 할당하지 않음)
+     */
+    private static boolean isAllZero(byte[] data) {
+        for (byte b : data) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,445 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import kr.co.mirerotack.btsever1.utils.LogChannel;
+import kr.co.mirerotack.btsever1.utils.Logger;
+import kr.co.mirerotack.btsever1.utils.YModemCRC16;
+
+/**
+ * 푸시 방식의 YModem 프레임 파서 (상태 머신)
+ * 전송 계층에서 도착한 바이트 조각을 크기에 상관없이 넣으면, 프레임 단위로 검사해 이벤트를 전달합니다.
+ * - 헤더 수신 / 블록 수신 / 중복 블록 / 블록 오류(번호 불일치, 보수, CRC) / EOT
+ * InputStream에 의존하지 않으므로 블로킹 스트림(Modem), NIO 채널, 테스트 데이터 등 어떤 입력에서도 같은 검사 로직을 사용합니다.
+ * <p>
+ * 프레임이 한 조각 안에 모두 들어 있으면 복사 없이 입력 배열 그대로 검사/전달하고,
+ * 여러 조각에 걸친 프레임만 내부 버퍼에 모아서 처리합니다.
+ * 이때 CRC는 조각이 도착할 때마다 이어서 계산해 두므로, 프레임이 완성되는 순간에는 마지막 조각만 계산하면 됩니다.
+ * 이벤트로 전달되는 데이터(배열, 위치)는 다음 feed() 호출 전까지만 유효합니다.
+ * <p>
+ * 수신자가 BufferListener이고 입력이 direct ByteBuffer이면, 프레임을 버퍼 안에서 그대로 검사하고
+ * 데이터 구간을 ByteBuffer로 전달합니다 (배열 복사 없음). 이때 완성되지 않은 프레임은 소비하지 않고 버퍼에 남깁니다.
+ * <p>
+ * 확장 블록 크기를 설정하면 XSTX 프레임(협상한 크기의 데이터 + CRC-32)도 받습니다. SOH/STX 프레임은 그대로 CRC-16
+ * 패리티 블록을 켜면 PARITY 프레임(FEC, STX와 같은 형식)도 받으며, 블록 이벤트로 전달하므로 getLastFrameType()으로 구분합니다.
+ */
+public class YModemFrameParser {
+    private static final LogChannel LOG = Logger.channel("modem");
+
+    /**
+     * 파서 이벤트 수신자
+     */
+    public interface Listener {
+        /** 블록 0 (헤더 모드에서만) */
+        void onHeader(byte[] data, int offset, int length);
+
+        /** 검증된 데이터 블록 */
+        void onBlock(int blockNumber, byte[] data, int offset, int length);
+
+        /** 직전 블록이 다시 도착 (이전 ACK 유실 가능성) - 5-601 */
+        void onDuplicate(int blockNumber);
+
+        /** 손상되었거나 순서가 맞지 않는 블록 - ERROR_SYNC_LOST(5-602), ERROR_COMPLEMENT(5-603), ERROR_CRC(5-604) */
+        void onBlockError(int error, int blockNumber);
+
+        /** 전송 종료 (데이터 모드에서만) */
+        void onEndOfTransmission();
+    }
+
+    /**
+     * direct ByteBuffer 입력의 데이터 블록을 복사 없이 받는 수신자
+     */
+    public interface BufferListener extends Listener {
+        /**
+         * 검증된 데이터 블록 - data의 position부터 limit까지가 블록 데이터
+         * 콜백이 끝나면 파서가 버퍼의 position/limit을 되돌리므로, data를 보관하지 말고 콜백 안에서 사용해야 합니다.
+         */
+        void onBlock(int blockNumber, ByteBuffer data);
+    }
+
+    public static final int ERROR_SYNC_LOST = 1;
+    public static final int ERROR_COMPLEMENT = 2;
+    public static final int ERROR_CRC = 3;
+
+    public static final int ANY_BLOCK = -1; // 윈도우 모드: 블록 번호 순서를 검사하지 않음
+
+    private static final int MODE_HEADER = 0;
+    private static final int MODE_BLOCK = 1;
+
+    private static final int HEADER_LENGTH = 3; // 시작 바이트(1) + 블록번호(1) + 보수(1)
+
+    private final Listener listener;
+    private final BufferListener bufferListener; // listener가 BufferListener가 아니면 null
+    private static final int CRC_LENGTH = 2;
+    private static final int CRC32_LENGTH = 4; // XSTX 프레임
+    private static final long NOT_CALCULATED = -1;
+
+    private byte[] assembly = new byte[HEADER_LENGTH + 1024 + CRC_LENGTH]; // 여러 조각에 걸친 프레임을 모으는 버퍼 (확장 블록 설정 시 키움)
+    private final byte[] scratch = new byte[HEADER_LENGTH + 1024 + CRC_LENGTH]; // 배열이 없는(direct) ByteBuffer용
+    private final CRC32 crc32 = new CRC32();
+
+    private int mode = MODE_HEADER;
+    private int expectedBlockNumber = 0;
+    private int extendedBlockSize = 0; // XSTX 프레임의 데이터 크기 (0: XSTX를 프레임으로 보지 않음)
+    private boolean parityEnabled = false; // PARITY를 프레임으로 봄 (헤더 fec 협상 시)
+
+    private int assembled = 0;   // assembly에 모인 바이트 수 (0: 프레임 시작 바이트 대기)
+    private int frameLength = 0; // 현재 조립 중인 프레임의 전체 길이
+    private int crcLength = CRC_LENGTH; // 현재 프레임의 CRC 길이
+    private int lastFrameType = 0;
+    private int partialCRC = 0;  // 조립 중인 프레임의 데이터 구간 중 이미 계산한 부분의 CRC-16 (XSTX는 crc32에 누적)
+    private int crcProgress = 0; // 이미 계산한 데이터 바이트 수
+    private boolean eventEmitted = false;
+
+    public YModemFrameParser(Listener listener) {
+        this.listener = listener;
+        this.bufferListener = (listener instanceof BufferListener) ? (BufferListener) listener : null;
+    }
+
+    /**
+     * 블록 0(헤더)을 기다립니다. EOT는 무시합니다.
+     */
+    public void expectHeader() {
+        mode = MODE_HEADER;
+        expectedBlockNumber = 0;
+    }
+
+    /**
+     * 지정한 번호의 데이터 블록을 기다립니다.
+     * @param blockNumber 기대하는 블록 번호 (0~255), ANY_BLOCK이면 순서 검사 없이 보수/CRC만 검사
+     */
+    public void expectBlock(int blockNumber) {
+        mode = MODE_BLOCK;
+        expectedBlockNumber = (blockNumber == ANY_BLOCK) ? ANY_BLOCK : (blockNumber & 0xFF);
+    }
+
+    /**
+     * 협상한 확장 블록 크기를 설정합니다. 이후 XSTX 프레임은 이 크기의 데이터와 CRC-32로 검사합니다.
+     * @param blockSize 데이터 크기 (1024의 배수), 0이면 XSTX를 받지 않음
+     */
+    public void setExtendedBlockSize(int blockSize) {
+        extendedBlockSize = blockSize;
+        int frame = HEADER_LENGTH + blockSize + CRC32_LENGTH;
+        if (assembly.length < frame) {
+            byte[] larger = new byte[frame];
+            System.arraycopy(assembly, 0, larger, 0, assembled);
+            assembly = larger;
+        }
+    }
+
+    /**
+     * FEC 패리티 블록(PARITY 프레임)을 받을지 설정합니다. 패리티 블록의 번호는 그룹 다음에 올 데이터 블록의 번호입니다.
+     */
+    public void setParityEnabled(boolean enabled) {
+        parityEnabled = enabled;
+    }
+
+    /**
+     * 조립 중이던 프레임을 버립니다 (프레임 중간 타임아웃 후 재전송을 기다릴 때)
+     * @return 버린 프레임이 있었으면 true
+     */
+    public boolean discardPartialFrame() {
+        boolean discarded = assembled > 0;
+        assembled = 0;
+        crcProgress = 0;
+        partialCRC = 0;
+        return discarded;
+    }
+
+    public boolean hasPartialFrame() {
+        return assembled > 0;
+    }
+
+    /**
+     * 마지막으로 시작된 프레임의 종류 (SOH 또는 STX)
+     */
+    public int getLastFrameType() {
+        return lastFrameType;
+    }
+
+    /**
+     * 바이트 조각을 처리합니다. 이벤트가 하나 발생하면 그 자리에서 멈추므로,
+     * 호출하는 쪽은 이벤트마다 다음 기대 값(블록 번호 등)을 바꾼 뒤 나머지 바이트를 이어서 넣으면 됩니다.
+     *
+     * @return 소비한 바이트 수 (length보다 작으면 이벤트가 발생해 멈춘 것)
+     */
+    public int feed(byte[] data, int offset, int length) {
+        int position = offset;
+        int end = offset + length;
+        eventEmitted = false;
+
+        while (position < end && !eventEmitted) {
+            if (assembled == 0) {
+                int character = data[position];
+
+                if (isFrameStart(character)) {
+                    startFrame(character);
+
+                    if (end - position >= frameLength) { // 프레임 전체가 들어 있으면 복사 없이 바로 검사
+                        checkFrame(data, position, NOT_CALCULATED);
+                        position += frameLength;
+                    } else {
+                        int count = end - position;
+                        System.arraycopy(data, position, assembly, 0, count);
+                        assembled = count;
+                        position = end;
+                        crcProgress = 0;
+                        partialCRC = 0;
+                        crc32.reset();
+                        updatePartialCRC();
+                    }
+                    continue;
+                }
+
+                position++;
+                if (character == Modem.EOT && mode == MODE_BLOCK) {
+                    eventEmitted = true;
+                    listener.onEndOfTransmission();
+                } else {
+                    LOG.error("SOH, STX, EOT가 아닌 {}가 들어옴.", character);
+                }
+                continue;
+            }
+
+            int count = Math.min(frameLength - assembled, end - position);
+            System.arraycopy(data, position, assembly, assembled, count);
+            assembled += count;
+            position += count;
+            updatePartialCRC();
+
+            if (assembled == frameLength) {
+                assembled = 0;
+                crcProgress = 0;
+                checkFrame(assembly, 0, crcLength == CRC32_LENGTH ? crc32.getValue() : partialCRC);
+            }
+        }
+        return position - offset;
+    }
+
+    private boolean isFrameStart(int character) {
+        return character == Modem.SOH || character == Modem.STX
+                || (character == Modem.XSTX && extendedBlockSize > 0) || (character == Modem.PARITY && parityEnabled);
+    }
+
+    /**
+     * 시작 바이트로 프레임의 길이와 CRC 방식을 정합니다.
+     */
+    private void startFrame(int character) {
+        lastFrameType = character;
+        int dataLength;
+        if (character == Modem.XSTX) {
+            dataLength = extendedBlockSize;
+            crcLength = CRC32_LENGTH;
+        } else {
+            dataLength = (character == Modem.SOH) ? 128 : 1024;
+            crcLength = CRC_LENGTH;
+        }
+        frameLength = HEADER_LENGTH + dataLength + crcLength;
+    }
+
+    /**
+     * assembly에 새로 들어온 데이터 구간만큼 CRC를 이어서 계산합니다.
+     */
+    private void updatePartialCRC() {
+        int dataLength = frameLength - HEADER_LENGTH - crcLength;
+        int available = Math.min(assembled - HEADER_LENGTH, dataLength);
+        if (available > crcProgress) {
+            if (crcLength == CRC32_LENGTH) {
+                crc32.update(assembly, HEADER_LENGTH + crcProgress, available - crcProgress);
+            } else {
+                partialCRC = YModemCRC16.update(partialCRC, assembly, HEADER_LENGTH + crcProgress, available - crcProgress);
+            }
+            crcProgress = available;
+        }
+    }
+
+    /**
+     * ByteBuffer의 position부터 처리하고, 소비한 만큼 position을 옮깁니다.
+     * BufferListener에 direct 버퍼를 넣는 경우, 끝의 완성되지 않은 프레임은 남겨 두므로
+     * 0을 반환하면 호출하는 쪽이 버퍼를 compact 하고 더 읽어야 합니다. (버퍼 크기는 STX 프레임 1개 이상)
+     * @return 소비한 바이트 수
+     */
+    public int feed(ByteBuffer buffer) {
+        if (!buffer.hasArray() && bufferListener != null && assembled == 0) {
+            return feedInPlace(buffer);
+        }
+        if (buffer.hasArray()) {
+            int consumed = feed(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.position() + consumed);
+            return consumed;
+        }
+
+        // direct 버퍼는 배열이 없으므로 scratch로 나누어 복사
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int count = Math.min(scratch.length, buffer.remaining());
+            buffer.get(scratch, 0, count);
+
+            int consumed = feed(scratch, 0, count);
+            buffer.position(start + consumed);
+            total += consumed;
+            if (eventEmitted) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * direct 버퍼 안에서 완성된 프레임만 그대로 검사합니다. 완성되지 않은 프레임에서 멈춥니다.
+     */
+    private int feedInPlace(ByteBuffer buffer) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        eventEmitted = false;
+
+        while (buffer.position() < end && !eventEmitted) {
+            int position = buffer.position();
+            int character = buffer.get(position);
+
+            if (isFrameStart(character)) {
+                startFrame(character);
+                if (end - position < frameLength) {
+                    break; // 나머지는 다음 읽기와 이어서 검사
+                }
+                checkFrameInPlace(buffer, position);
+                buffer.limit(end);
+                buffer.position(position + frameLength);
+                continue;
+            }
+
+            buffer.position(position + 1);
+            if (character == Modem.EOT && mode == MODE_BLOCK) {
+                eventEmitted = true;
+                listener.onEndOfTransmission();
+            } else {
+                LOG.error("SOH, STX, EOT가 아닌 {}가 들어옴.", character);
+            }
+        }
+        return buffer.position() - start;
+    }
+
+    private void checkFrameInPlace(ByteBuffer buffer, int offset) {
+        eventEmitted = true;
+
+        int dataLength = frameLength - HEADER_LENGTH - crcLength;
+        int blockNumber = buffer.get(offset + 1) & 0xFF;
+        int complement = buffer.get(offset + 2) & 0xFF;
+        if (!checkSequence(blockNumber, complement)) {
+            return;
+        }
+
+        int dataOffset = offset + HEADER_LENGTH;
+        int crcOffset = dataOffset + dataLength;
+        int limit = buffer.limit();
+        buffer.limit(crcOffset);
+        buffer.position(dataOffset);
+        long calculatedCRC;
+        if (crcLength == CRC32_LENGTH) {
+            crc32.reset();
+            while (buffer.hasRemaining()) { // CRC32는 API 26 전에는 ByteBuffer를 받지 않으므로 scratch로 나누어 계산
+                int count = Math.min(scratch.length, buffer.remaining());
+                buffer.get(scratch, 0, count);
+                crc32.update(scratch, 0, count);
+            }
+            calculatedCRC = crc32.getValue();
+        } else {
+            calculatedCRC = YModemCRC16.update(0, buffer);
+        }
+        buffer.limit(limit);
+        long receivedCRC = readCRC(buffer, crcOffset);
+
+        if (calculatedCRC != receivedCRC) {
+            LOG.debug("5-604. Expected CRC: {}, Received CRC: {}", calculatedCRC, receivedCRC);
+            listener.onBlockError(ERROR_CRC, blockNumber);
+            return;
+        }
+
+        buffer.limit(crcOffset);
+        buffer.position(dataOffset);
+        if (mode == MODE_HEADER) {
+            buffer.get(scratch, 0, dataLength); // 헤더(128바이트)는 문자열로 해석하므로 배열로 전달
+            listener.onHeader(scratch, 0, dataLength);
+        } else {
+            bufferListener.onBlock(blockNumber, buffer);
+        }
+    }
+
+    /**
+     * 완성된 프레임 하나를 검사하고 이벤트를 전달합니다. 검사 순서는 중복 → 번호 → 보수 → CRC
+     * @param calculatedCRC 조립하면서 미리 계산한 데이터 CRC (NOT_CALCULATED이면 여기서 계산)
+     */
+    private void checkFrame(byte[] frame, int offset, long calculatedCRC) {
+        eventEmitted = true;
+
+        int dataLength = frameLength - HEADER_LENGTH - crcLength;
+        int blockNumber = frame[offset + 1] & 0xFF;
+        int complement = frame[offset + 2] & 0xFF;
+        if (!checkSequence(blockNumber, complement)) {
+            return;
+        }
+
+        int dataOffset = offset + HEADER_LENGTH;
+        int crcOffset = dataOffset + dataLength;
+        if (calculatedCRC == NOT_CALCULATED) {
+            if (crcLength == CRC32_LENGTH) {
+                crc32.reset();
+                crc32.update(frame, dataOffset, dataLength);
+                calculatedCRC = crc32.getValue();
+            } else {
+                calculatedCRC = YModemCRC16.update(0, frame, dataOffset, dataLength);
+            }
+        }
+        long receivedCRC = 0;
+        for (int i = 0; i < crcLength; i++) {
+            receivedCRC = (receivedCRC << 8) | (frame[crcOffset + i] & 0xFF); // big-endian
+        }
+
+        if (calculatedCRC != receivedCRC) {
+            LOG.debug("5-604. Expected CRC: {}, Received CRC: {}", calculatedCRC, receivedCRC);
+            listener.onBlockError(ERROR_CRC, blockNumber);
+            return;
+        }
+
+        if (mode == MODE_HEADER) {
+            listener.onHeader(frame, dataOffset, dataLength);
+        } else {
+            listener.onBlock(blockNumber, frame, dataOffset, dataLength);
+        }
+    }
+
+    private long readCRC(ByteBuffer buffer, int crcOffset) {
+        long value = 0;
+        for (int i = 0; i < crcLength; i++) {
+            value = (value << 8) | (buffer.get(crcOffset + i) & 0xFF); // big-endian
+        }
+        return value;
+    }
+
+    /**
+     * 블록 번호(중복, 순서)와 보수를 검사합니다. 실패하면 이벤트를 전달하고 false
+     */
+    private boolean checkSequence(int blockNumber, int complement) {
+        if (mode == MODE_BLOCK && expectedBlockNumber != ANY_BLOCK) {
+            if (blockNumber == ((expectedBlockNumber - 1) & 0xFF)) {
+                listener.onDuplicate(blockNumber);
+                return false;
+            }
+            if (blockNumber != expectedBlockNumber) {
+                listener.onBlockError(ERROR_SYNC_LOST, blockNumber);
+                return false;
+            }
+        } else if (mode == MODE_HEADER && blockNumber != 0) {
+            listener.onBlockError(ERROR_SYNC_LOST, blockNumber);
+            return false;
+        }
+
+        if (complement != (~blockNumber & 0xFF)) {
+            listener.onBlockError(ERROR_COMPLEMENT, blockNumber);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,410 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+import kr.co.mirerotack.btsever1.utils.LogChannel;
+import kr.co.mirerotack.btsever1.utils.Logger;
+
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.COMPRESSION_DEFLATE;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.COMPRESSION_NONE;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_ACK;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_BLOCK_SIZE;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_COMPRESSION;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_DECOMPRESSED_SIZE;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_DELTA;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_FEC;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_PACKAGE;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_RESUME;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_SHA256;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_VERSION;
+import static kr.co.mirerotack.btsever1.ymodemServer.YModem.OPTION_WINDOW;
+
+/**
+ * YModem 헤더(블록 0) 해석과 선택 필드 협상 (블로킹 수신(YModem)과 TCP_NIO 수신이 같은 규칙을 사용)
+ * - 헤더: 파일명 \0 크기 \0 싱크 모드 \0 재부팅 \0 강제 업데이트 [\0 key=value ...]
+ * - 송신자가 제안한 선택 필드 중 수신자가 지원하는 값을 확정하고, "key=value;key=value" 한 줄로 회신
+ * 수신 방식이 지원하지 않는 기능(윈도우, 이어받기, FEC, RESIZE)은 하위 클래스에서 supports...()를 false로 바꾸면 0(또는 1K)으로 회신합니다.
+ */
+class YModemHeader {
+    private static final LogChannel LOG = Logger.channel("ymodem");
+
+    private String fileName = null;
+    private long expectedFileSize = -1;
+    private boolean syncDataMode = false;
+    private boolean rebootMode = false;
+    private boolean forceUpdateMode = false;
+    private final Map<String, String> options = new HashMap<String, String>();
+
+    private final StringBuilder reply = new StringBuilder();
+    private int windowSize = 0;
+    private boolean ackMode = false;
+    private int fecGroupSize = 0;
+    private int maxBlockSize = BlockSizeTuner.BASE_BLOCK_SIZE;
+    private int blockSize = BlockSizeTuner.BASE_BLOCK_SIZE;
+    private String contentHash = null;
+    private TransferJournal journal = null;
+    private long resumeOffset = 0;
+    private File deltaBase = null;
+    private boolean deltaAccepted = false;
+    private String compression = null;
+    private long decodedSize = 0;
+
+    /**
+     * 헤더 문자열(NULL 구분, 뒤의 NULL 패딩 제거)을 해석합니다.
+     * @throws IOException 필수 필드가 없거나 파일 크기가 숫자가 아닌 경우
+     */
+    void parse(String headerString) throws IOException {
+        LOG.info("[O] Received header: {}", headerString);
+
+        // header: b'smartrtu.apk \x00 3654326 \x00 1 \x00 0 \x00(이후 NULL 반복)'
+        String[] headerParts = headerString.split("\u0000");
+        if (headerParts.length < 5 || headerParts[1].trim().isEmpty()) {
+            LOG.error("Header parsing failed! Invalid data: {}", headerString);
+            throw new IOException("Invalid YModem header: " + headerString);
+        }
+
+        try {
+            fileName = headerParts[0].trim();                            // [0] 파일 이름
+            expectedFileSize = Long.parseLong(headerParts[1].trim());    // [1] 파일 크기
+            syncDataMode = headerParts[2].trim().equals("1");            // [2] 데이터 싱크 모드
+            rebootMode = headerParts[3].trim().equals("1");              // [3] RTU 기기 재부팅
+            forceUpdateMode = headerParts[4].trim().equals("1");         // [4] 강제 업데이트 활성화
+        } catch (NumberFormatException e) {
+            LOG.error("Failed to convert file size: {}", headerParts[1]);
+            throw new IOException("Invalid file size in header");
+        }
+
+        options.clear();
+        for (int i = 5; i < headerParts.length; i++) {                  // [5~] 선택 필드 (key=value), 형식이 맞지 않으면 무시
+            String part = headerParts[i].trim();
+            int separator = part.indexOf('=');
+            if (separator > 0) {
+                options.put(part.substring(0, separator), part.substring(separator + 1));
+            }
+        }
+
+        LOG.info("[O] [Header] File name: {}, Expected size: {} bytes\n, SyncData Mode: {}, Reboot Mode: {}, Force update: {}{}",
+                fileName, expectedFileSize, syncDataMode, rebootMode, forceUpdateMode,
+                options.isEmpty() ? "" : ", Options: " + options);
+    }
+
+    /**
+     * 송신자가 제안한 옵션 중 수신자가 지원하는 값을 확정합니다. (parse 뒤에 호출)
+     * @param filePath 받은 파일을 저장할 경로 (이어받기 저널 위치), 이어받기를 지원하지 않으면 null 가능
+     */
+    void negotiate(File filePath) {
+        reply.setLength(0);
+
+        windowSize = 0;
+        String window = options.get(OPTION_WINDOW);
+        if (window != null) {
+            if (supportsWindow()) {
+                windowSize = Math.max(0, Math.min(parseIntOption(window), YModem.MAX_WINDOW_SIZE));
+            }
+            appendReply(OPTION_WINDOW, String.valueOf(windowSize));
+        }
+
+        String sha256 = options.get(OPTION_SHA256);
+        contentHash = (sha256 != null) ? sha256.trim() : null;
+
+        decodedSize = 0;
+        deltaAccepted = false;
+        String delta = options.get(OPTION_DELTA);
+        if (delta != null) {
+            long targetSize = parseLongOption(delta);
+            deltaBase = (syncDataMode || rebootMode) ? null : getDeltaBase();
+            // 재구성한 APK는 sha256으로만 확인할 수 있으므로 해시가 없으면 거절
+            deltaAccepted = targetSize > 0 && contentHash != null && deltaBase != null && deltaBase.isFile();
+            appendReply(OPTION_DELTA, deltaAccepted ? "1" : "0");
+            if (deltaAccepted) {
+                decodedSize = targetSize;
+                LOG.info("[O] 4-3. Delta transfer: patch of {} bytes against {} -> {} bytes",
+                        expectedFileSize, deltaBase.getPath(), targetSize);
+            }
+        }
+
+        compression = null;
+        String z = options.get(OPTION_COMPRESSION);
+        if (z != null) {
+            // 델타 패치는 이미 압축되어 있으므로 함께 쓰지 않음, APK를 압축해 보낼 때는 풀었을 때의 크기가 필요
+            long size = syncDataMode ? 0 : parseLongOption(options.get(OPTION_DECOMPRESSED_SIZE));
+            if (z.trim().equals(COMPRESSION_DEFLATE) && delta == null && (syncDataMode || size > 0)) {
+                compression = COMPRESSION_DEFLATE;
+                decodedSize = size;
+                if (size > 0) {
+                    LOG.info("[O] 4-3. Compressed transfer: {} -> {} bytes ({})", expectedFileSize, size, compression);
+                }
+            }
+            appendReply(OPTION_COMPRESSION, compression != null ? compression : COMPRESSION_NONE);
+        }
+
+        // 델타/압축 전송은 이어받지 않음 (받은 데이터의 위치와 APK의 위치가 달라 저널 오프셋을 쓸 수 없음)
+        journal = (supportsResume() && contentHash != null && filePath != null && decodedSize == 0)
+                ? new TransferJournal(filePath) : null;
+        resumeOffset = 0;
+        if (options.get(OPTION_RESUME) != null) {
+            resumeOffset = findResumeOffset(filePath);
+            appendReply(OPTION_RESUME, String.valueOf(resumeOffset));
+        }
+
+        ackMode = false;
+        String ack = options.get(OPTION_ACK);
+        if (ack != null) {
+            ackMode = ack.trim().equals("1");
+            appendReply(OPTION_ACK, ackMode ? "1" : "0");
+        }
+
+        fecGroupSize = 0;
+        String fec = options.get(OPTION_FEC);
+        if (fec != null) {
+            // 윈도우 모드는 손상 블록만 선택적 NAK으로 다시 받으며 멈추지 않으므로 사용하지 않음
+            int groupSize = parseIntOption(fec);
+            if (supportsParity() && windowSize == 0 && !syncDataMode && !rebootMode && groupSize >= ParityGroup.MIN_GROUP_SIZE) {
+                fecGroupSize = Math.min(groupSize, ParityGroup.MAX_GROUP_SIZE);
+            }
+            appendReply(OPTION_FEC, String.valueOf(fecGroupSize));
+        }
+
+        maxBlockSize = BlockSizeTuner.BASE_BLOCK_SIZE;
+        blockSize = BlockSizeTuner.BASE_BLOCK_SIZE;
+        String blk = options.get(OPTION_BLOCK_SIZE);
+        if (blk != null) {
+            // 윈도우 모드는 이미 왕복을 기다리지 않고 보내므로, FEC는 패리티 블록이 1K이므로 1K 유지
+            // 이어받기는 블록 번호를 1K 단위 오프셋(resume / 1024)부터 이어 매기므로 1K 유지
+            // 블록 단위 ACK 모드는 1K로 시작해 측정 후 RESIZE로 키우므로, RESIZE를 지원하지 않으면 1K 유지
+            if (windowSize == 0 && fecGroupSize == 0 && resumeOffset == 0 && !syncDataMode && !rebootMode
+                    && (supportsResize() || !ackMode)) {
+                maxBlockSize = BlockSizeTuner.normalize(parseIntOption(blk));
+            }
+            // 스트리밍 모드는 블록마다 왕복이 없으므로 바로 최대 크기
+            blockSize = ackMode ? BlockSizeTuner.BASE_BLOCK_SIZE : maxBlockSize;
+            appendReply(OPTION_BLOCK_SIZE, String.valueOf(blockSize));
+        }
+    }
+
+    /**
+     * 슬라이딩 윈도우(win) 수신을 지원하는지
+     */
+    protected boolean supportsWindow() {
+        return true;
+    }
+
+    /**
+     * 전송 저널을 기록하고 이어받기(resume)를 지원하는지
+     */
+    protected boolean supportsResume() {
+        return true;
+    }
+
+    /**
+     * 패리티 블록(fec)으로 손상 블록을 복구하는지
+     */
+    protected boolean supportsParity() {
+        return true;
+    }
+
+    /**
+     * 블록 단위 ACK 모드에서 RESIZE로 블록 크기를 바꾸는지
+     */
+    protected boolean supportsResize() {
+        return true;
+    }
+
+    /**
+     * 델타 패치를 적용할 기준 파일 (설치된 APK), 없으면 null (델타 전송 거절)
+     * 헤더에 delta가 있을 때만 호출됩니다.
+     */
+    protected File getDeltaBase() {
+        return deltaBase;
+    }
+
+    void setDeltaBase(File deltaBase) {
+        this.deltaBase = deltaBase;
+    }
+
+    /**
+     * 협상에서 받아들인 델타 패치의 기준 파일, 델타 전송이 아니면 null
+     */
+    File getAcceptedDeltaBase() {
+        return deltaAccepted ? deltaBase : null;
+    }
+
+    /**
+     * 이전에 끊긴 같은 파일의 저널이 있으면, 디스크에 확실히 기록된 오프셋부터 이어받습니다.
+     * @return 이어받을 오프셋 (없으면 0)
+     */
+    private long findResumeOffset(File filePath) {
+        if (journal == null || !journal.load()) {
+            return 0;
+        }
+
+        long offset = journal.getDurableOffset();
+        if (!journal.matches(fileName, expectedFileSize, contentHash) || offset % 1024 != 0
+                || offset > expectedFileSize || !filePath.exists() || filePath.length() < offset) {
+            LOG.error("4-3. Transfer journal does not match the incoming file, starting from 0");
+            journal.delete();
+            return 0;
+        }
+
+        LOG.info("[O] 4-3. Resuming {} from offset {} ({} blocks already stored)", fileName, offset, offset / 1024);
+        return offset;
+    }
+
+    /**
+     * 4-1 ACK 직후 보낼 협상 결과 (예: "win=8;ack=1"), 선택 필드를 보내지 않은 기존 송신자에게는 null (회신 없음)
+     */
+    String getReply() {
+        return options.isEmpty() ? null : reply.toString();
+    }
+
+    /**
+     * 송신자가 요청한 델타/압축 전송을 받을 수 없는 경우 (기준 APK, sha256 또는 zlen 없음, 지원하지 않는 압축 방식)
+     * 송신자는 이미 변환한 데이터의 크기를 헤더에 보냈으므로, 이 세션은 끝내고 원본으로 다시 받아야 함
+     */
+    boolean isEncodingRefused() {
+        if (syncDataMode || rebootMode) {
+            return false;
+        }
+        if (options.get(OPTION_DELTA) != null) {
+            return !deltaAccepted;
+        }
+        return options.get(OPTION_COMPRESSION) != null && compression == null;
+    }
+
+    /**
+     * 헤더에 pkg/ver 선택 필드가 모두 있으면 송신자가 알려 준 APK 정보, 없거나 형식이 맞지 않으면 null
+     */
+    ApkManifestInfo getAnnouncedManifest() {
+        String packageName = options.get(OPTION_PACKAGE);
+        String versionCode = options.get(OPTION_VERSION);
+        if (packageName == null || versionCode == null || packageName.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return new ApkManifestInfo(packageName.trim(), Integer.parseInt(versionCode.trim()));
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid header option value: {}", versionCode);
+            return null;
+        }
+    }
+
+    String getOption(String key) {
+        return options.get(key);
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    long getExpectedFileSize() {
+        return expectedFileSize;
+    }
+
+    boolean isSyncDataMode() {
+        return syncDataMode;
+    }
+
+    boolean isRebootMode() {
+        return rebootMode;
+    }
+
+    boolean isForceUpdateMode() {
+        return forceUpdateMode;
+    }
+
+    int getWindowSize() {
+        return windowSize;
+    }
+
+    boolean isAckMode() {
+        return ackMode;
+    }
+
+    int getFecGroupSize() {
+        return fecGroupSize;
+    }
+
+    int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+
+    /**
+     * 송신자가 처음 보내야 하는 블록 크기 (회신한 blk)
+     */
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * 헤더의 sha256 값 (앞뒤 공백 제거), 없으면 null
+     */
+    String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * 해시를 보낸 송신자에 대해서만 만든 저널 (이어받기를 지원하지 않거나 델타/압축 전송이면 null)
+     */
+    TransferJournal getJournal() {
+        return journal;
+    }
+
+    long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    boolean isDeltaAccepted() {
+        return deltaAccepted;
+    }
+
+    /**
+     * 확정된 압축 방식 (COMPRESSION_DEFLATE), 압축하지 않으면 null
+     */
+    String getCompression() {
+        return compression;
+    }
+
+    /**
+     * 0보다 크면 델타/압축 전송: 받은 데이터를 풀어서 만들 APK 크기
+     */
+    long getDecodedSize() {
+        return decodedSize;
+    }
+
+    /**
+     * 저장되는 APK의 크기: 델타/압축 전송이면 풀어서 만들 APK 크기, 아니면 헤더의 파일 크기
+     */
+    long getOutputFileSize() {
+        return decodedSize > 0 ? decodedSize : expectedFileSize;
+    }
+
+    private void appendReply(String key, String value) {
+        if (reply.length() > 0) reply.append(';');
+        reply.append(key).append('=').append(value);
+    }
+
+    private static long parseLongOption(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid header option value: {}", value);
+            return 0;
+        }
+    }
+
+    private static int parseIntOption(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid header option value: {}", value);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,1206 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+import kr.co.mirerotack.btsever1.model.ApkValidationResult;
+import kr.co.mirerotack.btsever1.utils.LogChannel;
+import kr.co.mirerotack.btsever1.utils.Logger;
+
+/**
+ * NIO TCP 서버 구현체 - ServerSocketChannel/Selector 기반의 논블로킹 서버
+ * 셀렉터 스레드 하나가 모든 연결의 헤더/데이터 블록 수신을 읽기 준비 이벤트(OP_READ)로 처리하므로,
+ * 유휴 HMI/트리거 연결이 많아도 연결마다 스레드 스택을 점유하지 않습니다.
+ * 셀렉터 스레드는 프레임 해석과 응답만 하고, 디스크/PackageManager를 사용하는 처리는 다른 스레드에서 실행됩니다.
+ * - 헤더 판정(설치 필요 여부, 보관본, 출력 파일 열기)과 수신 이후 처리(무결성 확인, APK 검증, 센서 데이터 전송, 재부팅): 작업 스레드
+ * - 블록 기록(델타/압축 해제, SHA-256): 업로드 세션마다 BlockPipeline 기록 스레드 (링이 가득 차면 그 연결만 읽기를 멈춤)
+ */
+public class YModemNioServerImpl extends AbstractYModemServer {
+    private static final int TRIGGER_PORT_OFFSET = 1; // 트리거 데이터 전용 포트 = YModem 포트 + 1 (TCP 서버와 동일)
+    private static final int TRIGGER_INTERVAL = 1000; // 트리거 데이터 전송 간격 (ms)
+    private static final int SELECT_TIMEOUT = 250; // 타임아웃/트리거 확인 주기 (ms)
+    private static final int READ_BUFFER_SIZE = 20 * 1024; // 연결별 수신 버퍼 (STX 프레임 여러 개, 가장 큰 XSTX 프레임 하나 이상)
+    private static final int WRITE_BUFFER_SIZE = 256; // 연결별 응답 버퍼 (ACK/NAK/C/CAN, 협상 회신)
+    private static final int FILE_BUFFER_SIZE = 32 * 1024;
+    private static final int COMPLETION_THREADS = DEFAULT_MAX_CONCURRENT_SESSIONS; // 수신 이후 블로킹 처리를 동시에 실행하는 스레드 수
+    private static final int POST_RECEIVE_READ_TIMEOUT = 30_000; // 작업 스레드로 넘긴 연결의 읽기 타임아웃 (ms), 응답 없는 송신자가 스레드를 점유하지 않도록
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final LogChannel LOG = Logger.channel("nio");
+    private static final FlightRecorder RECORDER = FlightRecorder.shared();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ServerSocketChannel triggerServerChannel;
+    private final List<SocketChannel> triggerClients = new ArrayList<SocketChannel>();
+    private final List<NioSession> completedSessions = new ArrayList<NioSession>(); // 블로킹 처리로 넘길 세션
+    private final List<Runnable> selectorTasks = new ArrayList<Runnable>(); // 다른 스레드가 셀렉터 스레드에 넘긴 작업
+
+    private Thread selectorThread;
+    private ExecutorService completionExecutor;
+    private long lastTriggerTime = 0;
+
+    /**
+     * NIO TCP 서버 생성자
+     * @param apkDownloadPath APK 파일을 저장할 디렉토리 경로
+     * @param context Android 애플리케이션 컨텍스트 (파일 시스템 접근용)
+     */
+    public YModemNioServerImpl(File apkDownloadPath, Context context) {
+        super(apkDownloadPath, context);
+    }
+
+    @Override
+    protected String getServerType() {
+        return "TCP_NIO";
+    }
+
+    @Override
+    public void startServer(final int port) {
+        isRunning = true;
+        completionExecutor = createCompletionExecutor();
+
+        selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (isRunning) {
+                    try {
+                        closeExistingServerSocket();
+                        startServerSocket(port);
+
+                        LOG.info("==========================================================");
+                        LOG.info("{} Server started on port: {}", getServerType(), port);
+
+                        runSelectLoop();
+                    } catch (ClosedSelectorException e) {
+                        LOG.info("[O] {} selector closed", getServerType());
+                    } catch (IOException e) {
+                        LOG.warn("{} Server communication error, restarting: {}", getServerType(), e.getMessage());
+                        waitSeconds(5000);
+                    } finally {
+                        closeExistingServerSocket();
+                    }
+                }
+            }
+        }, "TCP_NIO-selector");
+        selectorThread.start();
+    }
+
+    /**
+     * 수신 이후 처리(싱크, 재부팅, 보관본 복원, EOT 교환/APK 검증)를 실행하는 작은 풀
+     * 한 세션이 느려도 다른 세션의 처리가 기다리지 않도록 COMPLETION_THREADS개까지 동시에 실행, 나머지는 큐에서 대기
+     */
+    private ExecutorService createCompletionExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(COMPLETION_THREADS, COMPLETION_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger sequence = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, getServerType() + "-completion-" + sequence.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true); // 유휴 시에는 스레드를 유지하지 않음
+        return executor;
+    }
+
+    @Override
+    public void stopServer() {
+        isRunning = false;
+        closeExistingServerSocket(); // 셀렉터를 닫으면 select()가 즉시 반환되고 루프가 종료됨
+        if (completionExecutor != null) {
+            for (Runnable pending : completionExecutor.shutdownNow()) {
+                if (pending instanceof SessionCleanup) {
+                    pending.run(); // 버리면 파일과 펌웨어 업로드 잠금이 남음
+                }
+            }
+        }
+        LOG.info("[O] {} server stopped", getServerType());
+    }
+
+    /**
+     * 셀렉터와 YModem/트리거 서버 채널을 열고 등록합니다
+     * @param port YModem 포트 (트리거는 port + 1)
+     */
+    @Override
+    protected void startServerSocket(int port) throws IOException {
+        selector = Selector.open();
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress("0.0.0.0", port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        LOG.info("[O] TCP_NIO Port binding successful on {}:{}", YModemTCPServerImpl.getLocalIpAddress(), port);
+
+        triggerServerChannel = ServerSocketChannel.open();
+        triggerServerChannel.socket().setReuseAddress(true);
+        triggerServerChannel.socket().bind(new InetSocketAddress("0.0.0.0", port + TRIGGER_PORT_OFFSET));
+        triggerServerChannel.configureBlocking(false);
+        triggerServerChannel.register(selector, SelectionKey.OP_ACCEPT);
+        LOG.info("[O] TCP_NIO Trigger port binding successful on port {}", port + TRIGGER_PORT_OFFSET);
+    }
+
+    /**
+     * 준비 이벤트를 처리하는 메인 루프. 연결 수락, 프레임 수신, 타임아웃, 트리거 전송을 모두 이 스레드에서 처리합니다
+     */
+    private void runSelectLoop() throws IOException {
+        while (isRunning && selector.isOpen()) {
+            selector.select(SELECT_TIMEOUT);
+
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+
+                if (!key.isValid()) {
+                    continue;
+                }
+
+                if (key.isAcceptable()) {
+                    acceptChannel((ServerSocketChannel) key.channel());
+                } else if (key.attachment() instanceof NioSession) {
+                    NioSession session = (NioSession) key.attachment();
+                    try {
+                        if (key.isWritable()) session.flush();
+                        if (key.isValid() && key.isReadable()) session.onReadable();
+                    } catch (IOException e) {
+                        session.abort(getServerType() + " Socket error occurred: " + e.getMessage());
+                    }
+                } else if (key.isReadable()) {
+                    drainTriggerClient(key);
+                }
+            }
+
+            runSelectorTasks();
+
+            long now = System.currentTimeMillis();
+            checkSessionTimeouts(now);
+
+            if (now - lastTriggerTime >= TRIGGER_INTERVAL) {
+                lastTriggerTime = now;
+                broadcastTriggerData();
+            }
+
+            handOffCompletedSessions();
+        }
+    }
+
+    /**
+     * 세션 상태는 셀렉터 스레드에서만 바꾸므로, 작업/기록 스레드는 결과를 이 큐로 넘기고 셀렉터를 깨웁니다
+     */
+    private void runOnSelector(Runnable task) {
+        synchronized (selectorTasks) {
+            selectorTasks.add(task);
+        }
+        Selector current = selector;
+        if (current != null) current.wakeup();
+    }
+
+    private void runSelectorTasks() {
+        List<Runnable> tasks;
+        synchronized (selectorTasks) {
+            if (selectorTasks.isEmpty()) {
+                return;
+            }
+            tasks = new ArrayList<Runnable>(selectorTasks);
+            selectorTasks.clear();
+        }
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    private void acceptChannel(ServerSocketChannel acceptingChannel) throws IOException {
+        SocketChannel channel = acceptingChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+
+        if (acceptingChannel == triggerServerChannel) {
+            channel.register(selector, SelectionKey.OP_READ); // 연결 종료 감지용
+            triggerClients.add(channel);
+            LOG.info("[O] TriggerThread: Client connected: {}", channel.socket().getRemoteSocketAddress());
+            return;
+        }
+
+        LOG.info("--------------------3. {} Starting to receive--------------------", getServerType());
+        LOG.info("[O] {} Client connected: {}", getServerType(), channel.socket().getRemoteSocketAddress());
+
+        NioSession session = new NioSession(channel);
+        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        session.start();
+    }
+
+    private void checkSessionTimeouts(long now) {
+        for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys())) {
+            if (key.isValid() && key.attachment() instanceof NioSession) {
+                NioSession session = (NioSession) key.attachment();
+                try {
+                    session.checkTimeout(now);
+                } catch (IOException e) {
+                    session.abort(getServerType() + " Socket error occurred: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 트리거 구독자에게 트리거 데이터를 보냅니다. 논블로킹 쓰기가 끝까지 되지 않으면 (수신 측 정체) 연결을 끊습니다
+     */
+    private void broadcastTriggerData() {
+        if (triggerClients.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(createTriggerJson(77.7f, 123).getBytes(Charset.forName("UTF-8")));
+        for (Iterator<SocketChannel> iterator = triggerClients.iterator(); iterator.hasNext(); ) {
+            SocketChannel channel = iterator.next();
+            data.rewind();
+            try {
+                channel.write(data);
+                if (data.hasRemaining()) {
+                    throw new IOException("Trigger client is not reading");
+                }
+            } catch (IOException e) {
+                LOG.warn("트리거 데이터 전송 실패, 연결 종료: {}", e.getMessage());
+                closeQuietly(channel);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void drainTriggerClient(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer discard = ByteBuffer.allocate(64);
+        try {
+            if (channel.read(discard) >= 0) {
+                return;
+            }
+        } catch (IOException e) {
+            // 아래에서 연결 종료
+        }
+        LOG.info("triggerSocket: close or disconnected");
+        closeQuietly(channel);
+        triggerClients.remove(channel);
+    }
+
+    /**
+     * 수신이 끝난 세션을 셀렉터에서 해제하고 블로킹 모드로 바꿔 작업 스레드에 넘깁니다
+     */
+    private void handOffCompletedSessions() throws IOException {
+        if (completedSessions.isEmpty()) {
+            return;
+        }
+
+        selector.selectNow(); // 취소된 키의 등록 해제를 완료해야 블로킹 모드로 전환할 수 있음
+
+        for (final NioSession session : completedSessions) {
+            try {
+                session.channel.configureBlocking(true);
+                session.channel.socket().setSoTimeout(POST_RECEIVE_READ_TIMEOUT); // 블로킹 읽기가 무한히 멈추지 않도록
+            } catch (IOException e) {
+                session.releaseLater();
+                continue;
+            }
+            completionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    session.complete();
+                }
+            });
+        }
+        completedSessions.clear();
+    }
+
+    @Override
+    protected Object acceptClientConnection() throws IOException {
+        throw new IOException("TCP_NIO accepts connections on the selector thread");
+    }
+
+    @Override
+    protected InputStream getInputStream(Object clientConnection) throws IOException {
+        return ((SocketChannel) clientConnection).socket().getInputStream(); // 블로킹 모드로 전환된 채널에서만 사용
+    }
+
+    @Override
+    protected OutputStream getOutputStream(Object clientConnection) throws IOException {
+        return ((SocketChannel) clientConnection).socket().getOutputStream();
+    }
+
+    @Override
+    protected void closeClientConnection(Object clientConnection) {
+        closeQuietly((SocketChannel) clientConnection);
+    }
+
+    @Override
+    protected String getClientInfo(Object clientConnection) {
+        return String.valueOf(((SocketChannel) clientConnection).socket().getRemoteSocketAddress());
+    }
+
+    @Override
+    protected boolean isConnected(Object clientConnection) {
+        return ((SocketChannel) clientConnection).isConnected();
+    }
+
+    /**
+     * 셀렉터, 서버 채널, 등록된 모든 연결을 닫습니다
+     */
+    @Override
+    public void closeExistingServerSocket() {
+        try {
+            if (selector != null && selector.isOpen()) {
+                for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys())) {
+                    if (key.attachment() instanceof NioSession) {
+                        ((NioSession) key.attachment()).release();
+                    }
+                }
+                selector.close();
+            }
+            runSelectorTasks(); // 판정이 끝난 세션도 정리 (파일, 펌웨어 업로드 잠금)
+        } catch (IOException e) {
+            LOG.warn("Failed to close TCP_NIO selector: {}", e.getMessage());
+        }
+
+        for (SocketChannel channel : triggerClients) {
+            closeQuietly(channel);
+        }
+        triggerClients.clear();
+
+        if (triggerServerChannel != null && triggerServerChannel.isOpen()) {
+            closeQuietly(triggerServerChannel);
+        }
+        if (serverChannel != null && serverChannel.isOpen()) {
+            closeQuietly(serverChannel);
+            LOG.info("[O] TCP_NIO server socket closed successfully");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return isRunning && serverChannel != null && serverChannel.isOpen();
+    }
+
+    private static void closeQuietly(java.nio.channels.Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("TCP_NIO channel close error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 세션에서 떼어 낸 기록 링, 델타/압축 변환기, 출력 파일, 펌웨어 업로드 잠금을 정리하는 작업
+     * 기록 스레드가 끝나기를 기다리므로(join) 셀렉터 스레드에서는 실행하지 않습니다
+     */
+    private class SessionCleanup implements Runnable {
+        private final BlockPipeline pipeline;
+        private final PayloadDecoder payloadDecoder;
+        private final ApkOutputFile fileOutput;
+        private final boolean firmwareUploadLocked;
+
+        SessionCleanup(BlockPipeline pipeline, PayloadDecoder payloadDecoder, ApkOutputFile fileOutput, boolean firmwareUploadLocked) {
+            this.pipeline = pipeline;
+            this.payloadDecoder = payloadDecoder;
+            this.fileOutput = fileOutput;
+            this.firmwareUploadLocked = firmwareUploadLocked;
+        }
+
+        boolean isEmpty() {
+            return pipeline == null && payloadDecoder == null && fileOutput == null && !firmwareUploadLocked;
+        }
+
+        @Override
+        public void run() {
+            if (pipeline != null) {
+                pipeline.abort(); // 남은 블록은 버리고, 진행 중인 기록이 끝난 뒤 파일을 닫음
+            }
+            if (payloadDecoder != null) {
+                payloadDecoder.close();
+            }
+            if (fileOutput != null) {
+                try {
+                    fileOutput.close();
+                } catch (IOException e) { /* 무시 가능 */ }
+            }
+            if (firmwareUploadLocked) {
+                endFirmwareUpload();
+            }
+        }
+    }
+
+    /**
+     * 연결 하나의 YModem 수신 상태 머신
+     * Modem/YModem의 블로킹 수신 흐름(C 전송 → 헤더 → 데이터 블록 → EOT)을 그대로 따르며,
+     * 도착한 바이트를 그대로 YModemFrameParser에 넣고, 파서 이벤트에 따라 응답합니다.
+     * 수신 버퍼는 direct 버퍼이며, 프레임은 버퍼 안에서 CRC를 검사하고 데이터 구간을 기록 링(BlockPipeline)에 복사합니다.
+     * 링은 셀렉터 스레드와 기록 스레드를 분리하기 위한 것이라 이 복사는 피할 수 없고, 기록 스레드는 ApkOutputFile에 모아서 기록합니다.
+     * 윈도우(win)와 이어받기(resume)는 이 전송에서 지원하지 않으므로 협상 회신에서 0으로 확정합니다.
+     */
+    private class NioSession implements YModemFrameParser.BufferListener, YModemResponder.Sink {
+        private static final int AWAIT_ECHO = 0; // 'C' 전송 후 송신자의 첫 바이트(에코) 대기
+        private static final int HEADER = 1;     // 블록 0 (헤더) 대기
+        private static final int DATA = 2;       // APK 데이터 블록/EOT 대기
+        private static final int COMPLETED = 3;  // 수신 종료, 작업 스레드로 넘김 (또는 종료됨)
+        private static final int PREPARING = 4;  // 헤더 판정 중 (작업 스레드), 응답 전이므로 읽지 않음
+
+        private static final int COMPLETE_SYNC = 1;
+        private static final int COMPLETE_REBOOT = 2;
+        private static final int COMPLETE_APK = 3;
+        private static final int COMPLETE_STAGED = 4; // 보관된 APK로 수신을 대신함
+
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_SIZE); // 완성되지 않은 프레임은 다음 읽기까지 남겨 둠
+        private final ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private final YModemFrameParser parser = new YModemFrameParser(this);
+        private final YModemResponder responder = new YModemResponder(this);
+        private final int sessionId = RECORDER.newSession();
+
+        private int state = AWAIT_ECHO;
+        private int completion = 0;
+        private long deadline = 0;
+        private int startRetries = 0;
+        private int errorCount = 0;
+        private boolean readPaused = false; // 헤더 판정 중이거나 기록 링이 가득 참 → OP_READ 해제
+
+        private String fileName;
+        private long expectedFileSize = -1;
+        private boolean isSyncDataMode, isRebootMode, isForceUpdateMode;
+        private boolean perBlockAck = false;
+        private int blockSize = BlockSizeTuner.BASE_BLOCK_SIZE; // 헤더 blk로 협상한 블록 크기 (스트리밍 모드에서만 확장)
+        private String contentHash = null; // 헤더의 sha256 (있으면 EOT 시 받은 내용과 비교)
+        private ApkManifestInfo apkManifest = null;
+        private File stagedFile = null; // 헤더의 sha256과 같은 보관본
+        private boolean deltaAccepted = false;
+        private String compression = null; // 확정된 압축 방식, 압축하지 않으면 null
+        private long decodedSize = 0;       // 0보다 크면 델타/압축 전송: 받은 데이터를 풀어서 만들 APK 크기
+        private File deltaBase = null;      // 델타 패치의 기준 파일 (설치된 APK)
+        private PayloadDecoder payloadDecoder = null;
+        private File filePath;
+        private ApkOutputFile fileOutput;
+        private BlockPipeline pipeline = null; // 셀렉터 스레드와 디스크 기록 스레드 사이의 블록 링
+        private boolean firmwareUploadLocked = false;
+        private ApkValidationResult notNeeded = null; // 헤더 판정 결과: 설치가 필요 없음
+        private IOException prepareFailure = null;    // 헤더 판정 중 출력 파일을 열지 못함
+
+        /**
+         * 헤더 해석과 협상 규칙은 블로킹 수신(YModem)과 같고, 이 전송이 지원하지 않는 기능만 끔
+         * (윈도우, 이어받기, 패리티 복구, RESIZE는 블로킹 수신에서만, 설치된 APK는 delta가 있을 때만 조회)
+         */
+        private final YModemHeader header = new YModemHeader() {
+            @Override
+            protected boolean supportsWindow() {
+                return false;
+            }
+
+            @Override
+            protected boolean supportsResume() {
+                return false;
+            }
+
+            @Override
+            protected boolean supportsParity() {
+                return false;
+            }
+
+            @Override
+            protected boolean supportsResize() {
+                return false;
+            }
+
+            @Override
+            protected File getDeltaBase() {
+                return getInstalledApkFile();
+            }
+        };
+
+        private int blockNumber = 0;
+        private int packetNumber = 0;
+        private int totalPacketSize = 0;
+        private long receivedSize = 0;
+        private boolean lastBlockResult = true;
+
+        NioSession(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void start() throws IOException {
+            sendStartSignal();
+        }
+
+        private void sendStartSignal() throws IOException {
+            state = AWAIT_ECHO;
+            deadline = System.currentTimeMillis() + Modem.REQUEST_TIMEOUT;
+            responder.requestStart();
+            LOG.info("1-1. [TX] C");
+        }
+
+        void onReadable() throws IOException {
+            if (readPaused) {
+                return;
+            }
+            if (channel.read(in) < 0) {
+                abort(getServerType() + " Client connection was closed during " + describeState());
+                return;
+            }
+            if (state == DATA) {
+                deadline = System.currentTimeMillis() + Modem.BLOCK_TIMEOUT;
+            }
+
+            in.flip();
+            try {
+                process();
+            } finally {
+                in.compact();
+            }
+        }
+
+        /**
+         * 버퍼에 모인 바이트를 파서에 넣습니다. 파서는 이벤트마다 멈추므로, 상태가 바뀐 뒤 나머지를 이어서 넣습니다
+         */
+        private void process() throws IOException {
+            while (in.hasRemaining() && state != COMPLETED && !readPaused) {
+                if (state == AWAIT_ECHO) {
+                    if (in.get() == 'C') { // 블로킹 수신과 같이 첫 바이트는 에코로 보고 소비
+                        LOG.info("2-2. [RX] C");
+                    }
+                    state = HEADER;
+                    parser.expectHeader();
+                    continue;
+                }
+                if (state == DATA && !pipeline.hasFree(1)) {
+                    pauseReading(); // 기록이 밀리면 이 연결만 읽기를 멈춰 TCP 흐름 제어로 송신 속도를 늦춤
+                    break;
+                }
+                if (parser.feed(in) == 0) {
+                    break; // 완성되지 않은 프레임, 더 읽어야 함
+                }
+            }
+        }
+
+        @Override
+        public void onHeader(byte[] data, int offset, int length) {
+            try {
+                acceptHeader(data, offset, length);
+            } catch (IOException e) {
+                abort(getServerType() + " Socket error occurred: " + e.getMessage());
+            }
+        }
+
+        /**
+         * 읽기를 멈춥니다. 이미 받은 바이트는 수신 버퍼에 남겨 두고 resumeReading에서 이어서 처리합니다
+         */
+        private void pauseReading() {
+            readPaused = true;
+            updateInterestOps();
+        }
+
+        private void resumeReading() throws IOException {
+            readPaused = false;
+            updateInterestOps();
+            deadline = System.currentTimeMillis() + Modem.BLOCK_TIMEOUT;
+            in.flip();
+            try {
+                process();
+            } finally {
+                in.compact();
+            }
+        }
+
+        @Override
+        public void onBlock(int receivedBlockNumber, ByteBuffer data) {
+            int length = data.remaining();
+            try {
+                pipeline.put(data); // process()에서 빈 슬롯을 확인했으므로 기다리지 않음
+                blockStored(length);
+            } catch (IOException e) {
+                abort(getServerType() + " Failed to store packet " + packetNumber + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onBlock(int receivedBlockNumber, byte[] data, int offset, int length) {
+            try {
+                pipeline.put(data, offset, length);
+                blockStored(length);
+            } catch (IOException e) {
+                abort(getServerType() + " Failed to store packet " + packetNumber + ": " + e.getMessage());
+            }
+        }
+
+        private void blockStored(int length) throws IOException {
+            RECORDER.record(sessionId, FlightRecorder.BLOCK_OK, packetNumber, length);
+            receivedSize += length;
+
+            int unit = Math.max(1, (totalPacketSize + 2) / 10);
+            if (packetNumber % unit == 0 || packetNumber + 1 == totalPacketSize) {
+                Logger.logReceivedPacket(length, packetNumber, totalPacketSize);
+            }
+
+            packetNumber++;
+            blockNumber = (blockNumber + 1) & 0xFF;
+            parser.expectBlock(blockNumber);
+            lastBlockResult = true;
+            if (perBlockAck) responder.ack();
+        }
+
+        @Override
+        public void onDuplicate(int receivedBlockNumber) {
+            try {
+                if (state == HEADER || !perBlockAck) {
+                    rejectFrame("5-601. Duplicate of packet " + (packetNumber - 1));
+                    return;
+                }
+                RECORDER.record(sessionId, FlightRecorder.DUPLICATE, packetNumber - 1, 0);
+                countError("5-601. Duplicate of packet " + (packetNumber - 1));
+                responder.ack();
+            } catch (IOException e) {
+                abort(getServerType() + " Socket error occurred: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onBlockError(int error, int receivedBlockNumber) {
+            String message = (error == YModemFrameParser.ERROR_SYNC_LOST) ? "5-602. Block number mismatch: " + receivedBlockNumber + " != " + blockNumber
+                    : (error == YModemFrameParser.ERROR_COMPLEMENT) ? "5-603. Correction value mismatch"
+                    : "5-604. CRC mismatch in packet " + packetNumber + ", Data corrupted";
+            try {
+                if (state == HEADER) {
+                    if (++errorCount >= Modem.MAXERRORS) {
+                        cancel("Transmission aborted, error count exceeded max");
+                        return;
+                    }
+                    LOG.warn("{} (header, error {}/{}, retrying)", message, errorCount, Modem.MAXERRORS);
+                    responder.nak();
+                    return;
+                }
+                if (!perBlockAck) {
+                    rejectFrame(message);
+                    return;
+                }
+                RECORDER.record(sessionId, FlightRecorder.BLOCK_ERROR, packetNumber, 0);
+                countError(message);
+                responder.nak();
+                RECORDER.record(sessionId, FlightRecorder.NAK, packetNumber, 0);
+                lastBlockResult = false;
+            } catch (IOException e) {
+                abort(getServerType() + " Socket error occurred: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onEndOfTransmission() {
+            RECORDER.record(sessionId, FlightRecorder.EOT, packetNumber, receivedSize);
+            LOG.info("6-2. [RX] EOT4 (End of Transmission)");
+            complete(COMPLETE_APK); // 남은 블록 기록과 해시 확인은 작업 스레드에서 (finishUpload)
+        }
+
+        /**
+         * 작업 스레드에서 실행: 기록 링에 남은 블록을 모두 기록하고 해시를 확인한 뒤 EOT에 응답합니다
+         * @return 받은 파일을 APK 검증으로 넘길 수 있으면 true
+         */
+        private boolean finishUpload() throws IOException {
+            try {
+                pipeline.finish();
+                pipeline = null;
+                if (payloadDecoder != null) {
+                    payloadDecoder.finish();
+                    LOG.info("[O] 6-2. Received data decoded: {} bytes written", payloadDecoder.getWrittenSize());
+                }
+            } catch (IOException e) {
+                responder.nak();
+                rejectFile(e.getMessage());
+                return false;
+            }
+            String receivedHash = fileOutput.finishDigest();
+            if (receivedHash != null && !receivedHash.equalsIgnoreCase(contentHash)) {
+                responder.nak(); // 잘못된 이미지는 APK 검증/재부팅 전에 거부
+                rejectFile("6-101. SHA-256 mismatch (expected: " + contentHash + ", received: " + receivedHash + ")");
+                return false;
+            }
+            if (receivedHash != null) {
+                LOG.info("[O] 6-2. SHA-256 verified: {}", receivedHash);
+            }
+
+            LOG.info("6-3. [TX] ACK4 ");
+            responder.ack();
+            responder.ack();
+            LOG.info("5-3. [RX] ACK");
+
+            apkManifest = fileOutput.getManifest();
+            fileOutput.close();
+            fileOutput = null;
+            LOG.info("[O] 7-1. File saved successfully: {} ({} bytes)", filePath.getAbsolutePath(), receivedSize);
+            RECORDER.record(sessionId, FlightRecorder.SESSION_OK, packetNumber, receivedSize);
+            return true;
+        }
+
+        /**
+         * 받은 파일을 지우고 세션을 끝냅니다
+         */
+        private void rejectFile(String reason) {
+            release(); // 파일을 닫은 뒤 삭제
+            if (filePath != null && filePath.exists() && !filePath.delete()) {
+                LOG.error("Failed to delete rejected file: {}", filePath.getPath());
+            }
+            LOG.error(reason);
+        }
+
+        /**
+         * 스트리밍 모드는 EOT 전까지 응답을 읽지 않으므로, 블로킹 수신과 같이 NAK 후 중단합니다
+         */
+        private void rejectFrame(String message) throws IOException {
+            responder.nak();
+            abort(getServerType() + " " + message + " (streaming mode)");
+        }
+
+        /**
+         * 헤더를 해석하고, 판정(PackageManager 조회, 보관본 확인, 출력 파일 열기)은 작업 스레드로 넘깁니다.
+         * 판정이 끝날 때까지 이 연결은 읽지 않으며, 응답은 answerHeader에서 보냅니다
+         */
+        private void acceptHeader(byte[] data, int dataOffset, int dataLength) throws IOException {
+            try {
+                header.parse(new String(data, dataOffset, dataLength, US_ASCII).trim());
+            } catch (IOException e) {
+                cancel(e.getMessage());
+                return;
+            }
+            fileName = header.getFileName();
+            expectedFileSize = header.getExpectedFileSize();
+            isSyncDataMode = header.isSyncDataMode();
+            isRebootMode = header.isRebootMode();
+            isForceUpdateMode = header.isForceUpdateMode();
+            LOG.info("[O] 3-2. Header received successfully");
+
+            state = PREPARING;
+            pauseReading();
+            try {
+                completionExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            prepareUpload();
+                        } finally {
+                            runOnSelector(new Runnable() {
+                                @Override
+                                public void run() {
+                                    answerHeader();
+                                }
+                            });
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                release(); // 서버 종료 중
+            }
+        }
+
+        /**
+         * 작업 스레드에서 실행: 옵션을 협상하고 응답에 필요한 판정을 미리 끝내 둡니다 (세션 상태는 바꾸지 않음)
+         */
+        private void prepareUpload() {
+            header.negotiate(null); // 이어받기를 지원하지 않으므로 저널 경로 없음, delta가 있으면 설치된 APK 조회
+            perBlockAck = header.isAckMode();
+            blockSize = header.getBlockSize();
+            contentHash = header.getContentHash(); // 회신 없이 EOT 시 확인
+            deltaAccepted = header.isDeltaAccepted();
+            deltaBase = header.getAcceptedDeltaBase();
+            compression = header.getCompression();
+            decodedSize = header.getDecodedSize();
+            if (isSyncDataMode || isRebootMode) {
+                return;
+            }
+
+            // 헤더에 pkg/ver가 있으면 APK를 받기 전에 판정 → 설치가 필요 없으면 ACK 대신 NOT_NEEDED로 응답하고 종료
+            notNeeded = checkAnnouncedFirmware(header.getAnnouncedManifest(), isForceUpdateMode);
+            if (notNeeded != null) {
+                return;
+            }
+
+            // 같은 해시의 APK를 이미 보관 중이면 데이터를 받지 않고 보관본으로 검증/재부팅
+            stagedFile = stagingCache.find(contentHash, getOutputFileSize());
+            if (stagedFile == null && header.isEncodingRefused()) {
+                return;
+            }
+
+            firmwareUploadLocked = tryBeginFirmwareUpload();
+            if (!firmwareUploadLocked || stagedFile != null) {
+                return;
+            }
+
+            try {
+                openUpload();
+            } catch (IOException e) {
+                prepareFailure = e;
+            }
+        }
+
+        /**
+         * 출력 파일, 델타/압축 변환기, 기록 링을 준비합니다 (작업 스레드)
+         */
+        private void openUpload() throws IOException {
+            if (!APK_PATH.exists()) APK_PATH.mkdirs();
+            filePath = new File(APK_PATH, fileName);
+            fileOutput = new ApkOutputFile(filePath, getOutputFileSize(), 0, FILE_BUFFER_SIZE); // 마지막 블록의 패딩은 기록하지 않음
+            if (contentHash != null) {
+                fileOutput.startDigest();
+            }
+            fileOutput.startManifestScan();
+            if (deltaAccepted) {
+                payloadDecoder = new DeltaPatchWriter(deltaBase, fileOutput, expectedFileSize, decodedSize);
+            } else if (compression != null) {
+                payloadDecoder = new DeflatedPayloadWriter(fileOutput, expectedFileSize, decodedSize);
+            }
+
+            final ApkOutputFile output = fileOutput;
+            final PayloadDecoder decoder = payloadDecoder;
+            pipeline = new BlockPipeline(new BlockPipeline.BlockWriter() {
+                @Override
+                public void write(byte[] data, int offset, int length) throws IOException {
+                    if (decoder != null) decoder.write(data, offset, length); // 델타/압축 전송: 풀어서 기록
+                    else output.write(data, offset, length);
+                }
+            }, Math.max(BlockPipeline.DEFAULT_CAPACITY * BlockSizeTuner.BASE_BLOCK_SIZE / blockSize, 4), blockSize); // 링 전체 32KB 유지, 최소 4슬롯
+            pipeline.setSpaceListener(new BlockPipeline.SpaceListener() {
+                @Override
+                public void onSpaceAvailable() {
+                    runOnSelector(new Runnable() {
+                        @Override
+                        public void run() {
+                            onPipelineSpace();
+                        }
+                    });
+                }
+            });
+            pipeline.start();
+        }
+
+        /**
+         * 셀렉터 스레드: 작업 스레드의 판정에 따라 헤더에 응답하고 데이터 수신을 시작합니다
+         */
+        private void answerHeader() {
+            if (state != PREPARING) {
+                releaseLater(); // 판정 중에 연결이 끝남 → 작업 스레드가 연 파일/잠금 정리
+                return;
+            }
+            try {
+                if (notNeeded != null) {
+                    responder.send(Modem.NOT_NEEDED);
+                    responder.reply(YModem.OPTION_SKIP + "=" + notNeeded.getUninstallCode());
+                    LOG.info("4-1. [TX] NOT_NEEDED ({}), {}", notNeeded.getUninstallCode(), notNeeded.getComment());
+                    releaseLater();
+                    return;
+                }
+
+                if (stagedFile != null) {
+                    if (!firmwareUploadLocked) {
+                        responder.send(Modem.CAN);
+                        LOG.warn("5-800. Another firmware upload is in progress, [TX] CAN");
+                        releaseLater();
+                        return;
+                    }
+                    responder.send(Modem.ALREADY_STAGED);
+                    LOG.info("4-1. [TX] ALREADY_STAGED ({})", stagedFile.getName());
+                    filePath = new File(APK_PATH, fileName);
+                    complete(COMPLETE_STAGED); // 복사는 작업 스레드에서
+                    return;
+                }
+
+                responder.ack();
+                LOG.info("4-1. [TX] ACK");
+                String reply = header.getReply();
+                if (reply != null) {
+                    responder.reply(reply);
+                    LOG.info("4-2. [TX] Negotiated options: {}", reply);
+                }
+                if (header.isEncodingRefused()) {
+                    responder.send(Modem.CAN);
+                    LOG.warn("5-801. Delta/compressed transfer is not available, [TX] CAN");
+                    releaseLater(); // 송신자는 변환하지 않은 APK로 다시 보냄
+                    return;
+                }
+
+                if (isSyncDataMode) {
+                    LOG.info("handleSyncDataMode Start");
+                    complete(COMPLETE_SYNC);
+                    return;
+                }
+                if (isRebootMode) {
+                    LOG.info("handleRebootMode Start");
+                    complete(COMPLETE_REBOOT);
+                    return;
+                }
+
+                if (!firmwareUploadLocked) {
+                    responder.send(Modem.CAN);
+                    LOG.warn("5-800. Another firmware upload is in progress, [TX] CAN");
+                    releaseLater();
+                    return;
+                }
+                if (prepareFailure != null) {
+                    abort(getServerType() + " Failed to open " + fileName + ": " + prepareFailure.getMessage());
+                    return;
+                }
+
+                LOG.info("5-0. Starting APK data reception...");
+                totalPacketSize = (int) ((expectedFileSize + blockSize - 1) / blockSize); // 협상한 블록 크기 기준 (진행률 로그용)
+                errorCount = 0;
+                blockNumber = 0;
+                parser.setExtendedBlockSize(blockSize > BlockSizeTuner.BASE_BLOCK_SIZE ? blockSize : 0);
+                parser.expectBlock(blockNumber);
+                state = DATA;
+                resumeReading(); // 판정 중에 도착한 블록부터 처리
+            } catch (IOException e) {
+                abort(getServerType() + " Socket error occurred: " + e.getMessage());
+            }
+        }
+
+        /**
+         * 셀렉터 스레드: 가득 찼던 기록 링에 빈 슬롯이 생김 (또는 기록 실패 → 다음 put에서 중단)
+         */
+        private void onPipelineSpace() {
+            if (state != DATA || !readPaused) {
+                return;
+            }
+            try {
+                resumeReading();
+            } catch (IOException e) {
+                abort(getServerType() + " Socket error occurred: " + e.getMessage());
+            }
+        }
+
+        /**
+         * 저장되는 APK의 크기: 델타/압축 전송이면 풀어서 만들 APK 크기, 아니면 헤더의 파일 크기
+         */
+        private long getOutputFileSize() {
+            return decodedSize > 0 ? decodedSize : expectedFileSize;
+        }
+
+        void checkTimeout(long now) throws IOException {
+            if (state == COMPLETED || state == PREPARING || readPaused || now < deadline) { // 멈춘 동안은 송신자를 기다리는 것이 아님
+                return;
+            }
+
+            if (state == AWAIT_ECHO || state == HEADER) {
+                if (++startRetries >= Modem.MAXERRORS) {
+                    cancel("Timeout, no data received from transmitter");
+                    return;
+                }
+                parser.discardPartialFrame();
+                in.clear();
+                sendStartSignal();
+                return;
+            }
+
+            boolean partialFrame = parser.discardPartialFrame() | in.position() > 0; // 프레임 중간 타임아웃 → 손상 블록과 같이 NAK
+            in.clear(); // 수신 버퍼에 남겨 둔 미완성 프레임도 버림
+            if (!perBlockAck) {
+                responder.nak();
+                abort("5-600. Timeout while waiting for packet " + packetNumber);
+                return;
+            }
+
+            // 마지막 응답이 유실됐을 수 있으므로 같은 응답을 다시 보내고 같은 블록을 기다림
+            RECORDER.record(sessionId, FlightRecorder.TIMEOUT, packetNumber, 0);
+            countError("5-600. Timeout while waiting for packet " + packetNumber);
+            if (state == DATA) {
+                if (partialFrame) lastBlockResult = false;
+                responder.send(lastBlockResult ? Modem.ACK : Modem.NAK);
+                deadline = now + Modem.BLOCK_TIMEOUT;
+            }
+        }
+
+        private void countError(String message) throws IOException {
+            LOG.warn("{} (error {}/{}, retrying)", message, errorCount + 1, Modem.MAXERRORS);
+            if (++errorCount >= Modem.MAXERRORS) {
+                cancel("5-700. Transmission aborted, error count exceeded max");
+            }
+        }
+
+        /**
+         * 응답(YModemResponder)을 송신 버퍼에 넣고 보냅니다. 논블로킹 쓰기가 끝나지 않으면 OP_WRITE로 나머지를 보냅니다
+         */
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            if (!channel.isOpen()) return;
+            if (length > out.remaining()) {
+                throw new IOException("Response buffer overflow (" + length + " bytes)");
+            }
+            out.put(data, offset, length);
+            flush();
+        }
+
+        void flush() throws IOException {
+            out.flip();
+            try {
+                channel.write(out);
+            } finally {
+                out.compact();
+            }
+
+            updateInterestOps();
+        }
+
+        private void updateInterestOps() {
+            if (key != null && key.isValid()) {
+                int ops = readPaused ? 0 : SelectionKey.OP_READ;
+                if (out.position() > 0) ops |= SelectionKey.OP_WRITE;
+                key.interestOps(ops);
+            }
+        }
+
+        private void cancel(String reason) throws IOException {
+            responder.cancel();
+            abort(reason);
+        }
+
+        void abort(String reason) {
+            if (state == COMPLETED && completion != 0) {
+                return;
+            }
+            LOG.error(reason);
+            boolean receivingData = (state == DATA);
+            releaseLater();
+            if (receivingData) {
+                RECORDER.record(sessionId, FlightRecorder.SESSION_FAILED, packetNumber, receivedSize);
+                dumpFlightRecorderLater();
+            }
+        }
+
+        /**
+         * 파일 기록은 셀렉터 스레드를 멈추지 않도록 작업 스레드에서
+         */
+        private void dumpFlightRecorderLater() {
+            try {
+                completionExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        dumpFlightRecorder();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 서버 종료 중
+            }
+        }
+
+        /**
+         * 셀렉터에서 해제하고 작업 스레드로 넘길 준비를 합니다 (실제 전환은 handOffCompletedSessions에서)
+         */
+        private void complete(int completion) {
+            this.state = COMPLETED;
+            this.completion = completion;
+            if (key != null) key.cancel();
+            completedSessions.add(this);
+        }
+
+        /**
+         * 작업 스레드에서 실행: 블로킹 스트림으로 수신 이후 단계를 처리합니다
+         */
+        void complete() {
+            try {
+                InputStream inputStream = getInputStream(channel);
+                OutputStream outputStream = getOutputStream(channel);
+
+                if (out.position() > 0) { // 아직 보내지 못한 응답이 있으면 먼저 전송
+                    outputStream.write(out.array(), 0, out.position());
+                    outputStream.flush();
+                    out.clear();
+                }
+
+                if (completion == COMPLETE_SYNC) {
+                    syncData(context, inputStream, outputStream, compression);
+                } else if (completion == COMPLETE_REBOOT) {
+                    Process processStart = Runtime.getRuntime().exec("ssu -c reboot");
+                    processStart.waitFor();
+                } else if (completion == COMPLETE_APK) {
+                    if (finishUpload()) {
+                        completeApkTransfer(filePath, getOutputFileSize(), isForceUpdateMode, apkManifest, contentHash, inputStream, outputStream);
+                    }
+                } else if (completion == COMPLETE_STAGED) {
+                    completeStagedTransfer(stagedFile, contentHash, filePath, isForceUpdateMode, inputStream, outputStream);
+                }
+            } catch (Exception e) {
+                LOG.error("{} YModem 처리 중 오류 발생: {}", getServerType(), e.getMessage());
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * 파일, 펌웨어 업로드 잠금, 연결을 정리합니다 (작업 스레드, 서버 종료 시)
+         */
+        void release() {
+            closeConnection();
+            detachResources().run();
+        }
+
+        /**
+         * 셀렉터 스레드에서 세션을 끝낼 때: 키와 연결은 바로 닫고, 기록 스레드 종료(join)와 파일 닫기는 작업 스레드에서 합니다.
+         * 판정 중(PREPARING)이면 작업 스레드가 파일/잠금을 여는 중이므로, 판정이 끝난 뒤 answerHeader에서 정리합니다.
+         */
+        private void releaseLater() {
+            boolean preparing = (state == PREPARING);
+            closeConnection();
+            if (preparing) {
+                return;
+            }
+            SessionCleanup cleanup = detachResources();
+            if (cleanup.isEmpty()) {
+                return;
+            }
+            try {
+                completionExecutor.execute(cleanup);
+            } catch (RejectedExecutionException e) {
+                cleanup.run(); // 서버 종료 중
+            }
+        }
+
+        private void closeConnection() {
+            state = COMPLETED;
+            if (key != null) key.cancel();
+            closeQuietly(channel);
+        }
+
+        /**
+         * 기록 링, 변환기, 출력 파일, 잠금을 세션에서 떼어 냅니다 (두 번 정리하지 않도록)
+         */
+        private SessionCleanup detachResources() {
+            SessionCleanup cleanup = new SessionCleanup(pipeline, payloadDecoder, fileOutput, firmwareUploadLocked);
+            pipeline = null;
+            payloadDecoder = null;
+            fileOutput = null;
+            firmwareUploadLocked = false;
+            return cleanup;
+        }
+
+        private String describeState() {
+            if (state == AWAIT_ECHO || state == HEADER) return "header reception";
+            return "packet " + packetNumber;
+        }
+    }
+}
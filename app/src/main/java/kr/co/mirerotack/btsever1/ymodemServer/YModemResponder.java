@@ -0,0 +1,103 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * YModem 수신 측 응답(C, ACK, NAK, CAN, 협상 회신) 생성기
+ * 응답 바이트를 만들어 Sink로 넘기기만 하므로, 블로킹 스트림이든 NIO 송신 버퍼든 같은 응답 형식을 사용합니다.
+ * 응답용 배열은 미리 할당해 재사용합니다.
+ */
+public class YModemResponder {
+
+    /**
+     * 응답을 실제로 내보내는 대상 (OutputStream, NIO 송신 버퍼 등)
+     */
+    public interface Sink {
+        void write(byte[] data, int offset, int length) throws IOException;
+    }
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private final Sink sink;
+    private final byte[] single = new byte[1];
+    private final byte[] pair = new byte[2];
+    private final byte[] triple = new byte[3];
+
+    public YModemResponder(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * OutputStream에 쓰고 바로 flush 하는 Sink
+     */
+    public static Sink forStream(final OutputStream outputStream) {
+        return new Sink() {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                outputStream.write(data, offset, length);
+                outputStream.flush();
+            }
+        };
+    }
+
+    /** 전송 시작 요청 ('C') */
+    public void requestStart() throws IOException {
+        send(Modem.START_ACK);
+    }
+
+    public void ack() throws IOException {
+        send(Modem.ACK);
+    }
+
+    public void nak() throws IOException {
+        send(Modem.NAK);
+    }
+
+    /** 윈도우 모드 응답: ACK + 블록 번호(1) */
+    public void ack(int blockNumber) throws IOException {
+        respond(Modem.ACK, blockNumber);
+    }
+
+    /** 윈도우 모드 응답: NAK + 블록 번호(1) */
+    public void nak(int blockNumber) throws IOException {
+        respond(Modem.NAK, blockNumber);
+    }
+
+    /** 전송 취소 (CAN 2번) */
+    public void cancel() throws IOException {
+        pair[0] = Modem.CAN;
+        pair[1] = Modem.CAN;
+        sink.write(pair, 0, 2);
+    }
+
+    /** 협상 회신 한 줄 (예: "win=8;ack=1\n") */
+    public void reply(String line) throws IOException {
+        byte[] data = (line + "\n").getBytes(US_ASCII);
+        sink.write(data, 0, data.length);
+    }
+
+    public void send(byte code) throws IOException {
+        single[0] = code;
+        sink.write(single, 0, 1);
+    }
+
+    public void respond(byte code, int blockNumber) throws IOException {
+        pair[0] = code;
+        pair[1] = (byte) blockNumber;
+        sink.write(pair, 0, 2);
+    }
+
+    /** 블록 크기 변경 알림: RESIZE + 크기/1024(1) + 응답 코드(ACK/NAK) */
+    public void resize(int blockSize, byte code) throws IOException {
+        triple[0] = Modem.RESIZE;
+        triple[1] = (byte) (blockSize / 1024);
+        triple[2] = code;
+        sink.write(triple, 0, 3);
+    }
+
+    public void sendBytes(byte[] data) throws IOException {
+        sink.write(data, 0, data.length);
+    }
+}
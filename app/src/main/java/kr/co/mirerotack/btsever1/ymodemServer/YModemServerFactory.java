@@ -9,6 +9,7 @@ import kr.co.mirerotack.btsever1.model.YModemServerInterface;
 public class YModemServerFactory {
     public enum ServerType {
         TCP,        // TCP 서버
+        TCP_NIO,    // TCP 서버 (Selector 기반 논블로킹, 적은 스레드로 다수 연결 처리)
         BLUETOOTH   // Bluetooth 서버
     }
 
@@ -24,6 +25,8 @@ public class YModemServerFactory {
         switch (serverType) {
             case TCP:
                 return new YModemTCPServerImpl(apkDownloadPath, context);
+            case TCP_NIO:
+                return new YModemNioServerImpl(apkDownloadPath, context);
             case BLUETOOTH:
                 return new YModemBluetoothServerImpl(apkDownloadPath, context);
             default:
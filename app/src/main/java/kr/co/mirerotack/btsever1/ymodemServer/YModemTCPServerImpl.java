@@ -25,8 +25,10 @@ public class YModemTCPServerImpl extends AbstractYModemServer {
     private static final String TAG = "YModemTcpServer"; // 로그 출력용 태그
     private static final int SEND_RECEIVE_BUFFER_SIZE = 32 * 1024; // 송수신 버퍼 크기 (100KB)
 
-    private Socket socket; // 클라이언트와 연결된 TCP 소켓
+    private static final int TRIGGER_PORT_OFFSET = 1; // 트리거 데이터 전용 포트 = YModem 포트 + 1 (예: 55557)
+
     private ServerSocket serverSocket; // 클라이언트 연결을 대기하는 TCP 서버 소켓
+    private ServerSocket triggerServerSocket; // 트리거 데이터 구독 연결을 대기하는 TCP 서버 소켓
 
     /**
      * TCP 서버 생성자
@@ -46,6 +48,15 @@ public class YModemTCPServerImpl extends AbstractYModemServer {
         return "TCP";
     }
 
+    /**
+     * TCP는 연결마다 독립된 소켓을 가지므로 세션을 동시에 처리합니다
+     * (펌웨어 업로드 중에도 HMI의 동기화 요청이 대기하지 않음)
+     */
+    @Override
+    protected boolean supportsConcurrentSessions() {
+        return true;
+    }
+
     /**
      * TCP 서버 소켓을 생성하고 지정된 포트에 바인딩합니다
      * @param port 바인딩할 포트 번호 (일반적으로 55556 사용)
@@ -71,11 +82,52 @@ public class YModemTCPServerImpl extends AbstractYModemServer {
             throw new IOException("TCP Server socket is not ready");
         }
 
-        socket = serverSocket.accept(); // 클라이언트 연결 대기 (블로킹 호출)
+        Socket socket = serverSocket.accept(); // 클라이언트 연결 대기 (블로킹 호출), 연결별 소켓은 세션이 소유
         configureSocket(socket); // 소켓 옵션 설정 (버퍼 크기 등)
         return socket; // 연결된 소켓 반환
     }
 
+    /**
+     * 트리거 데이터 전용 서버 소켓을 YModem 포트 + 1에 바인딩합니다
+     * @param port YModem 서버 포트
+     * @return 항상 true (TCP는 트리거 데이터를 지원)
+     * @throws IOException 포트 바인딩 실패 시 예외 발생
+     */
+    @Override
+    protected boolean startTriggerSocket(int port) throws IOException {
+        closeTriggerSocket();
+        triggerServerSocket = new ServerSocket();
+        triggerServerSocket.setReuseAddress(true);
+        triggerServerSocket.bind(new InetSocketAddress("0.0.0.0", port + TRIGGER_PORT_OFFSET));
+        logMessage("[O] TCP Trigger port binding successful on " + getLocalIpAddress() + ":" + (port + TRIGGER_PORT_OFFSET));
+        return true;
+    }
+
+    /**
+     * 트리거 데이터 구독 연결을 수락합니다 (YModem 연결과 별도의 서버 소켓 사용)
+     * @return 연결된 클라이언트 Socket 객체
+     * @throws IOException 트리거 서버 소켓 상태 이상 또는 연결 수락 실패 시 예외 발생
+     */
+    @Override
+    protected Object acceptTriggerConnection() throws IOException {
+        if (triggerServerSocket == null || triggerServerSocket.isClosed()) {
+            throw new IOException("TCP Trigger socket is not ready");
+        }
+        return triggerServerSocket.accept();
+    }
+
+    @Override
+    protected void closeTriggerSocket() {
+        try {
+            if (triggerServerSocket != null && !triggerServerSocket.isClosed()) {
+                triggerServerSocket.close();
+                logMessage("[O] TCP trigger socket closed successfully");
+            }
+        } catch (IOException e) {
+            logMessage("[X] Failed to close TCP trigger socket: " + e.getMessage());
+        }
+    }
+
     /**
      * 클라이언트 소켓에서 입력 스트림을 획득합니다
      * @param clientConnection 클라이언트 연결 객체 (Socket으로 캐스팅됨)
@@ -109,6 +161,22 @@ public class YModemTCPServerImpl extends AbstractYModemServer {
         return ((Socket) clientConnection).getOutputStream();
     }
 
+    /**
+     * TCP 소켓의 SO_TIMEOUT으로 읽기 데드라인을 제어합니다
+     * @param clientConnection 클라이언트 연결 객체 (Socket으로 캐스팅됨)
+     * @return SO_TIMEOUT을 설정하는 타임아웃 제어 객체
+     */
+    @Override
+    protected FrameReader.ReadTimeoutControl getReadTimeoutControl(Object clientConnection) {
+        final Socket socket = (Socket) clientConnection;
+        return new FrameReader.ReadTimeoutControl() {
+            @Override
+            public void setReadTimeout(int timeoutMillis) throws IOException {
+                socket.setSoTimeout(timeoutMillis);
+            }
+        };
+    }
+
     /**
      * 클라이언트 연결을 안전하게 종료합니다
      * @param clientConnection 종료할 클라이언트 연결 객체
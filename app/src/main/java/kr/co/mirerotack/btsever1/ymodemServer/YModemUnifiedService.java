@@ -8,6 +8,7 @@ import android.content.SharedPreferences;
 import android.os.IBinder;
 
 import java.io.File;
+import java.io.IOException;
 
 import kr.co.mirerotack.btsever1.model.YModemServerInterface;
 import kr.co.mirerotack.btsever1.utils.Logger;
@@ -43,14 +44,16 @@ public class YModemUnifiedService extends Service {
 
         // 설정에 따라 서버 타입 결정 (예: SharedPreferences, 설정 파일 등)
         currentServerType = getServerTypeFromConfig();
+        applyLogLevels(getSharedPreferences("server_config", MODE_PRIVATE).getString("log_levels", ""));
 
         logMessage("[O] YModemUnifiedService has been started with " + currentServerType + " server");
 
         // 팩토리를 통해 서버 생성 - 타입만 바꾸면 전체 로직이 변경됨!
         yModemServer = YModemServerFactory.createServer(currentServerType, filesDir, getApplicationContext());
+        applySessionLimit(yModemServer);
 
-        // 서버 시작 (TCP: 포트 55556, Bluetooth: 채널 1)
-        int portOrChannel = (currentServerType == YModemServerFactory.ServerType.TCP) ? 55556 : 1;
+        // 서버 시작 (TCP/TCP_NIO: 포트 55556, Bluetooth: 채널 1)
+        int portOrChannel = (currentServerType == YModemServerFactory.ServerType.BLUETOOTH) ? 1 : 55556;
         yModemServer.startServer(portOrChannel);
     }
 
@@ -67,11 +70,42 @@ public class YModemUnifiedService extends Service {
 
         if ("BLUETOOTH".equals(serverType)) {
             return YModemServerFactory.ServerType.BLUETOOTH;
+        } else if ("TCP_NIO".equals(serverType)) {
+            return YModemServerFactory.ServerType.TCP_NIO;
         } else {
             return YModemServerFactory.ServerType.TCP;
         }
     }
 
+    /**
+     * 설정의 동시 세션 수 제한을 서버에 적용합니다 (TCP만 동시 세션을 사용)
+     *
+     * @param server 시작 전의 서버 인스턴스
+     */
+    private void applySessionLimit(YModemServerInterface server) {
+        SharedPreferences prefs = getSharedPreferences("server_config", MODE_PRIVATE);
+        int maxSessions = prefs.getInt("max_sessions", AbstractYModemServer.DEFAULT_MAX_CONCURRENT_SESSIONS);
+
+        if (server instanceof AbstractYModemServer) {
+            ((AbstractYModemServer) server).setMaxConcurrentSessions(maxSessions);
+        }
+    }
+
+    /**
+     * 하위 시스템별 로그 레벨을 적용합니다 (예: "modem=TRACE,ymodem=DEBUG", "*"는 전체)
+     *
+     * @param levels 채널=레벨 목록, 비어 있으면 기본값(INFO) 유지
+     * @return 형식이 올바르면 true
+     */
+    private boolean applyLogLevels(String levels) {
+        if (levels == null || levels.trim().isEmpty()) {
+            return true;
+        }
+        boolean valid = Logger.setLevels(levels);
+        logMessage((valid ? "[O] Log levels: " : "[X] Invalid log levels ignored in '" + levels + "', now: ") + Logger.getLevels());
+        return valid;
+    }
+
     /**
      * 런타임에 서버 타입을 변경하는 메서드
      *
@@ -93,8 +127,9 @@ public class YModemUnifiedService extends Service {
         // 새로운 서버 생성 및 시작
         currentServerType = newServerType;
         yModemServer = YModemServerFactory.createServer(currentServerType, filesDir, getApplicationContext());
+        applySessionLimit(yModemServer);
 
-        int portOrChannel = (currentServerType == YModemServerFactory.ServerType.TCP) ? 55556 : 1;
+        int portOrChannel = (currentServerType == YModemServerFactory.ServerType.BLUETOOTH) ? 1 : 55556;
         yModemServer.startServer(portOrChannel);
 
         // 설정 저장
@@ -119,6 +154,29 @@ public class YModemUnifiedService extends Service {
             }
         }
 
+        // Intent로 로그 레벨 변경 (예: adb shell am startservice ... --es log_levels "modem=TRACE"), 다음 시작에도 유지
+        if (intent != null && intent.hasExtra("log_levels")) {
+            String levels = intent.getStringExtra("log_levels");
+            if (applyLogLevels(levels)) {
+                getSharedPreferences("server_config", MODE_PRIVATE).edit().putString("log_levels", levels).apply();
+            }
+        }
+
+        // Intent로 비행 기록기 내보내기 (예: adb shell am startservice ... --ez dump_flight_recorder true)
+        if (intent != null && intent.getBooleanExtra("dump_flight_recorder", false)) {
+            try {
+                File dump = FlightRecorder.shared().dumpToDirectory(new File(Logger.logDirectory));
+                logMessage("[O] Flight recorder dumped: " + dump.getPath());
+            } catch (IOException e) {
+                logMessage("[X] Failed to dump flight recorder: " + e.getMessage());
+            }
+        }
+
+        // Intent로 보관 중인 로그 내보내기 (예: adb shell am startservice ... --ez export_logs true → files/log_export.txt.gz)
+        if (intent != null && intent.getBooleanExtra("export_logs", false)) {
+            exportLogsInBackground();
+        }
+
         // 앱이 종료되어도 서비스가 자동 재시작되지 않음
         // 이미 download_apk 서비스가 1분 마다 확인하고 자동 재시작하고 있음.
         // 그리고 여기서 자동 재시작 시켜도 소켓이 초기화가 안돼서 의미가 없음.
@@ -139,6 +197,23 @@ public class YModemUnifiedService extends Service {
         logMessage("[X] [SERVICE] " + currentServerType + " server terminated");
     }
 
+    /**
+     * 압축된 세그먼트를 풀어 다시 압축하므로 메인 스레드를 막지 않도록 별도 스레드에서
+     */
+    private void exportLogsInBackground() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    File export = Logger.exportLogs();
+                    logMessage("[O] Logs exported: " + export.getPath() + " (" + export.length() + " bytes)");
+                } catch (IOException e) {
+                    logMessage("[X] Failed to export logs: " + e.getMessage());
+                }
+            }
+        }, "log-export").start();
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return null; // 바인딩 불필요한 Foreground Service
@@ -0,0 +1,56 @@
+package kr.co.mirerotack.btsever1.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {} 치환과, 꺼진 레벨에서는 메시지를 만들지 않는지, 채널 레벨을 문자열로 바꿀 수 있는지 확인합니다.
+ */
+public class LogChannelTest {
+
+    @Test
+    public void placeholders_areReplacedInOrder() {
+        assertEquals("packet 3 of 10", LogChannel.format("packet {} of {}", 3, 10));
+        assertEquals("a {} b", LogChannel.format("a {} b"));   // 인자가 모자라면 그대로
+        assertEquals("x=1", LogChannel.format("x={}", 1, 2)); // 남는 인자는 무시
+    }
+
+    @Test
+    public void disabledLevel_doesNotFormat() {
+        LogChannel channel = Logger.channel("test-lazy");
+        Logger.setLevels("test-lazy=WARN");
+        CountingArgument argument = new CountingArgument();
+
+        channel.debug("block {}", argument);
+        channel.info("block {} {}", argument, argument);
+        assertEquals(0, argument.formatted);
+        assertFalse(channel.isDebugEnabled());
+
+        channel.warn("block {}", argument);
+        assertEquals(1, argument.formatted);
+    }
+
+    @Test
+    public void levelSpec_appliesPerChannel() {
+        assertTrue(Logger.setLevels("test-a=TRACE, test-b=error"));
+        assertTrue(Logger.channel("test-a").isTraceEnabled());
+        assertEquals(LogChannel.ERROR, Logger.channel("test-b").getLevel());
+
+        assertFalse(Logger.setLevels("test-a=LOUD,test-c=DEBUG")); // 잘못된 항목만 무시
+        assertTrue(Logger.channel("test-a").isTraceEnabled());
+        assertEquals(LogChannel.DEBUG, Logger.channel("test-c").getLevel());
+    }
+
+    private static class CountingArgument {
+        int formatted = 0;
+
+        @Override
+        public String toString() {
+            formatted++;
+            return "arg";
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package kr.co.mirerotack.btsever1.utils;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 링 버퍼가 순서를 유지하고 가득 차면 기다리지 않고 버리는지, 캐시한 타임스탬프가 SimpleDateFormat과 같은지 확인합니다.
+ */
+public class LogRingTest {
+
+    @Test
+    public void overflow_dropsWithoutBlocking() throws InterruptedException {
+        LogRing ring = new LogRing(4, 2);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i, "m" + i, false));
+        }
+        assertFalse(ring.offer(4, "m4", false));
+        assertEquals(1, ring.takeDropped());
+
+        long[] times = new long[3];
+        String[] messages = new String[3];
+        assertEquals(3, ring.drainTo(times, messages, 0));
+        assertEquals("m2", messages[2]);
+
+        assertTrue(ring.offer(5, "m5", false)); // 슬롯을 돌아서 재사용
+        ring.close();
+        assertEquals(2, ring.drainTo(times, messages, 0));
+        assertEquals("m3", messages[0]);
+        assertEquals(5L, times[1]);
+        assertEquals(-1, ring.drainTo(times, messages, 0));
+    }
+
+    @Test
+    public void urgentMessage_wakesWriter() throws InterruptedException {
+        LogRing ring = new LogRing(16, 8);
+        ring.offer(0, "[X] failure", true);
+
+        long start = System.currentTimeMillis();
+        assertEquals(1, ring.drainTo(new long[16], new String[16], 10000));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void cachedTimestamp_matchesSimpleDateFormat() {
+        SimpleDateFormat expected = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        LogTimestamp clock = new LogTimestamp();
+        long base = 1760000000000L;
+        long[] offsets = {0, 0, 5, 99, 999, 1000, 1007, 61012};
+        for (long offset : offsets) {
+            assertEquals(expected.format(new Date(base + offset)), clock.format(base + offset));
+        }
+    }
+}
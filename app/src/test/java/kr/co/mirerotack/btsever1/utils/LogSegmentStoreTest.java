@@ -0,0 +1,151 @@
+package kr.co.mirerotack.btsever1.utils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 세그먼트가 크기에 따라 교체되고, 전체 크기를 넘으면 오래된 것부터 지워지며, 잘라내지 못한 세그먼트가 정리되는지,
+ * 교체한 세그먼트가 압축되어 압축된 크기로 보관되고 원래 텍스트로 읽히는지, NUL이 들어간 줄도 기록한 길이까지 읽히는지 확인합니다.
+ */
+public class LogSegmentStoreTest {
+    private static final int SEGMENT_SIZE = 1024;
+    private static final long ONE_DAY = 24L * 60 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot();
+    }
+
+    @Test
+    public void fullSegment_rotatesAndKeepsRetention() throws IOException {
+        LogSegmentStore store = new LogSegmentStore(directory, "test", SEGMENT_SIZE, ONE_DAY, 3 * SEGMENT_SIZE);
+        store.open();
+        String line = "[2026-01-01 00:00:00.000] 5-2. [RX] Progress: 10.0% | Packet Number: 1\n"; // 73바이트
+        for (int i = 0; i < 100; i++) {
+            store.append(line);
+        }
+        store.close();
+
+        File[] segments = store.listSegments();
+        assertEquals(3, segments.length); // 새 세그먼트를 열 때 보관 크기를 넘는 오래된 세그먼트 삭제
+        long total = 0;
+        for (File segment : segments) {
+            assertTrue(segment.length() <= SEGMENT_SIZE);
+            assertEquals(0, segment.length() % line.length()); // 줄이 세그먼트 경계에서 잘리지 않음
+            total += segment.length();
+        }
+        assertTrue(total <= 3 * SEGMENT_SIZE);
+        assertEquals(segments[segments.length - 1], store.getCurrentFile());
+    }
+
+    @Test
+    public void unfinishedSegment_isTrimmedOnOpen() throws IOException {
+        File crashed = new File(directory, "test_20260101_000000.txt");
+        RandomAccessFile raf = new RandomAccessFile(crashed, "rw");
+        raf.write("line 1\nline 2\n".getBytes(Charset.forName("US-ASCII")));
+        raf.setLength(SEGMENT_SIZE); // 매핑된 채로 종료되어 나머지가 0x00
+        raf.close();
+
+        LogSegmentStore store = new LogSegmentStore(directory, "test", SEGMENT_SIZE, ONE_DAY, 10 * SEGMENT_SIZE);
+        store.open();
+        store.close();
+
+        assertEquals(14, crashed.length());
+        assertEquals(0, store.getCurrentFile().length()); // 기록하지 않은 세그먼트는 0바이트로 닫힘
+    }
+
+    @Test
+    public void rotatedSegments_areCompressedAndReadBack() throws Exception {
+        LogSegmentStore store = new LogSegmentStore(directory, "test", SEGMENT_SIZE, ONE_DAY, 3 * SEGMENT_SIZE);
+        store.enableCompression();
+        store.open();
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            store.append(String.format(Locale.US, "[O] line %06d\n", i)); // 16바이트
+            if (i % 64 == 0) {
+                assertTrue(store.awaitCompression(10000)); // 압축이 교체를 따라가도록 (실제 로그는 세그먼트 하나가 수 시간)
+            }
+        }
+        assertTrue(store.awaitCompression(10000));
+
+        File[] segments = store.listSegments();
+        for (int i = 0; i < segments.length - 1; i++) {
+            assertTrue(segments[i].getName(), LogSegmentStore.isCompressed(segments[i]));
+        }
+        assertFalse(LogSegmentStore.isCompressed(segments[segments.length - 1])); // 기록 중인 세그먼트
+
+        // 기록 중인 세그먼트까지 이어서 읽으면 마지막 줄까지 빠짐없이 이어짐
+        BufferedReader reader = new BufferedReader(new InputStreamReader(store.openLogs(), Charset.forName("UTF-8")));
+        String line;
+        int first = -1, next = -1;
+        while ((line = reader.readLine()) != null) {
+            int number = Integer.parseInt(line.substring("[O] line ".length()));
+            if (first < 0) {
+                first = number;
+            } else {
+                assertEquals(next, number);
+            }
+            next = number + 1;
+        }
+        reader.close();
+        store.close();
+
+        assertEquals(count, next);
+        assertTrue((count - first) * 16 > 3 * SEGMENT_SIZE); // 원본 크기로 보관할 때보다 긴 기간을 보관
+    }
+
+    @Test
+    public void nulInLine_isEscapedAndReadBackFromLiveSegment() throws IOException {
+        LogSegmentStore store = new LogSegmentStore(directory, "test", SEGMENT_SIZE, ONE_DAY, 10 * SEGMENT_SIZE);
+        store.open();
+        store.append("[O] Received header: fw.apk\u00005220\u00000\u0000win=4\n"); // YModem 헤더는 NUL로 구분
+        store.append("[O] next\n");
+        String expected = "[O] Received header: fw.apk\\05220\\00\\0win=4\n[O] next\n";
+
+        assertEquals(SEGMENT_SIZE, store.getCurrentFile().length()); // 기록 중인 세그먼트 (뒷부분 0x00)
+        assertEquals(expected, readAll(store.openLogs())); // 기록한 길이까지, 다음 줄도 빠짐없이
+
+        // 닫지 않고 종료된 세그먼트는 다음 open에서 이스케이프한 텍스트 끝까지 잘라냄
+        File crashed = store.getCurrentFile();
+        LogSegmentStore next = new LogSegmentStore(directory, "test", SEGMENT_SIZE, ONE_DAY, 10 * SEGMENT_SIZE);
+        next.open();
+        next.close();
+        assertEquals(expected.length(), crashed.length());
+        assertEquals(expected, readAll(LogSegmentStore.openSegment(crashed)));
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        try {
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(out.toByteArray(), Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,79 @@
+package kr.co.mirerotack.btsever1.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * slicing-by-8 계산이 바이트 단위 계산과 같은 값을 내는지, 나누어 계산해도 같은지 확인합니다.
+ */
+public class YModemCRC16Test {
+
+    @Test
+    public void checkValue_matchesXmodemVector() {
+        byte[] data = "123456789".getBytes(Charset.forName("US-ASCII"));
+        assertEquals(0x31C3, YModemCRC16.update(0, data, 0, data.length));
+        assertEquals(0x31C3L, new YModemCRC16().calcCRC(data));
+    }
+
+    @Test
+    public void randomRanges_matchBytewise() {
+        Random random = new Random(9);
+        byte[] data = new byte[1100];
+        random.nextBytes(data);
+
+        for (int i = 0; i < 500; i++) {
+            int offset = random.nextInt(64);
+            int length = random.nextInt(data.length - offset);
+            assertEquals(bytewise(data, offset, length), YModemCRC16.update(0, data, offset, length));
+        }
+    }
+
+    @Test
+    public void splitUpdate_equalsWhole() {
+        byte[] data = new byte[1024];
+        new Random(1).nextBytes(data);
+        int whole = YModemCRC16.update(0, data, 0, data.length);
+
+        for (int split = 0; split <= data.length; split += 37) {
+            int crc = YModemCRC16.update(0, data, 0, split);
+            assertEquals(whole, YModemCRC16.update(crc, data, split, data.length - split));
+        }
+    }
+
+    @Test
+    public void byteBuffers_matchArray() {
+        byte[] data = new byte[1029];
+        new Random(2).nextBytes(data);
+        int expected = YModemCRC16.update(0, data, 3, 1024);
+
+        ByteBuffer heap = ByteBuffer.wrap(data, 3, 1024);
+        assertEquals(expected, YModemCRC16.update(0, heap));
+        assertEquals(1027, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).position(3).limit(1027);
+        assertEquals(expected, YModemCRC16.update(0, direct));
+        assertEquals(1027, direct.position());
+
+        direct.order(ByteOrder.LITTLE_ENDIAN).position(3);
+        assertEquals(expected, YModemCRC16.update(0, direct));
+    }
+
+    private static int bytewise(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = ((crc & 0x8000) != 0) ? ((crc << 1) ^ 0x1021) : (crc << 1);
+            }
+            crc &= 0xFFFF;
+        }
+        return crc;
+    }
+}
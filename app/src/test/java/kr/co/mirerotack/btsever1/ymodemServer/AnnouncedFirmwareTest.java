@@ -0,0 +1,164 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import android.content.pm.PackageInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+import kr.co.mirerotack.btsever1.model.ApkValidationResult;
+import kr.co.mirerotack.btsever1.model.UninstallResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 헤더의 pkg/ver를 읽어 데이터를 받기 전에 설치 필요 여부를 판정하고,
+ * 필요 없으면 ACK 대신 NOT_NEEDED + "skip=<사유>\n"으로 응답하는지 확인합니다.
+ */
+public class AnnouncedFirmwareTest {
+    private static final String PACKAGE_NAME = "kr.co.mirerotack.rtu";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private TestServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot();
+        server = new TestServer(directory, installed(PACKAGE_NAME, 7));
+    }
+
+    @Test
+    public void pkgAndVer_areAnnounced() throws IOException {
+        ApkManifestInfo announced = parse("pkg= " + PACKAGE_NAME + " \u0000ver=12");
+
+        assertNotNull(announced);
+        assertEquals(PACKAGE_NAME, announced.getPackageName());
+        assertEquals(12, announced.getVersionCode());
+    }
+
+    @Test
+    public void missingOrInvalidVer_announcesNothing() throws IOException {
+        assertNull(parse("pkg=" + PACKAGE_NAME));
+        assertNull(parse("ver=12"));
+        assertNull(parse("pkg=" + PACKAGE_NAME + "\u0000ver=12a"));
+        assertNull(parse("pkg=\u0000ver=12"));
+    }
+
+    @Test
+    public void sameVersion_isAnsweredWithNotNeededAndSkipCode() throws IOException {
+        ApkValidationResult result = server.checkAnnouncedFirmware(parse("pkg=" + PACKAGE_NAME + "\u0000ver=7"), false);
+
+        assertNotNull(result);
+        assertEquals(UninstallResult.ALREADY_LATEST_VERSION, result.getUninstallCode());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        server.sendNotNeeded(out, result);
+        assertEquals("\u0016skip=ALREADY_LATEST_VERSION\n", new String(out.toByteArray(), Charset.forName("US-ASCII")));
+    }
+
+    @Test
+    public void otherPackageWithoutForce_isNotNeeded() throws IOException {
+        ApkValidationResult result = server.checkAnnouncedFirmware(parse("pkg=kr.co.mirerotack.other\u0000ver=9"), false);
+
+        assertNotNull(result);
+        assertEquals(UninstallResult.DIFFRENT_PACKAGE_NAME_NOT_FORCE, result.getUninstallCode());
+    }
+
+    @Test
+    public void newerVersionOrForceUpdate_isReceived() throws IOException {
+        assertNull(server.checkAnnouncedFirmware(parse("pkg=" + PACKAGE_NAME + "\u0000ver=8"), false));
+        assertNull(server.checkAnnouncedFirmware(parse("pkg=" + PACKAGE_NAME + "\u0000ver=7"), true));
+        assertNull(server.checkAnnouncedFirmware(null, false)); // pkg/ver가 없으면 평소대로 수신
+    }
+
+    private static ApkManifestInfo parse(String options) throws IOException {
+        YModemHeader header = new YModemHeader();
+        header.parse("fw.apk\u00001000\u00000\u00000\u00000\u0000" + options);
+        return header.getAnnouncedManifest();
+    }
+
+    private static PackageInfo installed(String packageName, int versionCode) {
+        PackageInfo info = new PackageInfo();
+        info.packageName = packageName;
+        info.versionCode = versionCode;
+        return info;
+    }
+
+    /**
+     * 연결 없이 판정만 확인하는 서버 (설치된 앱 정보를 PackageManager 대신 직접 지정)
+     */
+    private static class TestServer extends AbstractYModemServer {
+        private final PackageInfo installedPackage;
+
+        TestServer(File directory, PackageInfo installedPackage) {
+            super(directory, null);
+            this.installedPackage = installedPackage;
+        }
+
+        @Override
+        protected PackageInfo getInstalledPackage() {
+            return installedPackage;
+        }
+
+        @Override
+        protected String getServerType() {
+            return "TEST";
+        }
+
+        @Override
+        protected void startServerSocket(int port) {
+        }
+
+        @Override
+        protected Object acceptClientConnection() throws IOException {
+            throw new IOException("not connected");
+        }
+
+        @Override
+        protected InputStream getInputStream(Object clientConnection) throws IOException {
+            throw new IOException("not connected");
+        }
+
+        @Override
+        protected OutputStream getOutputStream(Object clientConnection) throws IOException {
+            throw new IOException("not connected");
+        }
+
+        @Override
+        protected void closeClientConnection(Object clientConnection) {
+        }
+
+        @Override
+        protected String getClientInfo(Object clientConnection) {
+            return "test";
+        }
+
+        @Override
+        protected boolean isConnected(Object clientConnection) {
+            return false;
+        }
+
+        @Override
+        public void closeExistingServerSocket() {
+        }
+
+        @Override
+        public boolean isRunning() {
+            return false;
+        }
+    }
+}
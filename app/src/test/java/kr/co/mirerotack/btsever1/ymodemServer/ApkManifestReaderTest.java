@@ -0,0 +1,156 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import kr.co.mirerotack.btsever1.model.ApkManifestInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 블록 단위로 나누어 들어오는 APK(ZIP)에서 매니페스트의 package/versionCode를 읽는지 확인합니다.
+ */
+public class ApkManifestReaderTest {
+    private static final String PACKAGE_NAME = "kr.co.mirerotack.smartrtu";
+
+    @Test
+    public void deflatedManifestFirst_isDecodedFromChunks() throws IOException {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(zip);
+        out.putNextEntry(new ZipEntry("AndroidManifest.xml")); // 압축 + 데이터 디스크립터
+        out.write(buildManifest(PACKAGE_NAME, 1234));
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("classes.dex"));
+        out.write(new byte[4000]);
+        out.closeEntry();
+        out.close();
+
+        ApkManifestReader reader = new ApkManifestReader();
+        byte[] data = zip.toByteArray();
+        for (int offset = 0; offset < data.length; offset += 100) {
+            reader.update(data, offset, Math.min(100, data.length - offset));
+        }
+
+        ApkManifestInfo info = reader.getResult();
+        assertEquals(PACKAGE_NAME, info.getPackageName());
+        assertEquals(1234, info.getVersionCode());
+    }
+
+    @Test
+    public void storedEntriesBeforeManifest_areSkipped() throws IOException {
+        byte[] dex = new byte[5000];
+        new Random(4).nextBytes(dex);
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(zip);
+        putStored(out, "classes.dex", dex);
+        putStored(out, "AndroidManifest.xml", buildManifest(PACKAGE_NAME, 7));
+        out.close();
+
+        byte[] data = zip.toByteArray();
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+
+        ApkManifestReader reader = new ApkManifestReader();
+        for (int offset = 0; offset < data.length; offset += 1024) {
+            direct.limit(Math.min(offset + 1024, data.length)).position(offset);
+            reader.update(direct);
+            assertEquals(offset, direct.position()); // position은 바꾸지 않음
+        }
+        assertEquals(7, reader.getResult().getVersionCode());
+    }
+
+    @Test
+    public void unknownEntrySize_fallsBack() throws IOException {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(zip);
+        out.putNextEntry(new ZipEntry("classes.dex")); // 크기를 데이터 뒤에 기록 → 건너뛸 수 없음
+        out.write(new byte[100]);
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+        out.write(buildManifest(PACKAGE_NAME, 1));
+        out.closeEntry();
+        out.close();
+
+        ApkManifestReader reader = new ApkManifestReader();
+        byte[] data = zip.toByteArray();
+        reader.update(data, 0, data.length);
+
+        assertTrue(reader.isDone());
+        assertNull(reader.getResult());
+    }
+
+    private static void putStored(ZipOutputStream out, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    /**
+     * <manifest android:versionCode="..." package="..."/> 바이너리 XML (UTF-16 문자열 풀 + 리소스 맵)
+     */
+    private static byte[] buildManifest(String packageName, int versionCode) {
+        String[] strings = {"versionCode", "package", "manifest", packageName};
+
+        ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        int[] offsets = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            offsets[i] = stringData.size();
+            writeShort(stringData, strings[i].length());
+            for (char c : strings[i].toCharArray()) {
+                writeShort(stringData, c);
+            }
+            writeShort(stringData, 0);
+        }
+        while (stringData.size() % 4 != 0) {
+            stringData.write(0);
+        }
+
+        int poolHeader = 28;
+        int poolSize = poolHeader + offsets.length * 4 + stringData.size();
+        int mapSize = 8 + 4;
+        int elementSize = 16 + 20 + 2 * 20;
+        int total = 8 + poolSize + mapSize + elementSize;
+
+        ByteBuffer xml = ByteBuffer.allocate(total).order(ByteOrder.LITTLE_ENDIAN);
+        xml.putShort((short) 0x0003).putShort((short) 8).putInt(total);
+
+        xml.putShort((short) 0x0001).putShort((short) poolHeader).putInt(poolSize)
+                .putInt(strings.length).putInt(0).putInt(0).putInt(poolHeader + offsets.length * 4).putInt(0);
+        for (int offset : offsets) {
+            xml.putInt(offset);
+        }
+        xml.put(stringData.toByteArray());
+
+        xml.putShort((short) 0x0180).putShort((short) 8).putInt(mapSize).putInt(0x0101021b);
+
+        xml.putShort((short) 0x0102).putShort((short) 16).putInt(elementSize).putInt(1).putInt(-1);
+        xml.putInt(-1).putInt(2).putShort((short) 20).putShort((short) 20).putShort((short) 2)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        xml.putInt(-1).putInt(0).putInt(-1).putShort((short) 8).put((byte) 0).put((byte) 0x10).putInt(versionCode);
+        xml.putInt(-1).putInt(1).putInt(3).putShort((short) 8).put((byte) 0).put((byte) 0x03).putInt(3);
+        return xml.array();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+}
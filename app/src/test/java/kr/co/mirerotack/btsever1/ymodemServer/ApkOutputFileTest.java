@@ -0,0 +1,101 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 마지막 블록의 패딩을 기록하지 않는지, 끊긴 전송은 받은 크기로 줄여서 닫는지 확인합니다.
+ */
+public class ApkOutputFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile("firmware.apk");
+    }
+
+    @Test
+    public void finalBlockPadding_isNotWritten() throws IOException {
+        byte[] block = new byte[1024];
+        Arrays.fill(block, (byte) 0x1A);
+
+        ApkOutputFile output = new ApkOutputFile(file, 2500, 0, 1000);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < (i < 2 ? 1024 : 452); j++) {
+                block[j] = (byte) (i + j);
+            }
+            output.write(block, 0, block.length);
+        }
+        output.close();
+
+        byte[] content = TestFiles.read(file);
+        assertEquals(2500, content.length);
+        assertEquals((byte) (2 + 451), content[2499]);
+    }
+
+    @Test
+    public void interruptedTransfer_isTruncatedAndResumable() throws IOException {
+        byte[] block = new byte[1024];
+        Arrays.fill(block, (byte) 7);
+
+        ApkOutputFile output = new ApkOutputFile(file, 10 * 1024, 0, 4096);
+        output.write(block, 0, block.length);
+        output.write(block, 0, block.length);
+        output.close();
+        assertEquals(2048, file.length());
+
+        Arrays.fill(block, (byte) 9);
+        output = new ApkOutputFile(file, 3 * 1024, 1024, 4096); // 1024 바이트까지만 저널에 기록된 경우
+        output.write(block, 0, block.length);
+        output.write(block, 0, block.length);
+        output.close();
+
+        byte[] expected = new byte[3 * 1024];
+        Arrays.fill(expected, 0, 1024, (byte) 7);
+        Arrays.fill(expected, 1024, expected.length, (byte) 9);
+        assertArrayEquals(expected, TestFiles.read(file));
+    }
+
+    @Test
+    public void digest_coversResumedPrefixAndSkipsPadding() throws Exception {
+        byte[] content = new byte[2500];
+        new Random(3).nextBytes(content);
+        byte[] block = new byte[1024];
+
+        ApkOutputFile output = new ApkOutputFile(file, content.length, 0, 4096);
+        output.write(content, 0, 1024);
+        output.close();
+
+        output = new ApkOutputFile(file, content.length, 1024, 4096);
+        output.startDigest(); // 앞의 1024 바이트는 파일에서 읽어 반영
+        for (int offset = 1024; offset < content.length; offset += 1024) {
+            Arrays.fill(block, (byte) 0x1A);
+            System.arraycopy(content, offset, block, 0, Math.min(1024, content.length - offset));
+            output.write(ByteBuffer.wrap(block));
+        }
+        String hash = output.finishDigest();
+        output.close();
+
+        StringBuilder expected = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+            expected.append(String.format("%02x", b));
+        }
+        assertEquals(expected.toString(), hash);
+        assertArrayEquals(content, TestFiles.read(file));
+    }
+}
@@ -0,0 +1,107 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 기록 스레드가 느려도 순서가 유지되는지, 기록 실패(런타임 예외 포함)가 수신 스레드로 전달되는지 확인합니다.
+ */
+public class BlockPipelineTest {
+
+    @Test
+    public void slowWriter_keepsOrder() throws IOException {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        BlockPipeline pipeline = new BlockPipeline(new BlockPipeline.BlockWriter() {
+            @Override
+            public void write(byte[] data, int offset, int length) {
+                sleep(1);
+                written.write(data, offset, length);
+            }
+        }, 4, 16);
+        pipeline.start();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        byte[] block = new byte[16];
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < block.length; j++) {
+                block[j] = (byte) (i * 7 + j);
+            }
+            int length = 1 + i % block.length;
+            pipeline.put(block, 0, length); // 배열을 바로 재사용해도 링에 복사되어 있어야 함
+            expected.write(block, 0, length);
+        }
+        pipeline.finish();
+
+        assertArrayEquals(expected.toByteArray(), written.toByteArray());
+    }
+
+    @Test
+    public void writerFailure_isReportedToReceiver() {
+        BlockPipeline pipeline = new BlockPipeline(new BlockPipeline.BlockWriter() {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+        }, 2, 16);
+        pipeline.start();
+
+        try {
+            for (int i = 0; i < 10; i++) {
+                pipeline.put(new byte[16], 0, 16);
+            }
+            pipeline.finish();
+            fail("writer failure was not reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("disk full"));
+        } finally {
+            pipeline.abort();
+        }
+    }
+
+    @Test
+    public void writerRuntimeException_isReportedAndWakesListener() throws InterruptedException {
+        final CountDownLatch notified = new CountDownLatch(1);
+        BlockPipeline pipeline = new BlockPipeline(new BlockPipeline.BlockWriter() {
+            @Override
+            public void write(byte[] data, int offset, int length) {
+                throw new IllegalStateException("inflater corrupted");
+            }
+        }, 2, 16);
+        pipeline.setSpaceListener(new BlockPipeline.SpaceListener() {
+            @Override
+            public void onSpaceAvailable() {
+                notified.countDown();
+            }
+        });
+        pipeline.start();
+
+        try {
+            for (int i = 0; i < 10; i++) {
+                pipeline.put(new byte[16], 0, 16); // 기록 스레드가 멈춰도 가득 찬 링에서 기다리지 않아야 함
+            }
+            pipeline.finish();
+            fail("writer failure was not reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("inflater corrupted"));
+        } finally {
+            pipeline.abort();
+        }
+        assertTrue(notified.await(1, TimeUnit.SECONDS)); // 셀렉터 스레드(NIO)도 실패를 알 수 있어야 함
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 측정한 왕복/수신 시간으로 블록 크기를 한 번 정하고, 연속 오류 시 1K로 돌아가는지 확인합니다.
+ */
+public class BlockSizeTunerTest {
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void fastLinkWithLatency_growsToLargestBlock() {
+        // 왕복 5ms, 1K 수신 0.1ms (약 10MB/s) → 대역폭-지연 곱의 4배가 16K를 넘음
+        BlockSizeTuner tuner = new BlockSizeTuner(16 * 1024);
+        assertEquals(16 * 1024, sample(tuner, 5 * MILLIS, MILLIS / 10));
+        assertEquals(16 * 1024, tuner.getBlockSize());
+    }
+
+    @Test
+    public void slowLink_staysAtBaseBlock() {
+        // 왕복 20ms, 1K 수신 100ms (RFCOMM 수준) → 왕복 대기가 작으므로 1K 유지
+        BlockSizeTuner tuner = new BlockSizeTuner(16 * 1024);
+        assertEquals(0, sample(tuner, 20 * MILLIS, 100 * MILLIS));
+        assertEquals(BlockSizeTuner.BASE_BLOCK_SIZE, tuner.getBlockSize());
+    }
+
+    @Test
+    public void repeatedErrors_fallBackToBaseBlock() {
+        BlockSizeTuner tuner = new BlockSizeTuner(8 * 1024);
+        assertEquals(8 * 1024, sample(tuner, 5 * MILLIS, MILLIS / 10));
+
+        assertEquals(0, tuner.onError());
+        assertEquals(BlockSizeTuner.BASE_BLOCK_SIZE, tuner.onError());
+        assertEquals(0, sample(tuner, 5 * MILLIS, MILLIS / 10)); // 다시 키우지 않음
+        assertEquals(BlockSizeTuner.BASE_BLOCK_SIZE, tuner.getBlockSize());
+    }
+
+    @Test
+    public void offeredSize_isRoundedDown() {
+        assertEquals(1024, BlockSizeTuner.normalize(512));
+        assertEquals(4096, BlockSizeTuner.normalize(6000));
+        assertEquals(BlockSizeTuner.MAX_BLOCK_SIZE, BlockSizeTuner.normalize(1 << 20));
+    }
+
+    /**
+     * 1K 블록 SAMPLE_BLOCKS개를 측정합니다.
+     * @return 마지막 측정에서 정한 블록 크기 (바뀌지 않았으면 0)
+     */
+    private static int sample(BlockSizeTuner tuner, long roundTripNanos, long transferNanos) {
+        int resized = 0;
+        for (int i = 0; i < BlockSizeTuner.SAMPLE_BLOCKS; i++) {
+            resized = tuner.onBlock(roundTripNanos, transferNanos, 1024);
+        }
+        return resized;
+    }
+}
@@ -0,0 +1,87 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 블록 단위로 받은 zlib 스트림을 풀어서 원래 파일을 만드는지 확인합니다. (마지막 블록 패딩 포함)
+ */
+public class DeflatedPayloadWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] original = sample(50000);
+    private File targetFile;
+
+    @Before
+    public void setUp() throws IOException {
+        targetFile = folder.newFile("inflated.apk");
+    }
+
+    @Test
+    public void compressedBlocks_decompressToOriginal() throws IOException {
+        byte[] compressed = deflate(original);
+        ApkOutputFile output = new ApkOutputFile(targetFile, original.length, 0, 4096);
+        DeflatedPayloadWriter writer = new DeflatedPayloadWriter(output, compressed.length, original.length);
+
+        byte[] block = new byte[1024];
+        for (int offset = 0; offset < compressed.length; offset += block.length) {
+            Arrays.fill(block, (byte) 0x1A); // 마지막 블록의 패딩은 버려야 함
+            System.arraycopy(compressed, offset, block, 0, Math.min(block.length, compressed.length - offset));
+            writer.write(block, 0, block.length);
+        }
+        writer.finish();
+        writer.close();
+        output.close();
+
+        assertArrayEquals(original, TestFiles.read(targetFile));
+    }
+
+    @Test
+    public void truncatedStream_isRejected() throws IOException {
+        byte[] compressed = deflate(original);
+        ApkOutputFile output = new ApkOutputFile(targetFile, original.length, 0, 4096);
+        DeflatedPayloadWriter writer = new DeflatedPayloadWriter(output, compressed.length, original.length);
+
+        writer.write(compressed, 0, compressed.length / 2);
+        try {
+            writer.finish();
+            fail("incomplete stream must be rejected");
+        } catch (IOException expected) {
+            // 6-104
+        } finally {
+            writer.close();
+            output.close();
+        }
+    }
+
+    /**
+     * 압축이 되도록 반복이 있는 데이터
+     */
+    private static byte[] sample(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ((i / 7) % 61);
+        }
+        return data;
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+        deflater.write(data);
+        deflater.close();
+        return compressed.toByteArray();
+    }
+}
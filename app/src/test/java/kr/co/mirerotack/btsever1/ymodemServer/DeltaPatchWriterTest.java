@@ -0,0 +1,149 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 블록 단위로 받은 패치를 기준 파일에 적용해 새 파일을 만드는지 확인합니다. (앞/뒤로 이동하는 레코드, 마지막 블록 패딩 포함)
+ */
+public class DeltaPatchWriterTest {
+    // {기준 위치, 차분 길이, 추가 길이} - 두 번째 → 세 번째 레코드는 기준 위치를 뒤로 이동 (음수 seek)
+    private static final int[][] RECORDS = {{0, 8000, 500}, {12000, 6000, 0}, {4000, 2000, 100}};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] base = random(20000, 1);
+    private final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    private File baseFile;
+    private File targetFile;
+
+    @Before
+    public void setUp() throws IOException {
+        baseFile = folder.newFile("base.apk");
+        targetFile = folder.newFile("target.apk");
+    }
+
+    @Test
+    public void patchBlocks_reconstructTarget() throws IOException {
+        byte[] patch = buildPatch();
+        ApkOutputFile output = new ApkOutputFile(targetFile, expected.size(), 0, 4096);
+        DeltaPatchWriter writer = new DeltaPatchWriter(writeBase(), output, patch.length, expected.size());
+
+        byte[] block = new byte[1024];
+        for (int offset = 0; offset < patch.length; offset += block.length) {
+            Arrays.fill(block, (byte) 0x1A); // 마지막 블록의 패딩은 버려야 함
+            System.arraycopy(patch, offset, block, 0, Math.min(block.length, patch.length - offset));
+            writer.write(block, 0, block.length);
+        }
+        writer.finish();
+        writer.close();
+        output.close();
+
+        assertArrayEquals(expected.toByteArray(), TestFiles.read(targetFile));
+    }
+
+    @Test
+    public void oddSizedChunks_reconstructTarget() throws IOException {
+        byte[] patch = buildPatch();
+        ApkOutputFile output = new ApkOutputFile(targetFile, expected.size(), 0, 4096);
+        DeltaPatchWriter writer = new DeltaPatchWriter(writeBase(), output, patch.length, expected.size());
+
+        for (int offset = 0; offset < patch.length; offset += 333) { // 제어 블록/구간 경계가 호출 사이에 걸리도록
+            writer.write(patch, offset, Math.min(333, patch.length - offset));
+        }
+        writer.finish();
+        writer.close();
+        output.close();
+
+        assertEquals(expected.size(), targetFile.length());
+        assertArrayEquals(expected.toByteArray(), TestFiles.read(targetFile));
+    }
+
+    @Test
+    public void truncatedPatch_isRejected() throws IOException {
+        byte[] patch = buildPatch();
+        ApkOutputFile output = new ApkOutputFile(targetFile, expected.size(), 0, 4096);
+        DeltaPatchWriter writer = new DeltaPatchWriter(writeBase(), output, patch.length, expected.size());
+
+        writer.write(patch, 0, patch.length / 2);
+        try {
+            writer.finish();
+            fail("incomplete patch must be rejected");
+        } catch (IOException expected) {
+            // 6-103
+        } finally {
+            writer.close();
+            output.close();
+        }
+    }
+
+    /**
+     * RECORDS대로 패치를 만들고, 같은 결과를 expected에 기록합니다.
+     */
+    private byte[] buildPatch() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(DeltaPatchWriter.MAGIC);
+
+        Random random = new Random(2);
+        for (int r = 0; r < RECORDS.length; r++) {
+            int from = RECORDS[r][0], diffLength = RECORDS[r][1], extraLength = RECORDS[r][2];
+            long seek = (r + 1 < RECORDS.length) ? RECORDS[r + 1][0] - (from + diffLength) : 0;
+            writeOffset(body, diffLength);
+            writeOffset(body, extraLength);
+            writeOffset(body, seek);
+
+            for (int i = 0; i < diffLength; i++) {
+                int change = (i % 97 == 0) ? 3 : 0; // 일부 바이트만 바뀐 구간
+                body.write(change);
+                expected.write(base[from + i] + change);
+            }
+            byte[] extra = new byte[extraLength];
+            random.nextBytes(extra);
+            body.write(extra);
+            expected.write(extra);
+        }
+
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(patch);
+        deflater.write(body.toByteArray());
+        deflater.close();
+        return patch.toByteArray();
+    }
+
+    private static void writeOffset(ByteArrayOutputStream out, long value) {
+        long magnitude = Math.abs(value);
+        for (int i = 0; i < 8; i++) {
+            int b = (int) ((magnitude >> (8 * i)) & 0xFF);
+            if (i == 7 && value < 0) b |= 0x80;
+            out.write(b);
+        }
+    }
+
+    private File writeBase() throws IOException {
+        FileOutputStream out = new FileOutputStream(baseFile);
+        out.write(base);
+        out.close();
+        return baseFile;
+    }
+
+    private static byte[] random(int size, int seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
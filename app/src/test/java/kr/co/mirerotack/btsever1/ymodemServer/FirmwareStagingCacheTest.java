@@ -0,0 +1,120 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 해시로 보관/조회하는지, 상한을 넘으면 오래 사용하지 않은 항목부터 지우는지, 손상된 보관본은 버리는지 확인합니다.
+ */
+public class FirmwareStagingCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private File directory;
+
+    @Before
+    public void setUp() {
+        root = folder.getRoot();
+        directory = new File(root, FirmwareStagingCache.DIRECTORY_NAME);
+    }
+
+    @Test
+    public void storedFirmware_isFoundAndRestored() throws Exception {
+        FirmwareStagingCache cache = new FirmwareStagingCache(directory, 3, 1024 * 1024);
+        File apk = writeFile("firmware.apk", 5000, 1);
+        String hash = sha256(apk);
+
+        assertNull(cache.find(hash, 5000));
+        cache.store(apk, hash);
+        File staged = cache.find(hash, 5000);
+        assertNotNull(staged);
+        assertNull(cache.find(hash, 4999)); // 크기가 다르면 다른 파일
+
+        File target = new File(root, "restored.apk");
+        cache.restore(staged, hash, target);
+        assertEquals(hash, sha256(target));
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() throws Exception {
+        FirmwareStagingCache cache = new FirmwareStagingCache(directory, 2, 1024 * 1024);
+        String first = store(cache, "a.apk", 1);
+        String second = store(cache, "b.apk", 2);
+
+        File staged = cache.find(first, 1000); // first를 최근 사용으로 표시
+        staged.setLastModified(System.currentTimeMillis() + 10_000); // 파일 시각 해상도(1초)와 무관하게
+        String third = store(cache, "c.apk", 3);
+
+        assertNotNull(cache.find(first, 1000));
+        assertNull(cache.find(second, 1000));
+        assertNotNull(cache.find(third, 1000));
+    }
+
+    @Test
+    public void corruptedEntry_isDroppedOnRestore() throws Exception {
+        FirmwareStagingCache cache = new FirmwareStagingCache(directory, 3, 1024 * 1024);
+        File apk = writeFile("firmware.apk", 3000, 4);
+        String hash = sha256(apk);
+        cache.store(apk, hash);
+
+        File staged = cache.find(hash, 3000);
+        RandomAccessFile corrupt = new RandomAccessFile(staged, "rw");
+        corrupt.seek(100);
+        int value = corrupt.read();
+        corrupt.seek(100);
+        corrupt.write(~value); // 크기는 그대로, 내용만 손상
+        corrupt.close();
+
+        File target = new File(root, "restored.apk");
+        try {
+            cache.restore(staged, hash, target);
+            fail("corrupted entry must not be restored");
+        } catch (IOException expected) {
+            // 6-102
+        }
+        assertNull(cache.find(hash, 3000));
+        assertFalse(target.exists());
+    }
+
+    private String store(FirmwareStagingCache cache, String name, int seed) throws Exception {
+        File apk = writeFile(name, 1000, seed);
+        String hash = sha256(apk);
+        cache.store(apk, hash);
+        return hash;
+    }
+
+    private File writeFile(String name, int size, int seed) throws IOException {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        File file = new File(root, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+        return file;
+    }
+
+    private static String sha256(File file) throws IOException, NoSuchAlgorithmException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(TestFiles.read(file))) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
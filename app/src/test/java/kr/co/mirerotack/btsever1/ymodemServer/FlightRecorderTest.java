@@ -0,0 +1,69 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 링이 가득 차면 가장 오래된 레코드부터 덮어쓰는지, dump 파일을 decode로 시간순 텍스트로 되돌릴 수 있는지 확인합니다.
+ */
+public class FlightRecorderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void wrapAround_keepsNewestRecordsInOrder() {
+        FlightRecorder recorder = new FlightRecorder(8);
+        int session = recorder.newSession();
+        for (int block = 0; block < 20; block++) {
+            recorder.record(session, FlightRecorder.BLOCK_OK, block, 1024);
+        }
+
+        List<FlightRecorder.Record> records = recorder.snapshot();
+        assertEquals(8, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            FlightRecorder.Record record = records.get(i);
+            assertEquals(12 + i, record.block);
+            assertEquals(session, record.session);
+            assertEquals(FlightRecorder.BLOCK_OK, record.event);
+            assertEquals(1024, record.bytes);
+        }
+    }
+
+    @Test
+    public void dump_decodesToTimeline() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(16);
+        int session = recorder.newSession();
+        recorder.record(session, FlightRecorder.HEADER, 0, 5000000000L); // 4GB 넘는 크기도 그대로
+        recorder.record(session, FlightRecorder.BLOCK_ERROR, 17, 0);
+        recorder.record(session, FlightRecorder.NAK, 17, 0);
+        recorder.record(session, FlightRecorder.SESSION_FAILED, 17, 17408);
+
+        File file = folder.newFile("flight" + FlightRecorder.DUMP_SUFFIX);
+        recorder.dump(file);
+        assertEquals(28 + 4 * 28, file.length());
+
+        StringWriter text = new StringWriter();
+        InputStream in = new FileInputStream(file);
+        try {
+            FlightRecorder.decode(in, text);
+        } finally {
+            in.close();
+        }
+        String[] lines = text.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(" +0.000 ms s" + session + " HEADER blk=0 bytes=5000000000"));
+        assertTrue(lines[1], lines[1].endsWith(" BLOCK_ERROR blk=17 bytes=0"));
+        assertTrue(lines[3], lines[3].endsWith(" SESSION_FAILED blk=17 bytes=17408"));
+    }
+}
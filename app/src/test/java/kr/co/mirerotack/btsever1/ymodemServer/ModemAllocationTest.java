@@ -0,0 +1,149 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+
+import kr.co.mirerotack.btsever1.utils.YModemCRC16;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 워밍업 이후 블록당 객체를 할당하지 않는지 확인합니다.
+ * Modem의 프레임 읽기(readNextBlockStart → readBlock)와, 그 위의 블록 단위 ACK 수신 루프
+ * (receive_APK: waitForBlockStart → readBlock → RECORDER.record → pipeline.put → sendBlockResponse)를 각각 잽니다.
+ */
+public class ModemAllocationTest {
+    private static final int WARM_UP_BLOCKS = 200;
+    private static final int MEASURED_BLOCKS = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void steadyStateReceiveLoop_allocatesNothingPerBlock() throws Exception {
+        byte[] stream = buildStxStream(WARM_UP_BLOCKS + MEASURED_BLOCKS);
+        Modem modem = new Modem(new ByteArrayInputStream(stream), new DiscardOutputStream());
+        DiscardOutputStream dataOutput = new DiscardOutputStream();
+        YModemCRC16 crc16 = new YModemCRC16();
+        int totalPacketSize = Integer.MAX_VALUE / 2; // 측정 구간에서 진행률 로그가 찍히지 않도록 충분히 크게 설정
+
+        for (int i = 0; i < WARM_UP_BLOCKS; i++) {
+            receiveOne(modem, crc16, dataOutput, i, totalPacketSize);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = WARM_UP_BLOCKS; i < WARM_UP_BLOCKS + MEASURED_BLOCKS; i++) {
+            receiveOne(modem, crc16, dataOutput, i, totalPacketSize);
+        }
+
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals((long) (WARM_UP_BLOCKS + MEASURED_BLOCKS) * 1024, dataOutput.count);
+        // 측정 자체(MXBean 호출)에 드는 몇십 바이트만 허용, 블록당 1바이트도 되지 않아야 함
+        assertTrue("allocated " + allocated + " bytes for " + MEASURED_BLOCKS + " blocks", allocated < MEASURED_BLOCKS);
+    }
+
+    /**
+     * 블록 수만 다른 두 세션의 할당량 차이를 늘어난 블록 수로 나눠 봅니다.
+     * 세션마다 한 번 드는 할당(헤더, 파일 열기, 기록 스레드, 10번 남짓한 진행률 로그)은 서로 상쇄됩니다.
+     * 기록 스레드의 할당은 수신 스레드 측정에 들어가지 않습니다.
+     */
+    @Test
+    public void perBlockAckReceiveLoop_allocatesNothingPerBlock() throws Exception {
+        allocatedWhileReceiving(WARM_UP_BLOCKS); // 클래스 로딩, JIT 워밍업
+
+        long shortSession = allocatedWhileReceiving(WARM_UP_BLOCKS);
+        long longSession = allocatedWhileReceiving(WARM_UP_BLOCKS + MEASURED_BLOCKS);
+
+        long perBlockTotal = longSession - shortSession;
+        assertTrue("allocated " + perBlockTotal + " more bytes for " + MEASURED_BLOCKS + " more blocks (sessions: "
+                + shortSession + " / " + longSession + " bytes)", perBlockTotal < MEASURED_BLOCKS);
+    }
+
+    /**
+     * 'C' → 헤더(ack=1) → 협상 회신 → 데이터 블록 → EOT 세션을 메모리 스트림으로 받고, receive_APK 동안 수신 스레드가 할당한 바이트 수를 돌려줍니다
+     */
+    private long allocatedWhileReceiving(int blocks) throws Exception {
+        ByteArrayOutputStream sender = new ByteArrayOutputStream(blocks * 1029 + 256);
+        sender.write('C');
+        byte[] header = new byte[128];
+        byte[] fields = ("fw.apk\u0000" + (blocks * 1024) + "\u00000\u00000\u00000\u0000ack=1").getBytes(Charset.forName("US-ASCII"));
+        System.arraycopy(fields, 0, header, 0, fields.length);
+        writeFrame(sender, Modem.SOH, 0, header, new YModemCRC16());
+        sender.write(buildStxStream(blocks));
+        sender.write(Modem.EOT);
+
+        YModem yModem = new YModem(new ByteArrayInputStream(sender.toByteArray()), new DiscardOutputStream());
+        yModem.receive_Header(folder.getRoot(), true);
+        yModem.sendNegotiationReply();
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        File received = yModem.receive_APK(new File(""), true);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals((long) blocks * 1024, received.length());
+        received.delete();
+        return allocated;
+    }
+
+    private static void receiveOne(Modem modem, YModemCRC16 crc16, OutputStream dataOutput, int packetNumber, int totalPacketSize) throws Exception {
+        int character = modem.readNextBlockStart(true);
+        assertEquals(Modem.STX, character);
+        byte[] block = modem.readBlock(modem.getBlockNumber(), false, crc16, packetNumber, totalPacketSize);
+        modem.incrementBlockNumber();
+        dataOutput.write(block);
+    }
+
+    private static byte[] buildStxStream(int blocks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(blocks * 1029);
+        YModemCRC16 crc16 = new YModemCRC16();
+        byte[] data = new byte[1024];
+
+        for (int i = 0; i < blocks; i++) {
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte) (i + j);
+            }
+            writeFrame(out, Modem.STX, i, data, crc16);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, byte start, int blockNumber, byte[] data, YModemCRC16 crc16) {
+        int crc = (int) crc16.calcCRC(data);
+        out.write(start);
+        out.write(blockNumber & 0xFF);
+        out.write(~blockNumber & 0xFF);
+        out.write(data, 0, data.length);
+        out.write((crc >> 8) & 0xFF);
+        out.write(crc & 0xFF);
+    }
+
+    private static class DiscardOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+        }
+    }
+}
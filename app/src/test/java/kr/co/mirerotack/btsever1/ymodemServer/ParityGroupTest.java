@@ -0,0 +1,88 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 그룹에서 손상된 블록 하나를 패리티로 복구해 원래 순서대로 기록하는지 확인합니다.
+ */
+public class ParityGroupTest {
+    private static final int GROUP_SIZE = 4;
+
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private final BlockPipeline pipeline = new BlockPipeline(new BlockPipeline.BlockWriter() {
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            written.write(data, offset, length);
+        }
+    }, 4, ParityGroup.BLOCK_SIZE);
+
+    @Test
+    public void corruptedBlock_isRecoveredInOrder() throws IOException {
+        pipeline.start();
+        ParityGroup group = new ParityGroup(GROUP_SIZE);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        for (int first = 0; first < 2 * GROUP_SIZE; first += GROUP_SIZE) {
+            byte[] parity = new byte[ParityGroup.BLOCK_SIZE];
+            for (int i = first; i < first + GROUP_SIZE; i++) {
+                byte[] data = block(i);
+                expected.write(data, 0, data.length);
+                xor(parity, data);
+                if (i == first + 1) {
+                    assertTrue(group.markMissing()); // CRC 오류로 받지 못한 블록
+                } else {
+                    group.add(data, pipeline);
+                }
+            }
+            group.close(parity, pipeline);
+        }
+        pipeline.finish();
+
+        assertArrayEquals(expected.toByteArray(), written.toByteArray());
+        assertEquals(2, group.getRecoveredBlocks());
+        assertFalse(group.hasMissing());
+    }
+
+    @Test
+    public void missingParity_isRejected() throws IOException {
+        pipeline.start();
+        ParityGroup group = new ParityGroup(GROUP_SIZE);
+
+        assertTrue(group.markMissing());
+        assertFalse(group.markMissing()); // 같은 그룹의 두 번째 손상은 재전송으로
+        for (int i = 1; i < GROUP_SIZE; i++) {
+            group.add(block(i), pipeline);
+        }
+        try {
+            group.add(block(GROUP_SIZE), pipeline); // 패리티 없이 다음 그룹 시작
+            fail("group with a missing block must not be skipped");
+        } catch (IOException expected) {
+            // 5-606
+        } finally {
+            pipeline.abort();
+        }
+    }
+
+    private static byte[] block(int index) {
+        byte[] data = new byte[ParityGroup.BLOCK_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (index * 31 + i);
+        }
+        return data;
+    }
+
+    private static void xor(byte[] target, byte[] data) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] ^= data[i];
+        }
+    }
+}
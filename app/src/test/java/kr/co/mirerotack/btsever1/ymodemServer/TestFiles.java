@@ -0,0 +1,24 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * 테스트에서 공통으로 쓰는 파일 읽기 (임시 파일/디렉토리는 각 테스트의 TemporaryFolder 규칙으로)
+ */
+final class TestFiles {
+    private TestFiles() {
+    }
+
+    static byte[] read(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] data = new byte[(int) in.length()];
+            in.readFully(data);
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+}
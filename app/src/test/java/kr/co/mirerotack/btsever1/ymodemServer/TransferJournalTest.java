@@ -0,0 +1,97 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 저널을 저장한 뒤 새 인스턴스로 다시 읽을 수 있는지, 헤더 협상(YModemHeader)이 같은 파일의 저널에서만 이어받기 오프셋을 회신하는지 확인합니다.
+ */
+public class TransferJournalTest {
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final long FILE_SIZE = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot();
+        target = new File(directory, "fw.apk");
+    }
+
+    @Test
+    public void save_isReadBackByNewInstance() throws IOException {
+        new TransferJournal(target).save("fw.apk", FILE_SIZE, HASH, 4096);
+
+        TransferJournal journal = new TransferJournal(target);
+        assertTrue(journal.load());
+        assertEquals(4096, journal.getDurableOffset());
+        assertTrue(journal.matches("fw.apk", FILE_SIZE, HASH.toUpperCase())); // 해시는 대소문자 구분 없음
+        assertFalse(journal.matches("other.apk", FILE_SIZE, HASH));
+        assertFalse(journal.matches("fw.apk", FILE_SIZE + 1, HASH));
+        assertFalse(journal.matches("fw.apk", FILE_SIZE, null));
+
+        journal.delete();
+        assertFalse(new TransferJournal(target).load());
+    }
+
+    @Test
+    public void matchingJournal_resumesFromDurableOffset() throws IOException {
+        writeTarget(4096);
+        new TransferJournal(target).save("fw.apk", FILE_SIZE, HASH, 3072);
+
+        YModemHeader header = negotiate(HASH);
+
+        assertEquals(3072, header.getResumeOffset());
+        assertEquals("resume=3072", header.getReply());
+    }
+
+    @Test
+    public void mismatchedJournal_isDeletedAndStartsFromZero() throws IOException {
+        writeTarget(4096);
+        new TransferJournal(target).save("fw.apk", FILE_SIZE, HASH, 3072);
+
+        YModemHeader header = negotiate("0000" + HASH.substring(4)); // 같은 이름/크기의 다른 파일
+
+        assertEquals(0, header.getResumeOffset());
+        assertEquals("resume=0", header.getReply());
+        assertFalse(new TransferJournal(target).load());
+    }
+
+    @Test
+    public void journalBeyondStoredData_startsFromZero() throws IOException {
+        writeTarget(1024); // 저널보다 적게 남은 파일 (기록 전에 끊김)
+        new TransferJournal(target).save("fw.apk", FILE_SIZE, HASH, 3072);
+
+        assertEquals(0, negotiate(HASH).getResumeOffset());
+    }
+
+    private YModemHeader negotiate(String hash) throws IOException {
+        YModemHeader header = new YModemHeader();
+        header.parse("fw.apk\u0000" + FILE_SIZE + "\u00000\u00000\u00000\u0000sha256=" + hash + "\u0000resume=1");
+        header.negotiate(target);
+        return header;
+    }
+
+    private void writeTarget(int length) throws IOException {
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+    }
+}
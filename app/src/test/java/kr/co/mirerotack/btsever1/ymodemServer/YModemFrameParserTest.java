@@ -0,0 +1,213 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import kr.co.mirerotack.btsever1.utils.YModemCRC16;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 바이트 조각을 어떤 크기로 나누어 넣어도 같은 이벤트가 같은 순서로 나오는지 확인합니다.
+ */
+public class YModemFrameParserTest {
+    private static final String EXPECTED_EVENTS = "[header:128, block0, crc1, block1, duplicate1, block2, eot]";
+
+    @Test
+    public void wholeStream_emitsEventsInOrder() {
+        assertEquals(EXPECTED_EVENTS, parse(buildStream(), Integer.MAX_VALUE).toString());
+    }
+
+    @Test
+    public void byteByByte_emitsSameEvents() {
+        assertEquals(EXPECTED_EVENTS, parse(buildStream(), 1).toString());
+    }
+
+    @Test
+    public void oddChunks_emitSameEvents() {
+        assertEquals(EXPECTED_EVENTS, parse(buildStream(), 333).toString());
+    }
+
+    @Test
+    public void directBuffer_verifiesFramesInPlace() {
+        byte[] stream = buildStream();
+        final List<String> events = new ArrayList<String>();
+        final YModemFrameParser[] parser = new YModemFrameParser[1];
+        final int[] nextBlock = {0};
+
+        parser[0] = new YModemFrameParser(new RecordingListener(events, parser, nextBlock) {
+            @Override
+            public void onBlock(int blockNumber, ByteBuffer data) {
+                assertEquals(1024, data.remaining());
+                assertEquals((byte) (blockNumber * 31 + 5), data.get(data.position() + 5));
+                events.add("block" + blockNumber);
+                parser[0].expectBlock(++nextBlock[0]);
+            }
+        });
+        parser[0].expectHeader();
+
+        // NIO 세션과 같이: 읽기 → flip → feed(0이면 더 읽기) → compact
+        ByteBuffer in = ByteBuffer.allocateDirect(2048);
+        int offset = 0;
+        while (offset < stream.length) {
+            int count = Math.min(Math.min(333, in.remaining()), stream.length - offset);
+            in.put(stream, offset, count);
+            offset += count;
+
+            in.flip();
+            while (in.hasRemaining() && parser[0].feed(in) > 0) {
+                // 이벤트마다 멈추므로 이어서 넣음
+            }
+            in.compact();
+        }
+        assertEquals(EXPECTED_EVENTS, events.toString());
+    }
+
+    @Test
+    public void extendedFrames_checkCrc32InAnyChunking() {
+        String expected = "[header:128, block0, crc1, block1, block2, eot]";
+        byte[] stream = buildExtendedStream();
+        assertEquals(expected, parse(stream, Integer.MAX_VALUE, 8192).toString());
+        assertEquals(expected, parse(stream, 1, 8192).toString());
+        assertEquals(expected, parse(stream, 1000, 8192).toString());
+    }
+
+    /**
+     * 헤더(SOH) → 확장 블록 0 → CRC-32 손상 확장 블록 1 → 확장 블록 1 → 1K로 돌아간 블록 2 → EOT
+     */
+    private static byte[] buildExtendedStream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeFrame(out, Modem.SOH, 0, 128, false);
+        writeExtendedFrame(out, 0, 8192, false);
+        writeExtendedFrame(out, 1, 8192, true);
+        writeExtendedFrame(out, 1, 8192, false);
+        writeFrame(out, Modem.STX, 2, 1024, false);
+        out.write(Modem.EOT);
+        return out.toByteArray();
+    }
+
+    private static void writeExtendedFrame(ByteArrayOutputStream out, int blockNumber, int length, boolean corrupt) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (blockNumber * 31 + i);
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, length);
+        long crc = crc32.getValue() ^ (corrupt ? 1 : 0);
+
+        out.write(Modem.XSTX);
+        out.write(blockNumber);
+        out.write(~blockNumber & 0xFF);
+        out.write(data, 0, length);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.write((int) (crc >> shift) & 0xFF);
+        }
+    }
+
+    /**
+     * 헤더(SOH) → 블록 0 → CRC 손상 블록 1 → 블록 1 → 블록 1 중복 → 잡음 → 블록 2 → EOT
+     */
+    private static byte[] buildStream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeFrame(out, Modem.SOH, 0, 128, false);
+        writeFrame(out, Modem.STX, 0, 1024, false);
+        writeFrame(out, Modem.STX, 1, 1024, true);
+        writeFrame(out, Modem.STX, 1, 1024, false);
+        writeFrame(out, Modem.STX, 1, 1024, false);
+        out.write(0x7F); // 잡음은 무시
+        writeFrame(out, Modem.STX, 2, 1024, false);
+        out.write(Modem.EOT);
+        return out.toByteArray();
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, int type, int blockNumber, int length, boolean corrupt) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (blockNumber * 31 + i);
+        }
+        int crc = (int) new YModemCRC16().calcCRC(data) ^ (corrupt ? 1 : 0);
+
+        out.write(type);
+        out.write(blockNumber);
+        out.write(~blockNumber & 0xFF);
+        out.write(data, 0, length);
+        out.write((crc >> 8) & 0xFF);
+        out.write(crc & 0xFF);
+    }
+
+    private static List<String> parse(byte[] stream, int chunkSize) {
+        return parse(stream, chunkSize, 0);
+    }
+
+    private static List<String> parse(byte[] stream, int chunkSize, int extendedBlockSize) {
+        final List<String> events = new ArrayList<String>();
+        final YModemFrameParser[] parser = new YModemFrameParser[1];
+        final int[] nextBlock = {0};
+
+        parser[0] = new YModemFrameParser(new RecordingListener(events, parser, nextBlock));
+        parser[0].setExtendedBlockSize(extendedBlockSize);
+        parser[0].expectHeader();
+
+        for (int offset = 0; offset < stream.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, stream.length - offset);
+            int consumed = 0;
+            while (consumed < length) { // 파서는 이벤트마다 멈추므로 남은 바이트를 이어서 넣음
+                consumed += parser[0].feed(stream, offset + consumed, length - consumed);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * 이벤트를 문자열로 기록하고, 블록을 받을 때마다 다음 블록 번호를 기대하도록 설정
+     */
+    private static class RecordingListener implements YModemFrameParser.BufferListener {
+        private final List<String> events;
+        private final YModemFrameParser[] parser;
+        private final int[] nextBlock;
+
+        RecordingListener(List<String> events, YModemFrameParser[] parser, int[] nextBlock) {
+            this.events = events;
+            this.parser = parser;
+            this.nextBlock = nextBlock;
+        }
+
+        @Override
+        public void onHeader(byte[] data, int offset, int length) {
+            events.add("header:" + length);
+            parser[0].expectBlock(0);
+        }
+
+        @Override
+        public void onBlock(int blockNumber, byte[] data, int offset, int length) {
+            assertEquals((byte) (blockNumber * 31 + 5), data[offset + 5]);
+            events.add("block" + blockNumber);
+            parser[0].expectBlock(++nextBlock[0]);
+        }
+
+        @Override
+        public void onBlock(int blockNumber, ByteBuffer data) {
+            throw new AssertionError("heap input must not use the in-place path");
+        }
+
+        @Override
+        public void onDuplicate(int blockNumber) {
+            events.add("duplicate" + blockNumber);
+        }
+
+        @Override
+        public void onBlockError(int error, int blockNumber) {
+            events.add((error == YModemFrameParser.ERROR_CRC ? "crc" : "error") + blockNumber);
+        }
+
+        @Override
+        public void onEndOfTransmission() {
+            events.add("eot");
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import kr.co.mirerotack.btsever1.utils.YModemCRC16;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TCP_NIO 서버에 루프백 소켓으로 접속해 'C' → 헤더 → ACK(협상 회신) → 데이터 블록 → EOT 흐름을 끝까지 확인합니다.
+ * 받은 파일은 서버가 EOT를 보내기 직전에 firmware.apk로 이름을 바꾸므로, EOT를 받은 뒤 내용을 비교합니다.
+ */
+public class YModemNioServerImplTest {
+    private static final int PORT = 56410; // 트리거 서버는 PORT + 1
+    private static final int FILE_SIZE = 3 * 1024 + 200; // 4블록, 마지막 블록은 패딩
+    private static final int SOCKET_TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private YModemNioServerImpl server;
+    private byte[] payload;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot();
+
+        payload = new byte[FILE_SIZE];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 17 + 3);
+        }
+
+        server = new YModemNioServerImpl(directory, null);
+        server.startServer(PORT);
+    }
+
+    @After
+    public void tearDown() {
+        server.stopServer();
+    }
+
+    @Test
+    public void streamingUpload_isAckedAndStored() throws Exception {
+        Socket socket = connect();
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            sendHeader(in, out, "");
+            assertEquals(Modem.ACK, in.read()); // 옵션이 없으면 회신 없이 ACK만
+
+            for (int block = 0; block * 1024 < FILE_SIZE; block++) {
+                out.write(block(block, false)); // 스트리밍 모드: EOT 전까지 응답 없음
+            }
+            out.write(Modem.EOT);
+            out.flush();
+
+            assertEquals(Modem.ACK, in.read());
+            assertEquals(Modem.ACK, in.read());
+            assertEquals(Modem.EOT, in.read());
+            assertArrayEquals(payload, TestFiles.read(new File(directory, "firmware.apk")));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void damagedBlock_isNakedInAckMode() throws Exception {
+        Socket socket = connect();
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            sendHeader(in, out, "ack=1");
+            assertEquals(Modem.ACK, in.read());
+            assertEquals("ack=1", readLine(in));
+
+            out.write(block(0, true)); // CRC 손상 → NAK 후 같은 블록을 다시 받음
+            out.flush();
+            assertEquals(Modem.NAK, in.read());
+            for (int block = 0; block * 1024 < FILE_SIZE; block++) {
+                out.write(block(block, false));
+                out.flush();
+                assertEquals(Modem.ACK, in.read());
+            }
+            out.write(Modem.EOT);
+            out.flush();
+
+            assertEquals(Modem.ACK, in.read());
+            assertEquals(Modem.ACK, in.read());
+            assertEquals(Modem.EOT, in.read());
+            assertArrayEquals(payload, TestFiles.read(new File(directory, "firmware.apk")));
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * 서버 소켓은 셀렉터 스레드에서 열리므로 열릴 때까지 다시 시도합니다
+     */
+    private static Socket connect() throws Exception {
+        long deadline = System.currentTimeMillis() + SOCKET_TIMEOUT;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress("127.0.0.1", PORT), SOCKET_TIMEOUT);
+                socket.setSoTimeout(SOCKET_TIMEOUT);
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    /**
+     * 서버의 'C'에 에코하고 헤더 프레임을 보냅니다
+     */
+    private static void sendHeader(InputStream in, OutputStream out, String options) throws IOException {
+        assertEquals('C', in.read());
+        out.write('C');
+        byte[] header = new byte[128];
+        byte[] fields = ("fw.apk\u0000" + FILE_SIZE + "\u00000\u00000\u00000\u0000" + options).getBytes(Charset.forName("US-ASCII"));
+        System.arraycopy(fields, 0, header, 0, fields.length);
+        out.write(frame(Modem.SOH, 0, header, false));
+        out.flush();
+    }
+
+    private byte[] block(int blockNumber, boolean corrupt) throws IOException {
+        byte[] data = new byte[1024];
+        Arrays.fill(data, (byte) 0x1A);
+        int offset = blockNumber * 1024;
+        System.arraycopy(payload, offset, data, 0, Math.min(1024, FILE_SIZE - offset));
+        return frame(Modem.STX, blockNumber, data, corrupt);
+    }
+
+    private static byte[] frame(byte start, int blockNumber, byte[] data, boolean corrupt) throws IOException {
+        int crc = (int) new YModemCRC16().calcCRC(data) ^ (corrupt ? 1 : 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(start);
+        out.write(blockNumber & 0xFF);
+        out.write(~blockNumber & 0xFF);
+        out.write(data);
+        out.write((crc >> 8) & 0xFF);
+        out.write(crc & 0xFF);
+        return out.toByteArray();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+}
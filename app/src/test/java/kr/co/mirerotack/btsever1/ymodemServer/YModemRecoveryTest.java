@@ -0,0 +1,149 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import kr.co.mirerotack.btsever1.utils.YModemCRC16;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 블록 단위 ACK 모드(ack=1)에서 손상/중복 블록을 세션을 끊지 않고 복구하는지 확인합니다.
+ * 송신자 바이트열을 미리 만들어 YModem에 넣고, 수신자가 보낸 응답 바이트열을 비교합니다.
+ */
+public class YModemRecoveryTest {
+    private static final int FILE_SIZE = 2 * 1024 + 300; // 3블록, 마지막 블록은 패딩
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private byte[] payload;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot();
+
+        payload = new byte[FILE_SIZE];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 31 + 7);
+        }
+    }
+
+    @Test
+    public void damagedBlock_isNakedAndResendIsAccepted() throws Exception {
+        ByteArrayOutputStream sender = startSession();
+        writeBlock(sender, 0, true);  // CRC 손상
+        writeBlock(sender, 0, false); // NAK 후 재전송
+        writeBlock(sender, 1, false);
+        writeBlock(sender, 2, false);
+        sender.write(Modem.EOT);
+
+        ByteArrayOutputStream receiver = new ByteArrayOutputStream();
+        File received = receive(sender, receiver);
+
+        assertArrayEquals(new byte[]{Modem.NAK, Modem.ACK, Modem.ACK, Modem.ACK, Modem.ACK, Modem.ACK}, responses(receiver));
+        assertArrayEquals(payload, TestFiles.read(received));
+    }
+
+    @Test
+    public void duplicateBlock_isAckedAgainAndWrittenOnce() throws Exception {
+        ByteArrayOutputStream sender = startSession();
+        writeBlock(sender, 0, false);
+        writeBlock(sender, 0, false); // ACK 유실로 같은 블록을 다시 보냄
+        writeBlock(sender, 1, false);
+        writeBlock(sender, 2, false);
+        sender.write(Modem.EOT);
+
+        ByteArrayOutputStream receiver = new ByteArrayOutputStream();
+        File received = receive(sender, receiver);
+
+        assertArrayEquals(new byte[]{Modem.ACK, Modem.ACK, Modem.ACK, Modem.ACK, Modem.ACK, Modem.ACK}, responses(receiver));
+        assertArrayEquals(payload, TestFiles.read(received));
+    }
+
+    @Test
+    public void errorBudget_endsInCancel() throws Exception {
+        ByteArrayOutputStream sender = startSession();
+        for (int i = 0; i < Modem.MAXERRORS; i++) {
+            writeBlock(sender, 0, true);
+        }
+
+        ByteArrayOutputStream receiver = new ByteArrayOutputStream();
+        try {
+            receive(sender, receiver);
+            fail("session should be aborted after " + Modem.MAXERRORS + " errors");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("5-700"));
+        }
+
+        byte[] expectedResponses = new byte[Modem.MAXERRORS + 2];
+        Arrays.fill(expectedResponses, 0, Modem.MAXERRORS - 1, Modem.NAK);
+        expectedResponses[Modem.MAXERRORS - 1] = Modem.CAN; // 마지막 오류에는 NAK 대신 CAN 2번
+        expectedResponses[Modem.MAXERRORS] = Modem.CAN;
+        expectedResponses[Modem.MAXERRORS + 1] = Modem.NAK; // 세션 종료 시 NAK
+        assertArrayEquals(expectedResponses, responses(receiver));
+    }
+
+    /**
+     * 'C' 에코와 헤더(ack=1)까지 쓴 송신자 바이트열
+     */
+    private ByteArrayOutputStream startSession() throws IOException {
+        ByteArrayOutputStream sender = new ByteArrayOutputStream();
+        sender.write('C');
+        byte[] header = new byte[128];
+        byte[] fields = ("fw.apk\u0000" + FILE_SIZE + "\u00000\u00000\u00000\u0000ack=1").getBytes(Charset.forName("US-ASCII"));
+        System.arraycopy(fields, 0, header, 0, fields.length);
+        writeFrame(sender, Modem.SOH, 0, header, false);
+        return sender;
+    }
+
+    private void writeBlock(ByteArrayOutputStream sender, int blockNumber, boolean corrupt) throws IOException {
+        byte[] data = new byte[1024];
+        Arrays.fill(data, (byte) 0x1A);
+        int offset = blockNumber * 1024;
+        System.arraycopy(payload, offset, data, 0, Math.min(1024, FILE_SIZE - offset));
+        writeFrame(sender, Modem.STX, blockNumber, data, corrupt);
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, byte start, int blockNumber, byte[] data, boolean corrupt) throws IOException {
+        int crc = (int) new YModemCRC16().calcCRC(data) ^ (corrupt ? 1 : 0);
+        out.write(start);
+        out.write(blockNumber & 0xFF);
+        out.write(~blockNumber & 0xFF);
+        out.write(data);
+        out.write((crc >> 8) & 0xFF);
+        out.write(crc & 0xFF);
+    }
+
+    /**
+     * 서버(AbstractYModemServer)와 같은 순서로 헤더 → 협상 회신 → 데이터를 받습니다. (헤더 ACK는 서버가 보내므로 생략)
+     */
+    private File receive(ByteArrayOutputStream sender, ByteArrayOutputStream receiver) throws Exception {
+        YModem yModem = new YModem(new ByteArrayInputStream(sender.toByteArray()), receiver);
+        yModem.receive_Header(directory, true);
+        yModem.sendNegotiationReply();
+        return yModem.receive_APK(new File(""), false);
+    }
+
+    /**
+     * 'C'와 협상 회신("ack=1\n")을 뺀 블록 응답
+     */
+    private static byte[] responses(ByteArrayOutputStream receiver) {
+        byte[] all = receiver.toByteArray();
+        int start = 1 + "ack=1\n".length();
+        assertTrue(all.length >= start);
+        return Arrays.copyOfRange(all, start, all.length);
+    }
+}
@@ -0,0 +1,124 @@
+package kr.co.mirerotack.btsever1.ymodemServer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import kr.co.mirerotack.btsever1.utils.YModemCRC16;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * 윈도우 모드(win=4)에서 순서가 바뀌거나 손상된 블록은 그 블록 번호만 NAK하고, 파일에는 블록 순서대로 기록하는지 확인합니다.
+ * 응답은 ACK/NAK + 블록 번호(1바이트)이며, 누적 ACK는 윈도우의 절반마다 또는 빈 자리가 채워졌을 때 보냅니다.
+ */
+public class YModemWindowTest {
+    private static final int FILE_SIZE = 5 * 1024 + 100; // 6블록, 마지막 블록은 패딩
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private byte[] payload;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot();
+
+        payload = new byte[FILE_SIZE];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 13 + 5);
+        }
+    }
+
+    @Test
+    public void outOfOrderBlocks_getSelectiveNakAndAreWrittenInOrder() throws Exception {
+        ByteArrayOutputStream sender = startSession();
+        writeBlock(sender, 0, false);
+        writeBlock(sender, 2, false); // 1이 빠짐 → NAK 1
+        writeBlock(sender, 3, false); // 1은 이미 NAK, 다시 보내지 않음
+        writeBlock(sender, 1, false); // 빈 자리가 채워짐 → 2, 3까지 기록하고 누적 ACK 3
+        writeBlock(sender, 4, false);
+        writeBlock(sender, 5, false);
+        sender.write(Modem.EOT);
+
+        ByteArrayOutputStream receiver = new ByteArrayOutputStream();
+        File received = receive(sender, receiver);
+
+        assertArrayEquals(new byte[]{Modem.NAK, 1, Modem.ACK, 3, Modem.ACK, 5, Modem.ACK, Modem.ACK}, responses(receiver));
+        assertArrayEquals(payload, TestFiles.read(received));
+    }
+
+    @Test
+    public void damagedBlock_isNakedByNumberAndResendFillsTheGap() throws Exception {
+        ByteArrayOutputStream sender = startSession();
+        writeBlock(sender, 0, false);
+        writeBlock(sender, 1, true);  // CRC 손상 → 헤더의 블록 번호로 NAK 1
+        writeBlock(sender, 2, false);
+        writeBlock(sender, 3, false);
+        writeBlock(sender, 1, false);
+        writeBlock(sender, 4, false);
+        writeBlock(sender, 5, false);
+        sender.write(Modem.EOT);
+
+        ByteArrayOutputStream receiver = new ByteArrayOutputStream();
+        File received = receive(sender, receiver);
+
+        assertArrayEquals(new byte[]{Modem.NAK, 1, Modem.ACK, 3, Modem.ACK, 5, Modem.ACK, Modem.ACK}, responses(receiver));
+        assertArrayEquals(payload, TestFiles.read(received));
+    }
+
+    /**
+     * 'C' 에코와 헤더(win=4)까지 쓴 송신자 바이트열
+     */
+    private ByteArrayOutputStream startSession() throws IOException {
+        ByteArrayOutputStream sender = new ByteArrayOutputStream();
+        sender.write('C');
+        byte[] header = new byte[128];
+        byte[] fields = ("fw.apk\u0000" + FILE_SIZE + "\u00000\u00000\u00000\u0000win=4").getBytes(Charset.forName("US-ASCII"));
+        System.arraycopy(fields, 0, header, 0, fields.length);
+        writeFrame(sender, Modem.SOH, 0, header, false);
+        return sender;
+    }
+
+    private void writeBlock(ByteArrayOutputStream sender, int blockNumber, boolean corrupt) throws IOException {
+        byte[] data = new byte[1024];
+        Arrays.fill(data, (byte) 0x1A);
+        int offset = blockNumber * 1024;
+        System.arraycopy(payload, offset, data, 0, Math.min(1024, FILE_SIZE - offset));
+        writeFrame(sender, Modem.STX, blockNumber, data, corrupt);
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, byte start, int blockNumber, byte[] data, boolean corrupt) throws IOException {
+        int crc = (int) new YModemCRC16().calcCRC(data) ^ (corrupt ? 1 : 0);
+        out.write(start);
+        out.write(blockNumber & 0xFF);
+        out.write(~blockNumber & 0xFF);
+        out.write(data);
+        out.write((crc >> 8) & 0xFF);
+        out.write(crc & 0xFF);
+    }
+
+    private File receive(ByteArrayOutputStream sender, ByteArrayOutputStream receiver) throws Exception {
+        YModem yModem = new YModem(new ByteArrayInputStream(sender.toByteArray()), receiver);
+        yModem.receive_Header(directory, true);
+        yModem.sendNegotiationReply();
+        return yModem.receive_APK(new File(""), false);
+    }
+
+    /**
+     * 'C'와 협상 회신("win=4\n")을 뺀 블록 응답
+     */
+    private static byte[] responses(ByteArrayOutputStream receiver) {
+        byte[] all = receiver.toByteArray();
+        return Arrays.copyOfRange(all, 1 + "win=4\n".length(), all.length);
+    }
+}